@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine.watchface;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Checks that {@link FrameScheduler} wakes the watch face exactly when the colon blinks or the
+ * minute changes, and that it counts the frames of each hour.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TestFrameScheduler {
+
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+    /* The start of an hour, and so of a minute and a second */
+    private static final long START = 1000 * HOUR;
+
+    private final FrameScheduler mScheduler = new FrameScheduler();
+
+    @Test
+    public void testWakesUpForBlink() {
+        assertEquals(START + 500, mScheduler.getNextFrameTime(START, true));
+        assertEquals(START + 500, mScheduler.getNextFrameTime(START + 1, true));
+        assertEquals(START + 1000, mScheduler.getNextFrameTime(START + 500, true));
+        assertEquals(START + 1000, mScheduler.getNextFrameTime(START + 999, true));
+    }
+
+    @Test
+    public void testWakesUpForMinuteWithoutBlink() {
+        assertEquals(START + MINUTE, mScheduler.getNextFrameTime(START, false));
+        assertEquals(START + MINUTE, mScheduler.getNextFrameTime(START + 500, false));
+        assertEquals(START + 2 * MINUTE, mScheduler.getNextFrameTime(START + MINUTE, false));
+    }
+
+    @Test
+    public void testColonShownInFirstHalfOfSecond() {
+        assertTrue(FrameScheduler.isColonShown(START));
+        assertTrue(FrameScheduler.isColonShown(START + 499));
+        assertFalse(FrameScheduler.isColonShown(START + 500));
+        assertFalse(FrameScheduler.isColonShown(START + 999));
+        assertTrue(FrameScheduler.isColonShown(START + 1000));
+    }
+
+    @Test
+    public void testCountsFramesPerHour() {
+        /* An hour of blinking, as the timer would schedule it */
+        long now = START;
+        while (now < START + HOUR) {
+            mScheduler.onFrameDrawn(now);
+            now = mScheduler.getNextFrameTime(now, true);
+        }
+        assertEquals(2 * 60 * 60, mScheduler.getFramesThisHour());
+
+        /* An hour without blinking */
+        while (now < START + 2 * HOUR) {
+            mScheduler.onFrameDrawn(now);
+            now = mScheduler.getNextFrameTime(now, false);
+        }
+        assertEquals(2 * 60 * 60, mScheduler.getFramesLastHour());
+        assertEquals(60, mScheduler.getFramesThisHour());
+
+        /* An hour later than the next one, the next one had no frames */
+        mScheduler.onFrameDrawn(START + 3 * HOUR);
+        assertEquals(0, mScheduler.getFramesLastHour());
+        assertEquals(1, mScheduler.getFramesThisHour());
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine.watchface;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Picture;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.text.format.DateFormat;
+
+import com.example.android.sunshine.utils.Benchmark;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Checks that {@link WatchFaceClock} shows the same text the watch face used to build on every
+ * frame, and measures drawing the clock's text both ways into a recording Canvas. Results are
+ * logged under this class's name:
+ * <p>
+ *   adb logcat -s TestWatchFaceClock
+ */
+@RunWith(AndroidJUnit4.class)
+public class TestWatchFaceClock {
+
+    private static final String TAG = TestWatchFaceClock.class.getSimpleName();
+
+    /* Two frames a second, like the watch face while interactive, all within one minute */
+    private static final int FRAMES = 120;
+    private static final long FRAME_MILLIS = 500;
+
+    private static final int WIDTH = 320;
+    private static final int HEIGHT = 320;
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+
+    private final Paint mTimePaint = new Paint();
+    private final Paint mDatePaint = new Paint();
+
+    /* The start of a minute */
+    private long mMinute;
+
+    private WatchFaceClock mClock;
+
+    /* What the watch face built on every frame before, see drawLegacyFrame */
+    private final Calendar mCalendar = Calendar.getInstance();
+    private final Date mDate = new Date();
+    private java.text.DateFormat mDateFormat;
+
+    @Before
+    public void setUp() {
+        mTimePaint.setTextSize(40);
+        mDatePaint.setTextSize(18);
+
+        long minuteMillis = TimeUnit.MINUTES.toMillis(1);
+        mMinute = System.currentTimeMillis() / minuteMillis * minuteMillis;
+
+        mClock = new WatchFaceClock(mContext);
+
+        mDateFormat = new SimpleDateFormat("EEE, MMM d yyyy", Locale.getDefault());
+        mDateFormat.setCalendar(mCalendar);
+    }
+
+    @Test
+    public void testTextMatchesLegacyText() {
+        mClock.update(mMinute, mTimePaint, mDatePaint);
+
+        String[] legacy = buildLegacyText(mMinute);
+        assertEquals(legacy[0], mClock.getHourText());
+        assertEquals(legacy[1], mClock.getMinuteText());
+        assertEquals(legacy[2], mClock.getDateText());
+        assertEquals(mTimePaint.measureText(legacy[0] + ":" + legacy[1]),
+                mClock.getTimeWidth(), 0f);
+        assertEquals(mDatePaint.measureText(legacy[2]), mClock.getDateWidth(), 0f);
+    }
+
+    @Test
+    public void testBuildsTextOncePerMinute() {
+        assertTrue(mClock.update(mMinute, mTimePaint, mDatePaint));
+        String hour = mClock.getHourText();
+
+        assertFalse("The text was built again within the minute",
+                mClock.update(mMinute + TimeUnit.SECONDS.toMillis(59), mTimePaint, mDatePaint));
+        assertEquals(hour, mClock.getHourText());
+
+        assertTrue("The text wasn't built for the next minute",
+                mClock.update(mMinute + TimeUnit.MINUTES.toMillis(1), mTimePaint, mDatePaint));
+
+        mClock.invalidate();
+        assertTrue("The text wasn't built again after a change of settings",
+                mClock.update(mMinute + TimeUnit.MINUTES.toMillis(1), mTimePaint, mDatePaint));
+    }
+
+    @Test
+    public void testRenderBenchmark() {
+        Picture picture = new Picture();
+        final Canvas canvas = picture.beginRecording(WIDTH, HEIGHT);
+
+        Benchmark.measure(TAG, "Built every frame", FRAMES, new Runnable() {
+            @Override
+            public void run() {
+                drawFrames(canvas, false);
+            }
+        });
+        Benchmark.measure(TAG, "Built every minute", FRAMES, new Runnable() {
+            @Override
+            public void run() {
+                drawFrames(canvas, true);
+            }
+        });
+
+        picture.endRecording();
+
+        /* Every frame of the minute showed the text built for it */
+        String[] legacy = buildLegacyText(mMinute + (FRAMES - 1) * FRAME_MILLIS);
+        assertEquals(legacy[1], mClock.getMinuteText());
+        assertEquals(legacy[2], mClock.getDateText());
+    }
+
+    /* Draws FRAMES frames, half a second apart */
+    private void drawFrames(Canvas canvas, boolean cached) {
+        for (int frame = 0; frame < FRAMES; frame++) {
+            long now = mMinute + frame * FRAME_MILLIS;
+            if (cached) {
+                drawFrame(canvas, now);
+            } else {
+                drawLegacyFrame(canvas, now);
+            }
+        }
+    }
+
+    /* Draws the clock's text the way SunshineWatchFaceService#onDraw does */
+    private void drawFrame(Canvas canvas, long now) {
+        mClock.update(now, mTimePaint, mDatePaint);
+
+        float x = WIDTH / 2 - mClock.getTimeWidth() / 2;
+        canvas.drawText(mClock.getHourText(), x, 80, mTimePaint);
+        x += mClock.getHourWidth();
+        canvas.drawText(WatchFaceClock.COLON_STRING, x, 80, mTimePaint);
+        x += mTimePaint.getTextSize() / 4;
+        canvas.drawText(mClock.getMinuteText(), x, 80, mTimePaint);
+
+        canvas.drawText(mClock.getDateText(), WIDTH / 2 - mClock.getDateWidth() / 2, 110,
+                mDatePaint);
+    }
+
+    /* Draws the clock's text the way SunshineWatchFaceService#onDraw used to */
+    private void drawLegacyFrame(Canvas canvas, long now) {
+        String[] text = buildLegacyText(now);
+
+        float x = WIDTH / 2 - mTimePaint.measureText(text[0] + ":" + text[1]) / 2;
+        canvas.drawText(text[0], x, 80, mTimePaint);
+        x += mTimePaint.measureText(text[0]);
+        canvas.drawText(":", x, 80, mTimePaint);
+        x += mTimePaint.getTextSize() / 4;
+        canvas.drawText(text[1], x, 80, mTimePaint);
+
+        canvas.drawText(text[2], WIDTH / 2 - mDatePaint.measureText(text[2]) / 2, 110,
+                mDatePaint);
+    }
+
+    /* Returns the hour, minute and date as SunshineWatchFaceService#onDraw used to build them */
+    private String[] buildLegacyText(long now) {
+        mCalendar.setTimeInMillis(now);
+        mDate.setTime(now);
+
+        String hourString;
+        if (DateFormat.is24HourFormat(mContext)) {
+            hourString = String.format("%02d", mCalendar.get(Calendar.HOUR_OF_DAY));
+        } else {
+            int hour = mCalendar.get(Calendar.HOUR);
+            if (hour == 0) {
+                hour = 12;
+            }
+            hourString = String.valueOf(hour);
+        }
+        String minuteString = String.format("%02d", mCalendar.get(Calendar.MINUTE));
+        String dateString = mDateFormat.format(mDate).toUpperCase();
+        return new String[] {hourString, minuteString, dateString};
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine.watchface;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Checks that {@link WeatherSnapshot} reads back the weather it wrote, and that it ignores a
+ * file it can't trust rather than showing garbage.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TestWeatherSnapshot {
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+
+    @Before
+    public void setUp() {
+        WeatherSnapshot.delete(mContext);
+    }
+
+    @After
+    public void tearDown() {
+        WeatherSnapshot.delete(mContext);
+    }
+
+    @Test
+    public void testNoSnapshot() {
+        assertNull(WeatherSnapshot.read(mContext));
+    }
+
+    @Test
+    public void testReadsWhatWasWritten() {
+        byte[] png = createPng();
+        new WeatherSnapshot("21°", "12°", png).write(mContext);
+
+        WeatherSnapshot read = WeatherSnapshot.read(mContext);
+
+        assertNotNull("Couldn't read the snapshot back", read);
+        assertEquals("21°", read.maxTemp);
+        assertEquals("12°", read.minTemp);
+        assertTrue(Arrays.equals(png, read.imagePng));
+
+        Bitmap image = read.decodeImage();
+        assertNotNull("Couldn't decode the image", image);
+        assertEquals(50, image.getWidth());
+    }
+
+    @Test
+    public void testReadsPartialWeather() {
+        new WeatherSnapshot(null, "12°", null).write(mContext);
+
+        WeatherSnapshot read = WeatherSnapshot.read(mContext);
+
+        assertNotNull("Couldn't read the snapshot back", read);
+        assertNull(read.maxTemp);
+        assertEquals("12°", read.minTemp);
+        assertNull(read.imagePng);
+        assertNull(read.decodeImage());
+    }
+
+    @Test
+    public void testTruncatedSnapshotIsIgnored() throws Exception {
+        new WeatherSnapshot("21°", "12°", createPng()).write(mContext);
+
+        RandomAccessFile file = new RandomAccessFile(WeatherSnapshot.getFile(mContext), "rw");
+        file.setLength(file.length() - 1);
+        file.close();
+
+        assertNull(WeatherSnapshot.read(mContext));
+    }
+
+    @Test
+    public void testForeignFileIsIgnored() throws Exception {
+        FileOutputStream outputStream = new FileOutputStream(WeatherSnapshot.getFile(mContext));
+        outputStream.write("not a weather snapshot".getBytes("UTF-8"));
+        outputStream.close();
+
+        assertNull(WeatherSnapshot.read(mContext));
+    }
+
+    /* An image the size of those the phone sends */
+    private static byte[] createPng() {
+        Bitmap bitmap = Bitmap.createBitmap(50, 50, Bitmap.Config.ARGB_8888);
+        bitmap.eraseColor(0xff03a9f4);
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        bitmap.compress(Bitmap.CompressFormat.PNG, 100, png);
+        return png.toByteArray();
+    }
+}
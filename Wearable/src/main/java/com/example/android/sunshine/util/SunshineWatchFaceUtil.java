@@ -3,19 +3,19 @@ package com.example.android.sunshine.util;
 import android.content.Context;
 import android.graphics.Color;
 import android.net.Uri;
+import android.text.TextUtils;
 
 import com.example.android.sunshine.watchface.SunshineWatchFaceService;
 import com.google.android.gms.tasks.OnSuccessListener;
 import com.google.android.gms.tasks.Task;
+import com.google.android.gms.wearable.DataClient;
 import com.google.android.gms.wearable.DataItem;
+import com.google.android.gms.wearable.DataItemBuffer;
 import com.google.android.gms.wearable.DataMap;
 import com.google.android.gms.wearable.DataMapItem;
-import com.google.android.gms.wearable.Node;
 import com.google.android.gms.wearable.PutDataRequest;
 import com.google.android.gms.wearable.Wearable;
 
-import java.util.List;
-
 /**
  * SunshineWatchFaceUtil
  * Created by Adalberto Fernandes Júnior on 19/11/17.
@@ -31,6 +31,12 @@ public class SunshineWatchFaceUtil {
     public static final String MIN_KEY = "min";
     public static final String IMAGE_KEY = "image";
 
+    /**
+     * The day the temperatures are for, in milliseconds since the epoch, which tells the newest
+     * apart when several phones sent weather.
+     */
+    public static final String DATE_KEY = "date";
+
 //    public static final int DEFAULT_TEMP = -999;
 
 
@@ -76,74 +82,72 @@ public class SunshineWatchFaceUtil {
     }
 
 
-    public static void fetConfigDataMap(final Context context, final FetchConfigDataMapCallback callback) {
-        Task<List<Node>> connectedNodes = Wearable.getNodeClient(context).getConnectedNodes();
-
-        connectedNodes.addOnSuccessListener(new OnSuccessListener<List<Node>>() {
+    /**
+     * Fetches the weather every phone put in the Data Layer with a single query, rather than
+     * looking up the connected nodes and then each path of each node in turn.
+     * <p>
+     * The temperatures and the image are merged into one {@link DataMap}, so that the callback
+     * updates the watch face once. If several phones sent weather, the temperatures with the
+     * newest {@link #DATE_KEY} win, along with the image of the same phone.
+     */
+    public static void fetchConfigDataMap(final Context context,
+                                          final FetchConfigDataMapCallback callback) {
+        Uri uri = new Uri.Builder()
+                .scheme(PutDataRequest.WEAR_URI_SCHEME)
+                .authority("*") // any node
+                .path("/")
+                .build();
+
+        Task<DataItemBuffer> dataItemsTask =
+                Wearable.getDataClient(context).getDataItems(uri, DataClient.FILTER_PREFIX);
+
+        dataItemsTask.addOnSuccessListener(new OnSuccessListener<DataItemBuffer>() {
             @Override
-            public void onSuccess(List<Node> nodesList) {
-                for (Node node : nodesList) {
-                    Uri uri = new Uri.Builder()
-                            .scheme(PutDataRequest.WEAR_URI_SCHEME)
-                            .path(SunshineWatchFaceUtil.SUNSHINE_PATH)
-                            .authority(node.getId()) //id which has sent data
-                            .build();
-
-                    Task<DataItem> dataItem = Wearable.getDataClient(context).getDataItem(uri);
-
-                    dataItem.addOnSuccessListener(new OnSuccessListener<DataItem>() {
-                        @Override
-                        public void onSuccess(DataItem dataItem) {
-                            if (dataItem != null) {
-                                DataMapItem dataMapItem = DataMapItem.fromDataItem(dataItem);
-                                DataMap dataMap = dataMapItem.getDataMap();
-
-                                if (dataMap.size() > 0) {
-                                    callback.onConfigDataMapFetched(dataMap);
-                                }
-                            }
+            public void onSuccess(DataItemBuffer dataItems) {
+                DataMap config = new DataMap();
+                try {
+                    /* The newest temperatures, and the node that sent them */
+                    DataMap weather = null;
+                    String weatherNode = null;
+                    for (DataItem dataItem : dataItems) {
+                        if (!SUNSHINE_PATH.equals(dataItem.getUri().getPath())) {
+                            continue;
                         }
-                    });
-                }
-
-            }
-        });
-    }
-
-    public static void fetConfigImageMap(final Context context, final FetchConfigDataMapCallback callback) {
-        Task<List<Node>> connectedNodes = Wearable.getNodeClient(context).getConnectedNodes();
-
+                        DataMap dataMap = DataMapItem.fromDataItem(dataItem).getDataMap();
+                        if (weather == null
+                                || dataMap.getLong(DATE_KEY, 0) > weather.getLong(DATE_KEY, 0)) {
+                            weather = dataMap;
+                            weatherNode = dataItem.getUri().getAuthority();
+                        }
+                    }
 
-        connectedNodes.addOnSuccessListener(new OnSuccessListener<List<Node>>() {
-            @Override
-            public void onSuccess(List<Node> nodesList) {
-                for (Node node : nodesList) {
-                    Uri uri = new Uri.Builder()
-                            .scheme(PutDataRequest.WEAR_URI_SCHEME)
-                            .path(SunshineWatchFaceUtil.IMAGE_PATH)
-                            .authority(node.getId()) //id which has sent data
-                            .build();
-
-                    Task<DataItem> dataItem = Wearable.getDataClient(context).getDataItem(uri);
-
-                    dataItem.addOnSuccessListener(new OnSuccessListener<DataItem>() {
-                        @Override
-                        public void onSuccess(DataItem dataItem) {
-                            if (dataItem != null) {
-                                DataMapItem dataMapItem = DataMapItem.fromDataItem(dataItem);
-                                DataMap dataMap = dataMapItem.getDataMap();
-
-                                if (dataMap.size() > 0) {
-                                    callback.onConfigDataMapFetched(dataMap);
-                                }
-                            }
+                    /* Preferably the image of the same node */
+                    DataMap image = null;
+                    for (DataItem dataItem : dataItems) {
+                        if (!IMAGE_PATH.equals(dataItem.getUri().getPath())) {
+                            continue;
+                        }
+                        if (image == null || TextUtils.equals(weatherNode,
+                                dataItem.getUri().getAuthority())) {
+                            image = DataMapItem.fromDataItem(dataItem).getDataMap();
                         }
-                    });
+                    }
+
+                    if (weather != null) {
+                        config.putAll(weather);
+                    }
+                    if (image != null) {
+                        config.putAll(image);
+                    }
+                } finally {
+                    dataItems.release();
                 }
 
+                if (config.size() > 0) {
+                    callback.onConfigDataMapFetched(config);
+                }
             }
         });
-
     }
 
     /**
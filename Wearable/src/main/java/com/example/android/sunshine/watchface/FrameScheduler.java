@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine.watchface;
+
+import android.util.Log;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides when the watch face has to draw its next frame, and counts the frames it draws.
+ * <p>
+ * What the watch face shows only changes at a few instants: when the colon blinks on or off,
+ * every half second, and when the minute changes. Midnight is the start of a minute as well, so
+ * the date changes with a minute. New weather doesn't have to be waited for, the watch face
+ * draws as soon as it arrives. The timer is therefore set for the next of these instants, rather
+ * than ticking at a fixed rate, and wakes up only once a minute when the colon doesn't blink.
+ * <p>
+ * The number of frames drawn in each hour is logged when the hour ends, and can be read with
+ * {@link #getFramesLastHour()}:
+ * <p>
+ *   adb logcat -s FrameScheduler
+ */
+final class FrameScheduler {
+
+    private static final String TAG = FrameScheduler.class.getSimpleName();
+
+    /**
+     * How long the colon is shown, then hidden, while it blinks.
+     */
+    static final long BLINK_INTERVAL_MILLIS = 500;
+
+    private static final long MINUTE_IN_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final long HOUR_IN_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    /* The hour since the epoch the frames are counted for, -1 before the first frame */
+    private long mHour = -1;
+    private int mFramesThisHour;
+    private int mFramesLastHour;
+
+    /**
+     * @param now         The current time, in milliseconds since the epoch
+     * @param blinkColons Whether the colon blinks, otherwise only the minute changes anything
+     * @return The time of the next instant at which what the watch face shows changes, always
+     * later than now
+     */
+    long getNextFrameTime(long now, boolean blinkColons) {
+        long interval = blinkColons ? BLINK_INTERVAL_MILLIS : MINUTE_IN_MILLIS;
+        return now - now % interval + interval;
+    }
+
+    /**
+     * @param now The time of a frame, in milliseconds since the epoch
+     * @return Whether a blinking colon is shown in that frame, which it is for the first half of
+     * each second so that it blinks on when the time changes
+     */
+    static boolean isColonShown(long now) {
+        return now % (BLINK_INTERVAL_MILLIS * 2) < BLINK_INTERVAL_MILLIS;
+    }
+
+    /**
+     * Counts a frame. Doesn't allocate, except to log the count once an hour.
+     *
+     * @param now The time of the frame, in milliseconds since the epoch
+     */
+    void onFrameDrawn(long now) {
+        long hour = now / HOUR_IN_MILLIS;
+        if (hour != mHour) {
+            if (mHour >= 0) {
+                /* An hour without any frame in between would have had none */
+                mFramesLastHour = hour == mHour + 1 ? mFramesThisHour : 0;
+                Log.d(TAG, mFramesThisHour + " frames drawn in the hour starting at "
+                        + mHour * HOUR_IN_MILLIS);
+            }
+            mHour = hour;
+            mFramesThisHour = 0;
+        }
+        mFramesThisHour++;
+    }
+
+    /**
+     * @return The number of frames drawn in the hour before the current one
+     */
+    int getFramesLastHour() {
+        return mFramesLastHour;
+    }
+
+    /**
+     * @return The number of frames drawn so far in the current hour
+     */
+    int getFramesThisHour() {
+        return mFramesThisHour;
+    }
+}
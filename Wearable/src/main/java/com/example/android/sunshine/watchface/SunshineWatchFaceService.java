@@ -31,6 +31,7 @@ import android.os.AsyncTask;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Message;
+import android.os.PowerManager;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.v4.content.ContextCompat;
@@ -38,7 +39,6 @@ import android.support.wearable.watchface.CanvasWatchFaceService;
 import android.support.wearable.watchface.WatchFaceService;
 import android.support.wearable.watchface.WatchFaceStyle;
 import android.text.TextUtils;
-import android.text.format.DateFormat;
 import android.util.Log;
 import android.view.SurfaceHolder;
 import android.view.WindowInsets;
@@ -58,14 +58,11 @@ import com.google.android.gms.wearable.DataMap;
 import com.google.android.gms.wearable.DataMapItem;
 import com.google.android.gms.wearable.Wearable;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
-import java.util.Date;
-import java.util.Locale;
-import java.util.TimeZone;
+import java.util.Arrays;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeUnit;
 
 /**
  * SunshineDataLayerListenerService
@@ -80,17 +77,6 @@ public class SunshineWatchFaceService extends CanvasWatchFaceService {
     private static final Typeface NORMAL_TYPEFACE =
             Typeface.create(Typeface.SANS_SERIF, Typeface.NORMAL);
 
-    /**
-     * Update rate in milliseconds for normal (not ambient and not mute) mode. We update twice
-     * a second to blink the colons.
-     */
-    private static final long NORMAL_UPDATE_RATE_MS = 500;
-
-    /**
-     * Update rate in milliseconds for mute mode. We update every minute, like in ambient mode.
-     */
-    private static final long MUTE_UPDATE_RATE_MS = TimeUnit.MINUTES.toMillis(1);
-
 
     @Override
     public Engine onCreateEngine() {
@@ -100,8 +86,6 @@ public class SunshineWatchFaceService extends CanvasWatchFaceService {
     private class Engine extends CanvasWatchFaceService.Engine implements
             GoogleApiClient.ConnectionCallbacks,
             GoogleApiClient.OnConnectionFailedListener, DataClient.OnDataChangedListener {
-        static final String COLON_STRING = ":";
-
         /**
          * Alpha value for drawing time when in mute mode.
          */
@@ -115,12 +99,12 @@ public class SunshineWatchFaceService extends CanvasWatchFaceService {
         static final int MSG_UPDATE_TIME = 0;
 
         /**
-         * How often {@link #mUpdateTimeHandler} ticks in milliseconds.
+         * Decides when {@link #mUpdateTimeHandler} ticks, and counts the frames drawn.
          */
-        long mInteractiveUpdateRateMs = NORMAL_UPDATE_RATE_MS;
+        final FrameScheduler mFrameScheduler = new FrameScheduler();
 
         /**
-         * Handler to update the time periodically in interactive mode.
+         * Handler to update the time in interactive mode, whenever what it shows changes.
          */
         final Handler mUpdateTimeHandler = new Handler() {
             @Override
@@ -131,8 +115,8 @@ public class SunshineWatchFaceService extends CanvasWatchFaceService {
                         invalidate();
                         if (shouldTimerBeRunning()) {
                             long timeMs = System.currentTimeMillis();
-                            long delayMs =
-                                    mInteractiveUpdateRateMs - (timeMs % mInteractiveUpdateRateMs);
+                            long delayMs = mFrameScheduler.getNextFrameTime(
+                                    timeMs, shouldBlinkColons()) - timeMs;
                             mUpdateTimeHandler.sendEmptyMessageDelayed(MSG_UPDATE_TIME, delayMs);
                         }
                         break;
@@ -147,13 +131,16 @@ public class SunshineWatchFaceService extends CanvasWatchFaceService {
                 .build();
 
         /**
-         * Handles time zone and locale changes.
+         * Handles time zone, locale, 12/24 hour setting and battery saver changes.
          */
         final BroadcastReceiver mReceiver = new BroadcastReceiver() {
             @Override
             public void onReceive(Context context, Intent intent) {
-                mCalendar.setTimeZone(TimeZone.getDefault());
-                initFormats();
+                if (PowerManager.ACTION_POWER_SAVE_MODE_CHANGED.equals(intent.getAction())) {
+                    updatePowerSaveMode();
+                } else {
+                    mClock.invalidate();
+                }
                 invalidate();
             }
         };
@@ -178,10 +165,36 @@ public class SunshineWatchFaceService extends CanvasWatchFaceService {
         float mColonWidth;
         boolean mMute;
 
-        Calendar mCalendar;
-        Date mDate;
-        //SimpleDateFormat mDayOfWeekFormat;
-        java.text.DateFormat mDateFormat;
+        /**
+         * Whether the battery saver is on, in which case the colons don't blink either, so that
+         * the watch face only wakes up once a minute.
+         */
+        boolean mPowerSaveMode;
+
+        /**
+         * The text of the clock, built once a minute rather than on every frame.
+         */
+        WatchFaceClock mClock;
+
+        /**
+         * The temperatures as drawn, and the widths onDraw needs, measured when they change.
+         */
+        String mMinTempText = " ";
+        float mMaxTempWidth;
+        float mTempPlaceholderWidth;
+
+        /**
+         * The background, the line, the temperatures and the weather image, which only change
+         * with the weather or the mode, drawn once into a bitmap that every frame then copies.
+         * Created by the first frame, and again whenever the size of the surface changes.
+         */
+        Bitmap mStaticLayer;
+        Canvas mStaticLayerCanvas;
+
+        /**
+         * Whether mStaticLayer shows the current weather and mode, see invalidateStaticLayer.
+         */
+        boolean mStaticLayerValid;
 
         boolean mShouldDrawColons;
         float mXOffset;
@@ -218,6 +231,16 @@ public class SunshineWatchFaceService extends CanvasWatchFaceService {
         private String minTemp;
         private boolean mAmbientMode;
 
+        /**
+         * The weather image as the phone sent it, kept to store it in the {@link WeatherSnapshot}.
+         */
+        byte[] mWeatherImagePng;
+
+        /**
+         * Whether the weather changed since the {@link WeatherSnapshot} was last written.
+         */
+        boolean mSnapshotChanged;
+
         @Override
         public void onCreate(SurfaceHolder holder) {
             Log.d(TAG, "onCreate");
@@ -251,9 +274,17 @@ public class SunshineWatchFaceService extends CanvasWatchFaceService {
 
             // mWeatherImageBitmap = getBitmap(SunshineWatchFaceService.this, R.drawable.ic_clean);
 
-            mCalendar = Calendar.getInstance();
-            mDate = new Date();
-            initFormats();
+            mClock = new WatchFaceClock(SunshineWatchFaceService.this);
+
+            // Show the weather we last received right away. The data items are fetched again once
+            // we are connected, and replace it if the phone sent anything newer.
+            WeatherSnapshot snapshot = WeatherSnapshot.read(SunshineWatchFaceService.this);
+            if (snapshot != null) {
+                setMaxTemp(snapshot.maxTemp);
+                setMinTemp(snapshot.minTemp);
+                setWeatherImage(snapshot.imagePng, snapshot.decodeImage());
+                mSnapshotChanged = false;
+            }
         }
 
         private Paint createLinePaint(int defaultInteractiveColor) {
@@ -267,6 +298,8 @@ public class SunshineWatchFaceService extends CanvasWatchFaceService {
         @Override
         public void onDestroy() {
             mUpdateTimeHandler.removeMessages(MSG_UPDATE_TIME);
+            mStaticLayer = null;
+            mStaticLayerCanvas = null;
             super.onDestroy();
         }
 
@@ -293,8 +326,8 @@ public class SunshineWatchFaceService extends CanvasWatchFaceService {
                 registerReceiver();
 
                 // Update time zone and date formats, in case they changed while we weren't visible.
-                mCalendar.setTimeZone(TimeZone.getDefault());
-                initFormats();
+                mClock.invalidate();
+                updatePowerSaveMode();
             } else {
                 unregisterReceiver();
 
@@ -309,11 +342,6 @@ public class SunshineWatchFaceService extends CanvasWatchFaceService {
             updateTimer();
         }
 
-        private void initFormats() {
-            mDateFormat = new SimpleDateFormat("EEE, MMM d yyyy", Locale.getDefault());
-            mDateFormat.setCalendar(mCalendar);
-        }
-
         private void registerReceiver() {
             Log.d(TAG, "registerReceiver");
             if (mRegisteredReceiver) {
@@ -322,6 +350,9 @@ public class SunshineWatchFaceService extends CanvasWatchFaceService {
             mRegisteredReceiver = true;
             IntentFilter filter = new IntentFilter(Intent.ACTION_TIMEZONE_CHANGED);
             filter.addAction(Intent.ACTION_LOCALE_CHANGED);
+            // Also sent when the user switches between 12 and 24 hour time.
+            filter.addAction(Intent.ACTION_TIME_CHANGED);
+            filter.addAction(PowerManager.ACTION_POWER_SAVE_MODE_CHANGED);
             SunshineWatchFaceService.this.registerReceiver(mReceiver, filter);
         }
 
@@ -358,7 +389,13 @@ public class SunshineWatchFaceService extends CanvasWatchFaceService {
             mMaxPaint.setTextSize(resources.getDimension(R.dimen.digital_max_min_text_size));
             mMinPaint.setTextSize(resources.getDimension(R.dimen.digital_max_min_text_size));
 
-            mColonWidth = mColonPaint.measureText(COLON_STRING);
+            mColonWidth = mColonPaint.measureText(WatchFaceClock.COLON_STRING);
+            mTempPlaceholderWidth = mMaxPaint.measureText("00˚");
+            mMaxTempWidth = maxTemp != null ? mMaxPaint.measureText(maxTemp) : 0;
+
+            // The text of the clock was measured with the old sizes.
+            mClock.invalidate();
+            invalidateStaticLayer();
         }
 
         @Override
@@ -373,6 +410,8 @@ public class SunshineWatchFaceService extends CanvasWatchFaceService {
 
             Log.d(TAG, "onPropertiesChanged: burn-in protection = " + burnInProtection
                     + ", low-bit ambient = " + mLowBitAmbient);
+
+            invalidateStaticLayer();
         }
 
         @Override
@@ -418,7 +457,7 @@ public class SunshineWatchFaceService extends CanvasWatchFaceService {
                 mColonPaint.setAntiAlias(antiAlias);
             }
 
-
+            invalidateStaticLayer();
             invalidate();
 
             updateTimer();
@@ -437,8 +476,6 @@ public class SunshineWatchFaceService extends CanvasWatchFaceService {
             super.onInterruptionFilterChanged(interruptionFilter);
 
             boolean inMuteMode = interruptionFilter == WatchFaceService.INTERRUPTION_FILTER_NONE;
-            // We only need to update once a minute in mute mode.
-            setInteractiveUpdateRateMs(inMuteMode ? MUTE_UPDATE_RATE_MS : NORMAL_UPDATE_RATE_MS);
 
             if (mMute != inMuteMode) {
                 mMute = inMuteMode;
@@ -450,89 +487,113 @@ public class SunshineWatchFaceService extends CanvasWatchFaceService {
                 mLinePaint.setAlpha(alpha);
                 mMaxPaint.setAlpha(alpha);
                 mAmPmPaint.setAlpha(alpha);
+                invalidateStaticLayer();
                 invalidate();
+
+                // We only need to update once a minute in mute mode.
+                updateTimer();
             }
         }
 
-        public void setInteractiveUpdateRateMs(long updateRateMs) {
-            if (updateRateMs == mInteractiveUpdateRateMs) {
+        private void updatePowerSaveMode() {
+            PowerManager powerManager = (PowerManager) getSystemService(Context.POWER_SERVICE);
+            boolean powerSaveMode = powerManager.isPowerSaveMode();
+            if (powerSaveMode == mPowerSaveMode) {
                 return;
             }
-            mInteractiveUpdateRateMs = updateRateMs;
+            mPowerSaveMode = powerSaveMode;
+            Log.d(TAG, "updatePowerSaveMode: " + powerSaveMode);
 
-            // Stop and restart the timer so the new update rate takes effect immediately.
-            if (shouldTimerBeRunning()) {
-                updateTimer();
-            }
+            // Stop and restart the timer so the colons start or stop blinking right away.
+            updateTimer();
         }
 
-        private String formatTwoDigitNumber(int hour) {
-            return String.format("%02d", hour);
+        /**
+         * Returns whether the colons blink, which takes a frame every half second. In ambient,
+         * mute and battery saver modes they are always drawn, and a frame a minute is enough.
+         */
+        private boolean shouldBlinkColons() {
+            return !isInAmbientMode() && !mMute && !mPowerSaveMode;
         }
 
+        /**
+         * Makes the next frame draw the static layer again. Call it whenever the weather, the
+         * insets, the ambient or the mute mode change what the layer shows.
+         */
+        private void invalidateStaticLayer() {
+            mStaticLayerValid = false;
+        }
 
+        /**
+         * Draws a frame. Everything that allocates, such as formatting and measuring text, is done
+         * when what it depends on changes, so that drawing the other frames allocates nothing.
+         */
         @Override
         public void onDraw(Canvas canvas, Rect bounds) {
             long now = System.currentTimeMillis();
-            mCalendar.setTimeInMillis(now);
-            mDate.setTime(now);
-            boolean is24Hour = DateFormat.is24HourFormat(SunshineWatchFaceService.this);
-
+            mFrameScheduler.onFrameDrawn(now);
+            mClock.update(now, mHourPaint, mDatePaint);
 
             // Show colons for the first half of each second so the colons blink on when the time
             // updates.
-            mShouldDrawColons = (System.currentTimeMillis() % 1000) < 500;
-
-            // Draw the background.
-            canvas.drawRect(0, 0, bounds.width(), bounds.height(), mBackgroundPaint);
+            mShouldDrawColons = FrameScheduler.isColonShown(now);
+
+            // Draw the background, the weather and the line, drawing them first if they changed.
+            if (mStaticLayer == null
+                    || mStaticLayer.getWidth() != bounds.width()
+                    || mStaticLayer.getHeight() != bounds.height()) {
+                mStaticLayer = Bitmap.createBitmap(
+                        bounds.width(), bounds.height(), Bitmap.Config.ARGB_8888);
+                mStaticLayerCanvas = new Canvas(mStaticLayer);
+                mStaticLayerValid = false;
+            }
+            if (!mStaticLayerValid) {
+                drawStaticLayer(mStaticLayerCanvas, bounds);
+                mStaticLayerValid = true;
+            }
+            canvas.drawBitmap(mStaticLayer, 0, 0, null);
 
             // Draw the hours.
             float x = mXOffset;
             float centerX = bounds.centerX();
 
-            // String hours.
-            String hourString;
-            if (is24Hour) {
-                hourString = formatTwoDigitNumber(mCalendar.get(Calendar.HOUR_OF_DAY));
-            } else {
-                int hour = mCalendar.get(Calendar.HOUR);
-                if (hour == 0) {
-                    hour = 12;
-                }
-                hourString = String.valueOf(hour);
-            }
-
-            // String minutes.
-            String minuteString = formatTwoDigitNumber(mCalendar.get(Calendar.MINUTE));
-
-            x += centerX - mXOffset - mHourPaint.measureText(hourString + COLON_STRING + minuteString) / 2;
+            x += centerX - mXOffset - mClock.getTimeWidth() / 2;
 
             // Draw hour
-            canvas.drawText(hourString, x, mYOffset, mHourPaint);
+            canvas.drawText(mClock.getHourText(), x, mYOffset, mHourPaint);
 
-            x += mMinutePaint.measureText(hourString);
+            x += mClock.getHourWidth();
 
             // Draw colon.
-            // In ambient and mute modes, always draw the first colon. Otherwise, draw the
-            // first colon for the first half of each second.
-            if (isInAmbientMode() || mMute || mShouldDrawColons) {
-                canvas.drawText(COLON_STRING, x, mYOffset, mColonPaint);
+            // In ambient, mute and battery saver modes, always draw the first colon. Otherwise,
+            // draw the first colon for the first half of each second.
+            if (!shouldBlinkColons() || mShouldDrawColons) {
+                canvas.drawText(WatchFaceClock.COLON_STRING, x, mYOffset, mColonPaint);
             }
             x += mColonWidth;
 
             // Draw minute.
-            canvas.drawText(minuteString, x, mYOffset, mMinutePaint);
+            canvas.drawText(mClock.getMinuteText(), x, mYOffset, mMinutePaint);
 
             // Only render the day of week and date if there is no peek card, so they do not bleed
             // into each other in ambient mode.
             if (getPeekCardPosition().isEmpty()) {
                 // Date
-                String dateString = mDateFormat.format(mDate).toUpperCase();
-                float centerXdateAlign = centerX - mDatePaint.measureText(dateString) / 2;
+                float centerXdateAlign = centerX - mClock.getDateWidth() / 2;
                 canvas.drawText(
-                        dateString,
+                        mClock.getDateText(),
                         centerXdateAlign, mYOffset + mLineHeight * 1.2f, mDatePaint);
             }
+        }
+
+        /**
+         * Draws what doesn't change with the time, see mStaticLayer.
+         */
+        private void drawStaticLayer(Canvas canvas, Rect bounds) {
+            float centerX = bounds.centerX();
+
+            // Draw the background.
+            canvas.drawRect(0, 0, bounds.width(), bounds.height(), mBackgroundPaint);
 
             // Line
             float centerXdateAlign = centerX - mXOffset * 1.6f / 2;
@@ -540,7 +601,6 @@ public class SunshineWatchFaceService extends CanvasWatchFaceService {
 
             // Max temp
             float maxTempPosition = 0;
-            String maxTemp = this.maxTemp != null ? this.maxTemp : "";
             if (!TextUtils.isEmpty(maxTemp)) {
                 maxTempPosition = mYOffset * 2f;
                 canvas.drawText(
@@ -548,17 +608,12 @@ public class SunshineWatchFaceService extends CanvasWatchFaceService {
                         centerXdateAlign, maxTempPosition, mMaxPaint);
             }
 
-            float measureMaxText = mMaxPaint.measureText(maxTemp);
-
             // Min temp
-            String minTemp = this.minTemp != null ? " " + this.minTemp : " ";
-            if (!TextUtils.isEmpty(minTemp)) {
-                canvas.drawText(
-                        minTemp,
-                        centerXdateAlign + measureMaxText, mYOffset * 2f, mMinPaint);
-            }
+            canvas.drawText(
+                    mMinTempText,
+                    centerXdateAlign + mMaxTempWidth, mYOffset * 2f, mMinPaint);
 
-            float measureDistImgToText = mMaxPaint.measureText("00˚");
+            float measureDistImgToText = mTempPlaceholderWidth;
             // image
             if (!mAmbientMode && mWeatherImageBitmap != null) {
                 canvas.drawBitmap(mWeatherImageBitmap, centerXdateAlign - measureDistImgToText * 1.5f,
@@ -591,32 +646,67 @@ public class SunshineWatchFaceService extends CanvasWatchFaceService {
         @Override // DataApi.DataListener
         public void onDataChanged(DataEventBuffer dataEvents) {
             Log.d(TAG, "onDataChanged(): " + dataEvents);
+
+            // The temperatures and the image often change together, show them together.
+            DataMap config = new DataMap();
             for (DataEvent dataEvent : dataEvents) {
                 if (dataEvent.getType() == DataEvent.TYPE_CHANGED) {
-                    String path = dataEvent.getDataItem().getUri().getPath();
-                    if (SunshineWatchFaceUtil.IMAGE_PATH.equals(path)) {
-                        DataMapItem dataMapItem = DataMapItem.fromDataItem(dataEvent.getDataItem());
-                        Asset photoAsset = dataMapItem.getDataMap()
-                                .getAsset(SunshineWatchFaceUtil.IMAGE_KEY);
-                        // Loads image .
-                        new LoadBitmapAsyncTask().execute(photoAsset);
-
-                    } else if (SunshineWatchFaceUtil.SUNSHINE_PATH.equals(path)) {
-                        Log.d(TAG, "Data Changed for COUNT_PATH");
-                        DataItem dataItem = dataEvent.getDataItem();
-                        DataMapItem dataMapItem = DataMapItem.fromDataItem(dataItem);
-                        DataMap config = dataMapItem.getDataMap();
-                        updateUiForConfigDataMap(config);
-                        Log.d(TAG, "Config DataItem updated:" + config);
+                    DataItem dataItem = dataEvent.getDataItem();
+                    String path = dataItem.getUri().getPath();
+                    if (SunshineWatchFaceUtil.IMAGE_PATH.equals(path)
+                            || SunshineWatchFaceUtil.SUNSHINE_PATH.equals(path)) {
+                        config.putAll(DataMapItem.fromDataItem(dataItem).getDataMap());
+                        Log.d(TAG, "Config DataItem updated: " + path);
                     } else {
                         Log.d(TAG, "Unrecognized path: " + path);
                     }
 
                 }
             }
+
+            if (config.size() > 0) {
+                showConfigDataMap(config);
+            }
+        }
+
+        /*
+         * Shows the weather of a config DataMap. If it holds an image, the image is read from its
+         * asset and decoded in the background first, so that the temperatures and the image are
+         * shown in one update, never the new temperatures next to the old image.
+         */
+        private void showConfigDataMap(DataMap config) {
+            Asset photoAsset = config.getAsset(SunshineWatchFaceUtil.IMAGE_KEY);
+            if (photoAsset != null) {
+                new LoadBitmapAsyncTask(config).execute(photoAsset);
+            } else {
+                showWeather(config, null, null);
+            }
+        }
+
+        /*
+         * Applies the temperatures of a config DataMap and, if not null, the image decoded from
+         * its asset, then draws the watch face once if anything changed.
+         */
+        private void showWeather(DataMap config, byte[] png, Bitmap bitmap) {
+            boolean uiUpdated = updateUiForConfigDataMap(config);
+            if (png != null && setWeatherImage(png, bitmap)) {
+                uiUpdated = true;
+            }
+
+            if (uiUpdated) {
+                // The timer may not tick for another minute, show the new weather now.
+                invalidate();
+            }
+            saveSnapshotIfChanged();
         }
 
-        private void updateUiForConfigDataMap(final DataMap dataMap) {
+        /*
+         * Applies every key of a config DataMap, except the image, which showConfigDataMap reads
+         * beforehand.
+         *
+         * @return Whether the watch face has to be drawn again
+         */
+        private boolean updateUiForConfigDataMap(final DataMap dataMap) {
             boolean uiUpdated = false;
             for (String configKey : dataMap.keySet()) {
                 if (!dataMap.containsKey(configKey)) {
@@ -627,9 +717,7 @@ public class SunshineWatchFaceService extends CanvasWatchFaceService {
                     uiUpdated = true;
                 }
             }
-            if (uiUpdated) {
-                invalidate();
-            }
+            return uiUpdated;
         }
 
         private boolean updateUiForKey(DataMap dataMap, String configKey) {
@@ -645,10 +733,12 @@ public class SunshineWatchFaceService extends CanvasWatchFaceService {
 
                 Log.d(TAG, "Found watch face dataMap key: " + configKey + " -> "
                         + minTemp);
+            } else if (configKey.equals(SunshineWatchFaceUtil.DATE_KEY)) {
+                // Only used to pick the newest weather, nothing to show.
+                return false;
             } else if (configKey.equals(SunshineWatchFaceUtil.IMAGE_KEY)) {
-                // Loads image on background thread.
-                Asset photoAsset = dataMap.getAsset(SunshineWatchFaceUtil.IMAGE_KEY);
-                new LoadBitmapAsyncTask().execute(photoAsset);
+                // Already loaded on a background thread, see showConfigDataMap.
+                return false;
             } else {
                 Log.w(TAG, "Ignoring unknown config key: " + configKey);
                 return false;
@@ -666,19 +756,13 @@ public class SunshineWatchFaceService extends CanvasWatchFaceService {
         }
 
         private void updateConfigDataItemAndUiOnStartup() {
-            SunshineWatchFaceUtil.fetConfigDataMap(getApplicationContext(), new SunshineWatchFaceUtil.FetchConfigDataMapCallback() {
-                @Override
-                public void onConfigDataMapFetched(DataMap startupConfig) {
-                    updateUiForConfigDataMap(startupConfig);
-                }
-            });
-
-            SunshineWatchFaceUtil.fetConfigImageMap(getApplicationContext(), new SunshineWatchFaceUtil.FetchConfigDataMapCallback() {
-                @Override
-                public void onConfigDataMapFetched(DataMap startupConfig) {
-                    updateUiForConfigDataMap(startupConfig);
-                }
-            });
+            SunshineWatchFaceUtil.fetchConfigDataMap(getApplicationContext(),
+                    new SunshineWatchFaceUtil.FetchConfigDataMapCallback() {
+                        @Override
+                        public void onConfigDataMapFetched(DataMap startupConfig) {
+                            showConfigDataMap(startupConfig);
+                        }
+                    });
         }
 
         @Override
@@ -692,25 +776,80 @@ public class SunshineWatchFaceService extends CanvasWatchFaceService {
         }
 
         public void setMaxTemp(String maxTemp) {
+            if (TextUtils.equals(maxTemp, this.maxTemp)) {
+                return;
+            }
             this.maxTemp = maxTemp;
+            mMaxTempWidth = maxTemp != null ? mMaxPaint.measureText(maxTemp) : 0;
+            mSnapshotChanged = true;
+            invalidateStaticLayer();
         }
 
         public void setMinTemp(String minTemp) {
+            if (TextUtils.equals(minTemp, this.minTemp)) {
+                return;
+            }
             this.minTemp = minTemp;
+            mMinTempText = minTemp != null ? " " + minTemp : " ";
+            mSnapshotChanged = true;
+            invalidateStaticLayer();
         }
 
-        public void setWeatherImageBitmap(Bitmap bitmap) {
-            this.mWeatherImageBitmap = bitmap;
+        /**
+         * @param png    The weather image as the phone sent it
+         * @param bitmap The image decoded
+         * @return Whether the image changed
+         */
+        public boolean setWeatherImage(byte[] png, Bitmap bitmap) {
+            if (Arrays.equals(png, mWeatherImagePng)) {
+                return false;
+            }
+            mWeatherImagePng = png;
+            mWeatherImageBitmap = bitmap;
+            mSnapshotChanged = true;
+            invalidateStaticLayer();
+            return true;
+        }
+
+        /**
+         * Writes the weather to the {@link WeatherSnapshot} in the background, if it changed. The
+         * writes run one after another, so the last one written is the latest weather.
+         */
+        private void saveSnapshotIfChanged() {
+            if (!mSnapshotChanged) {
+                return;
+            }
+            mSnapshotChanged = false;
+
+            final WeatherSnapshot snapshot =
+                    new WeatherSnapshot(maxTemp, minTemp, mWeatherImagePng);
+            final Context context = getApplicationContext();
+            AsyncTask.SERIAL_EXECUTOR.execute(new Runnable() {
+                @Override
+                public void run() {
+                    snapshot.write(context);
+                }
+            });
         }
 
         /*
-         * Extracts {@link android.graphics.Bitmap} data from the
-         * {@link com.google.android.gms.wearable.Asset}
+         * Extracts the PNG of the {@link com.google.android.gms.wearable.Asset}, and decodes it
+         * into a {@link android.graphics.Bitmap}
          */
-        private class LoadBitmapAsyncTask extends AsyncTask<Asset, Void, Bitmap> {
+        private class LoadBitmapAsyncTask extends AsyncTask<Asset, Void, byte[]> {
+
+            /* The config the asset came with, shown along with the image */
+            private final DataMap mConfig;
+
+            /* Decoded from the PNG in the background, read in onPostExecute */
+            private Bitmap mBitmap;
+
+            LoadBitmapAsyncTask(DataMap config) {
+                mConfig = config;
+            }
 
             @Override
-            protected Bitmap doInBackground(Asset... params) {
+            protected byte[] doInBackground(Asset... params) {
 
                 if (params.length > 0) {
 
@@ -730,7 +869,9 @@ public class SunshineWatchFaceService extends CanvasWatchFaceService {
                         InputStream assetInputStream = getFdForAssetResponse.getInputStream();
 
                         if (assetInputStream != null) {
-                            return BitmapFactory.decodeStream(assetInputStream);
+                            byte[] png = readFully(assetInputStream);
+                            mBitmap = BitmapFactory.decodeByteArray(png, 0, png.length);
+                            return mBitmap != null ? png : null;
 
                         } else {
                             Log.w(TAG, "Requested an unknown Asset.");
@@ -744,6 +885,10 @@ public class SunshineWatchFaceService extends CanvasWatchFaceService {
                     } catch (InterruptedException exception) {
                         Log.e(TAG, "Failed retrieving asset, interrupt occurred: " + exception);
                         return null;
+
+                    } catch (IOException exception) {
+                        Log.e(TAG, "Failed reading asset: " + exception);
+                        return null;
                     }
 
                 } else {
@@ -753,11 +898,24 @@ public class SunshineWatchFaceService extends CanvasWatchFaceService {
             }
 
             @Override
-            protected void onPostExecute(Bitmap bitmap) {
+            protected void onPostExecute(byte[] png) {
+
+                // Show the temperatures even if the image couldn't be loaded.
+                Log.d(TAG, "Setting weather" + (png != null ? " and image" : ""));
+                showWeather(mConfig, png, mBitmap);
+            }
 
-                if (bitmap != null) {
-                    Log.d(TAG, "Setting weather image");
-                    setWeatherImageBitmap(bitmap);
+            private byte[] readFully(InputStream inputStream) throws IOException {
+                try {
+                    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                    byte[] buffer = new byte[4096];
+                    int read;
+                    while ((read = inputStream.read(buffer)) != -1) {
+                        bytes.write(buffer, 0, read);
+                    }
+                    return bytes.toByteArray();
+                } finally {
+                    inputStream.close();
                 }
             }
         }
@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine.watchface;
+
+import android.content.Context;
+import android.graphics.Paint;
+import android.text.format.DateFormat;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The text of the watch face's clock, such as "10", "09" and "SAT, JAN 20 2018", along with
+ * how wide it is drawn.
+ * <p>
+ * The watch face draws twice a second to blink the colon, but the text only changes once a
+ * minute. It is built and measured on the first frame of every minute, and every other frame
+ * only checks the minute and reads what was kept, which allocates nothing.
+ * <p>
+ * The text also depends on the locale, the time zone, the 12/24 hour setting and the size of
+ * the paints. The watch face calls {@link #invalidate()} when any of them changes.
+ */
+final class WatchFaceClock {
+
+    static final String COLON_STRING = ":";
+
+    private static final long MINUTE_IN_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private final Context mContext;
+
+    private final Calendar mCalendar = Calendar.getInstance();
+    private final Date mDate = new Date();
+
+    /* Created on demand, and dropped by invalidate */
+    private java.text.DateFormat mDateFormat;
+
+    /* The minute since the epoch the text was built for, Long.MIN_VALUE for none */
+    private long mMinute = Long.MIN_VALUE;
+
+    private String mHourText;
+    private String mMinuteText;
+    private String mDateText;
+
+    private float mTimeWidth;
+    private float mHourWidth;
+    private float mDateWidth;
+
+    /**
+     * @param context Used to read the 12/24 hour setting
+     */
+    WatchFaceClock(Context context) {
+        mContext = context.getApplicationContext();
+    }
+
+    /**
+     * Makes the next call to {@link #update} build the text again, with the current locale,
+     * time zone and 12/24 hour setting.
+     */
+    void invalidate() {
+        mMinute = Long.MIN_VALUE;
+        mDateFormat = null;
+    }
+
+    /**
+     * Brings the text up to date with a time, building and measuring it only if the minute
+     * changed since the last call.
+     *
+     * @param now       Time of the frame, in milliseconds since the epoch
+     * @param timePaint Paint the hours and minutes are drawn with
+     * @param datePaint Paint the date is drawn with
+     * @return Whether the text was built again
+     */
+    boolean update(long now, Paint timePaint, Paint datePaint) {
+        long minute = now / MINUTE_IN_MILLIS;
+        if (minute == mMinute) {
+            return false;
+        }
+        mMinute = minute;
+
+        if (mDateFormat == null) {
+            mCalendar.setTimeZone(TimeZone.getDefault());
+            mDateFormat = new SimpleDateFormat("EEE, MMM d yyyy", Locale.getDefault());
+            mDateFormat.setCalendar(mCalendar);
+        }
+        mCalendar.setTimeInMillis(now);
+        mDate.setTime(now);
+
+        /* Read once a minute, so that a missed change of the setting lasts a minute at most */
+        if (DateFormat.is24HourFormat(mContext)) {
+            mHourText = formatTwoDigitNumber(mCalendar.get(Calendar.HOUR_OF_DAY));
+        } else {
+            int hour = mCalendar.get(Calendar.HOUR);
+            if (hour == 0) {
+                hour = 12;
+            }
+            mHourText = String.valueOf(hour);
+        }
+        mMinuteText = formatTwoDigitNumber(mCalendar.get(Calendar.MINUTE));
+        mDateText = mDateFormat.format(mDate).toUpperCase();
+
+        mTimeWidth = timePaint.measureText(mHourText + COLON_STRING + mMinuteText);
+        mHourWidth = timePaint.measureText(mHourText);
+        mDateWidth = datePaint.measureText(mDateText);
+        return true;
+    }
+
+    String getHourText() {
+        return mHourText;
+    }
+
+    String getMinuteText() {
+        return mMinuteText;
+    }
+
+    String getDateText() {
+        return mDateText;
+    }
+
+    /**
+     * @return Width of the hours, the colon and the minutes together
+     */
+    float getTimeWidth() {
+        return mTimeWidth;
+    }
+
+    float getHourWidth() {
+        return mHourWidth;
+    }
+
+    float getDateWidth() {
+        return mDateWidth;
+    }
+
+    private static String formatTwoDigitNumber(int number) {
+        return String.format("%02d", number);
+    }
+}
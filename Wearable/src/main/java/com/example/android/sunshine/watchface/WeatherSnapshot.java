@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine.watchface;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.support.annotation.WorkerThread;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * The last weather the watch received, kept in a small file so that the watch face can show it
+ * as soon as it starts, rather than blank temperatures until it is connected to the phone and
+ * has fetched the data items and their asset again.
+ * <p>
+ * The weather image is kept as the PNG the phone sent, which is far smaller than the decoded
+ * bitmap and is decoded once when the snapshot is read.
+ */
+final class WeatherSnapshot {
+
+    private static final String TAG = WeatherSnapshot.class.getSimpleName();
+
+    private static final String FILE_NAME = "weather_snapshot.bin";
+
+    /*
+     * File layout, written with DataOutputStream:
+     *
+     *   int magic | boolean has max | UTF max | boolean has min | UTF min |
+     *   int length of the image, 0 for none | the image's PNG
+     */
+    private static final int MAGIC = 0x57535331;
+
+    /* Far larger than the images the phone sends, anything above is a damaged file */
+    private static final int MAX_IMAGE_LENGTH = 1024 * 1024;
+
+    /* The temperatures as the phone formatted them, null if it didn't send them yet */
+    final String maxTemp;
+    final String minTemp;
+
+    /* The weather image, as the phone sent it, null if it didn't send it yet */
+    final byte[] imagePng;
+
+    WeatherSnapshot(String maxTemp, String minTemp, byte[] imagePng) {
+        this.maxTemp = maxTemp;
+        this.minTemp = minTemp;
+        this.imagePng = imagePng;
+    }
+
+    /**
+     * @return The weather image, or null if there is none or it can't be decoded
+     */
+    Bitmap decodeImage() {
+        if (imagePng == null) {
+            return null;
+        }
+        return BitmapFactory.decodeByteArray(imagePng, 0, imagePng.length);
+    }
+
+    /**
+     * Reads the snapshot. The file is a few kilobytes, small enough to read while the watch face
+     * is created.
+     *
+     * @param context Used to find the app's files directory
+     * @return The weather the watch last received, or null if there is no usable snapshot
+     */
+    static WeatherSnapshot read(Context context) {
+        File file = getFile(context);
+        if (!file.exists()) {
+            return null;
+        }
+
+        DataInputStream inputStream = null;
+        try {
+            inputStream = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(file)));
+            if (inputStream.readInt() != MAGIC) {
+                Log.w(TAG, "Ignoring damaged snapshot " + file);
+                return null;
+            }
+
+            String maxTemp = inputStream.readBoolean() ? inputStream.readUTF() : null;
+            String minTemp = inputStream.readBoolean() ? inputStream.readUTF() : null;
+
+            byte[] imagePng = null;
+            int imageLength = inputStream.readInt();
+            if (imageLength < 0 || imageLength > MAX_IMAGE_LENGTH) {
+                Log.w(TAG, "Ignoring damaged snapshot " + file);
+                return null;
+            } else if (imageLength > 0) {
+                imagePng = new byte[imageLength];
+                inputStream.readFully(imagePng);
+            }
+            return new WeatherSnapshot(maxTemp, minTemp, imagePng);
+        } catch (IOException e) {
+            /* Includes a file cut short, which readInt and readFully report with EOFException */
+            Log.e(TAG, "Unable to read " + file, e);
+            return null;
+        } finally {
+            close(inputStream);
+        }
+    }
+
+    /**
+     * Replaces the snapshot with this one. The file is written next to the old one and then
+     * renamed over it, so a reader never sees a partly written snapshot.
+     *
+     * @param context Used to find the app's files directory
+     */
+    @WorkerThread
+    void write(Context context) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream dataStream = new DataOutputStream(bytes);
+        try {
+            dataStream.writeInt(MAGIC);
+            dataStream.writeBoolean(maxTemp != null);
+            if (maxTemp != null) {
+                dataStream.writeUTF(maxTemp);
+            }
+            dataStream.writeBoolean(minTemp != null);
+            if (minTemp != null) {
+                dataStream.writeUTF(minTemp);
+            }
+            dataStream.writeInt(imagePng != null ? imagePng.length : 0);
+            if (imagePng != null) {
+                dataStream.write(imagePng);
+            }
+        } catch (IOException e) {
+            /* A ByteArrayOutputStream doesn't throw */
+            throw new IllegalStateException(e);
+        }
+
+        File file = getFile(context);
+        File temporaryFile = new File(file.getPath() + ".tmp");
+        FileOutputStream outputStream = null;
+        try {
+            outputStream = new FileOutputStream(temporaryFile);
+            bytes.writeTo(outputStream);
+            outputStream.getFD().sync();
+            outputStream.close();
+            outputStream = null;
+
+            if (!temporaryFile.renameTo(file)) {
+                Log.e(TAG, "Unable to rename " + temporaryFile + " to " + file);
+                temporaryFile.delete();
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to write " + temporaryFile, e);
+            temporaryFile.delete();
+        } finally {
+            close(outputStream);
+        }
+    }
+
+    /**
+     * Removes the snapshot.
+     *
+     * @param context Used to find the app's files directory
+     */
+    static void delete(Context context) {
+        getFile(context).delete();
+    }
+
+    static File getFile(Context context) {
+        return new File(context.getFilesDir(), FILE_NAME);
+    }
+
+    private static void close(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.rule.ActivityTestRule;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+import android.view.View;
+
+import com.example.android.sunshine.data.ForecastBatch;
+import com.example.android.sunshine.data.ForecastSnapshot;
+import com.example.android.sunshine.data.WeatherContract;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Measures the time from launching MainActivity to the forecast list showing its first day, with
+ * and without a {@link ForecastSnapshot} to show while the forecast is read from the database.
+ * Results are logged under this class's name:
+ * <p>
+ *   adb logcat -s TestColdStart
+ * <p>
+ * The process is already running here, so this leaves out starting it. For a real cold start,
+ * kill the app and look for the "Fully drawn" line MainActivity reports once the list shows:
+ * <p>
+ *   adb shell am force-stop com.example.android.sunshine
+ *   adb shell am start -W com.example.android.sunshine/.MainActivity
+ *   adb logcat -s ActivityManager | grep "Fully drawn"
+ */
+@RunWith(AndroidJUnit4.class)
+public class TestColdStart {
+
+    private static final String TAG = TestColdStart.class.getSimpleName();
+
+    private static final int DAYS = 14;
+
+    private static final long TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    @Rule
+    public final ActivityTestRule<MainActivity> mActivityRule =
+            new ActivityTestRule<>(MainActivity.class, false, false);
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+
+    private final ContentResolver mResolver = mContext.getContentResolver();
+
+    private ForecastBatch mForecast;
+
+    /*
+     * Stores a forecast in a way that makes ForecastRepository forget it, so every launch has to
+     * read it from the database, and waits until that removed the snapshot as well.
+     */
+    @Before
+    public void setUp() throws Exception {
+        long today = SunshineDateUtils.getNormalizedUtcDateForToday();
+        mForecast = new ForecastBatch(DAYS);
+        for (int day = 0; day < DAYS; day++) {
+            mForecast.add(today + day * SunshineDateUtils.DAY_IN_MILLIS,
+                    800, 10.0, 20.0, 80.0, 1013.0, 5.0, 90.0);
+        }
+
+        mResolver.delete(WeatherContract.WeatherEntry.CONTENT_URI, null, null);
+
+        /* Its removal tells us the repository is done dropping the forecast */
+        ForecastSnapshot.write(mContext, mForecast);
+        mResolver.call(WeatherContract.WeatherEntry.CONTENT_URI,
+                WeatherContract.METHOD_BULK_INSERT_BATCH,
+                null,
+                mForecast.toBundle());
+
+        long deadline = SystemClock.uptimeMillis() + TIMEOUT_MILLIS;
+        while (ForecastSnapshot.read(mContext) != null && SystemClock.uptimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertNull("Storing the forecast didn't remove the snapshot",
+                ForecastSnapshot.read(mContext));
+    }
+
+    @After
+    public void tearDown() {
+        ForecastSnapshot.delete(mContext);
+    }
+
+    @Test
+    public void testStartFromDatabase() throws Exception {
+        long millis = measureTimeToFirstDay();
+        Log.i(TAG, "From the database: first day shown after " + millis + " ms");
+    }
+
+    @Test
+    public void testStartFromSnapshot() throws Exception {
+        ForecastSnapshot.write(mContext, mForecast);
+
+        long millis = measureTimeToFirstDay();
+        Log.i(TAG, "From the snapshot: first day shown after " + millis + " ms");
+    }
+
+    /* Launches MainActivity and returns how long it took for the list to show a day */
+    private long measureTimeToFirstDay() throws Exception {
+        long start = SystemClock.uptimeMillis();
+        mActivityRule.launchActivity(null);
+
+        final RecyclerView recyclerView =
+                (RecyclerView) mActivityRule.getActivity().findViewById(R.id.recyclerview_forecast);
+        final boolean[] shown = new boolean[1];
+        long deadline = start + TIMEOUT_MILLIS;
+        while (!shown[0] && SystemClock.uptimeMillis() < deadline) {
+            InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    shown[0] = recyclerView.getVisibility() == View.VISIBLE
+                            && recyclerView.getChildCount() > 0;
+                }
+            });
+            if (!shown[0]) {
+                Thread.sleep(5);
+            }
+        }
+        long millis = SystemClock.uptimeMillis() - start;
+
+        assertTrue("The list didn't show the forecast", shown[0]);
+        return millis;
+    }
+}
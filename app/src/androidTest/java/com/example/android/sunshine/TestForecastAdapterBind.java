@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.annotation.UiThreadTest;
+import android.support.test.rule.UiThreadTestRule;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.view.ContextThemeWrapper;
+
+import com.example.android.sunshine.data.ForecastBatch;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+import com.example.android.sunshine.utils.Benchmark;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+
+/**
+ * Measures how long ForecastAdapter takes to bind a row, and how many objects it allocates doing
+ * so, with the rows formatted while binding (as the adapter used to do) and with
+ * the rows formatted beforehand by ForecastRowLoader. Results are logged under this class's name:
+ * <p>
+ *   adb logcat -s TestForecastAdapterBind
+ */
+@RunWith(AndroidJUnit4.class)
+public class TestForecastAdapterBind {
+
+    private static final String TAG = TestForecastAdapterBind.class.getSimpleName();
+
+    /* As many days as a sync stores */
+    private static final int DAYS = 14;
+
+    /* Every row is bound this many times per measurement, about a long scroll back and forth */
+    private static final int PASSES = 100;
+
+    private static final int[] WEATHER_IDS = {200, 500, 701, 800, 801, 804};
+
+    @Rule
+    public final UiThreadTestRule mUiThreadTestRule = new UiThreadTestRule();
+
+    private Context mContext;
+    private ForecastBatch mForecast;
+    private long mToday;
+    private ForecastAdapter mAdapter;
+    private ForecastAdapter.ForecastAdapterViewHolder[] mViewHolders;
+
+    @Before
+    public void setUp() {
+        /* The list item layouts use attributes of the app's theme */
+        mContext = new ContextThemeWrapper(InstrumentationRegistry.getTargetContext(),
+                R.style.AppTheme);
+
+        mToday = SunshineDateUtils.getNormalizedUtcDateForToday();
+        mForecast = new ForecastBatch(DAYS);
+        for (int day = 0; day < DAYS; day++) {
+            mForecast.add(mToday + day * SunshineDateUtils.DAY_IN_MILLIS,
+                    WEATHER_IDS[day % WEATHER_IDS.length],
+                    10.0 - day, 20.0 + day, 80.0, 1013.0, 5.0, 90.0);
+        }
+
+        mAdapter = new ForecastAdapter(mContext,
+                new ForecastAdapter.ForecastAdapterOnClickHandler() {
+                    @Override
+                    public void onClick(long date) {
+                    }
+                });
+        mAdapter.swapForecast(ForecastRow.listFromForecast(mContext, mForecast, mToday));
+    }
+
+    @Test
+    @UiThreadTest
+    public void testRowsMatchForecast() {
+        List<ForecastRow> rows = ForecastRow.listFromForecast(mContext, mForecast, mToday);
+
+        assertEquals(DAYS, rows.size());
+        assertEquals(DAYS, mAdapter.getItemCount());
+        for (int day = 0; day < DAYS; day++) {
+            ForecastRow row = rows.get(day);
+            assertEquals(mForecast.dates[day], row.date);
+            assertEquals(mForecast.weatherIds[day], row.weatherId);
+            assertEquals(ForecastRow.fromForecast(mContext, mForecast, day).highText, row.highText);
+        }
+    }
+
+    @Test
+    @UiThreadTest
+    public void testRowsStartAtFirstDate() {
+        List<ForecastRow> rows = ForecastRow.listFromForecast(mContext, mForecast,
+                mToday + SunshineDateUtils.DAY_IN_MILLIS);
+
+        assertEquals(DAYS - 1, rows.size());
+        assertEquals(mForecast.dates[1], rows.get(0).date);
+    }
+
+    @Test
+    @UiThreadTest
+    public void testBindBenchmark() {
+        RecyclerView parent = new RecyclerView(mContext);
+        parent.setLayoutManager(new LinearLayoutManager(mContext));
+
+        /* One view holder per view type, rebound over and over like a scrolling list would */
+        mViewHolders = new ForecastAdapter.ForecastAdapterViewHolder[2];
+        for (int position = 0; position < DAYS; position++) {
+            int viewType = mAdapter.getItemViewType(position);
+            if (mViewHolders[viewType] == null) {
+                mViewHolders[viewType] = mAdapter.onCreateViewHolder(parent, viewType);
+            }
+        }
+
+        Benchmark.measure(TAG, "Format on bind", PASSES * DAYS, new Runnable() {
+            @Override
+            public void run() {
+                bindEveryRow(true);
+            }
+        });
+        Benchmark.measure(TAG, "Precomputed rows", PASSES * DAYS, new Runnable() {
+            @Override
+            public void run() {
+                bindEveryRow(false);
+            }
+        });
+
+        /* The view holders show the last rows they were bound to */
+        List<ForecastRow> rows = ForecastRow.listFromForecast(mContext, mForecast, mToday);
+        ForecastAdapter.ForecastAdapterViewHolder last =
+                mViewHolders[mAdapter.getItemViewType(DAYS - 1)];
+        assertEquals(rows.get(DAYS - 1).highText, last.highTempView.getText().toString());
+        assertEquals(rows.get(DAYS - 1).lowText, last.lowTempView.getText().toString());
+    }
+
+    /*
+     * Binds every row PASSES times. Formatting on bind does what the adapter did before
+     * ForecastRow: read the day and format every String of the row, then set them on the views.
+     */
+    private void bindEveryRow(boolean formatOnBind) {
+        for (int pass = 0; pass < PASSES; pass++) {
+            for (int position = 0; position < DAYS; position++) {
+                if (formatOnBind) {
+                    ForecastRow.fromForecast(mContext, mForecast, position);
+                }
+                mAdapter.onBindViewHolder(
+                        mViewHolders[mAdapter.getItemViewType(position)], position);
+            }
+        }
+    }
+}
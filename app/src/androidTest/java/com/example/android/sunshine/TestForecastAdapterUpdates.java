@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v7.widget.RecyclerView;
+
+import com.example.android.sunshine.data.ForecastBatch;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Checks that swapping new rows into ForecastAdapter only notifies the days that were added,
+ * removed or changed, instead of the whole data set.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TestForecastAdapterUpdates {
+
+    private static final int DAYS = 14;
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+
+    private final long mToday = SunshineDateUtils.getNormalizedUtcDateForToday();
+
+    private ForecastAdapter mAdapter;
+
+    /* Every notification the adapter sent, such as "changed 3 1" */
+    private final List<String> mEvents = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mAdapter = new ForecastAdapter(mContext,
+                        new ForecastAdapter.ForecastAdapterOnClickHandler() {
+                            @Override
+                            public void onClick(long date) {
+                            }
+                        });
+            }
+        });
+        swap(createRows(0, DAYS, -1));
+    }
+
+    @Test
+    public void testOnlyChangedDayIsNotified() throws Exception {
+        swap(createRows(0, DAYS, 3));
+
+        assertEquals("[changed 3 1]", mEvents.toString());
+    }
+
+    @Test
+    public void testUnchangedForecastNotifiesNothing() throws Exception {
+        swap(createRows(0, DAYS, -1));
+
+        assertEquals("[]", mEvents.toString());
+    }
+
+    /**
+     * After midnight, the first day drops out of the forecast and a new one is added at the end.
+     * The days in between are only moved.
+     */
+    @Test
+    public void testRolloverRemovesFirstAndInsertsLast() throws Exception {
+        swap(createRows(1, DAYS, -1));
+
+        assertEquals("Expected one removal and one insertion: " + mEvents, 2, mEvents.size());
+        assertTrue("First day wasn't removed: " + mEvents, mEvents.contains("removed 0 1"));
+        assertTrue("New day wasn't inserted: " + mEvents, mEvents.get(0).startsWith("inserted")
+                || mEvents.get(1).startsWith("inserted"));
+        assertEquals(DAYS, mAdapter.getItemCount());
+        assertEquals(mToday + SunshineDateUtils.DAY_IN_MILLIS, mAdapter.getItemId(0));
+    }
+
+    /* Rows for count days starting firstDay days from today, with different weather on one */
+    private List<ForecastRow> createRows(int firstDay, int count, int changedDay) {
+        ForecastBatch forecast = new ForecastBatch(count);
+        for (int day = firstDay; day < firstDay + count; day++) {
+            forecast.add(mToday + day * SunshineDateUtils.DAY_IN_MILLIS,
+                    day == changedDay ? 500 : 800,
+                    10.0, 20.0, 80.0, 1013.0, 5.0, 90.0);
+        }
+        return ForecastRow.listFromForecast(mContext, forecast, mToday);
+    }
+
+    /*
+     * Swaps the rows in on the main thread and waits for the adapter to apply them, which
+     * happens after the comparison finishes on its own thread. Records what the adapter
+     * notified once the rows were applied.
+     */
+    private void swap(final List<ForecastRow> rows) throws Exception {
+        final CountDownLatch applied = new CountDownLatch(1);
+        final RecyclerView.AdapterDataObserver observer = new RecyclerView.AdapterDataObserver() {
+            @Override
+            public void onItemRangeChanged(int positionStart, int itemCount) {
+                mEvents.add("changed " + positionStart + " " + itemCount);
+            }
+
+            @Override
+            public void onItemRangeChanged(int positionStart, int itemCount, Object payload) {
+                onItemRangeChanged(positionStart, itemCount);
+            }
+
+            @Override
+            public void onItemRangeInserted(int positionStart, int itemCount) {
+                mEvents.add("inserted " + positionStart + " " + itemCount);
+            }
+
+            @Override
+            public void onItemRangeRemoved(int positionStart, int itemCount) {
+                mEvents.add("removed " + positionStart + " " + itemCount);
+            }
+
+            @Override
+            public void onChanged() {
+                mEvents.add("data set changed");
+            }
+        };
+
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mEvents.clear();
+                mAdapter.registerAdapterDataObserver(observer);
+                mAdapter.swapForecast(rows);
+            }
+        });
+
+        /* The comparison posts its result to the main thread, wait until the rows are in */
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+        while (applied.getCount() > 0 && System.currentTimeMillis() < deadline) {
+            InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    if (mAdapter.getForecast() == rows) {
+                        applied.countDown();
+                    }
+                }
+            });
+            Thread.sleep(10);
+        }
+        assertTrue("Adapter didn't apply the new rows", applied.getCount() == 0);
+
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mAdapter.unregisterAdapterDataObserver(observer);
+            }
+        });
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+
+/**
+ * Checks that {@link ForecastRepository} follows what WeatherProvider stores: a replaced forecast
+ * is served from memory right away, and any other change makes it read the provider again.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TestForecastRepository {
+
+    private static final int DAYS = 14;
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+
+    private final ContentResolver mResolver = mContext.getContentResolver();
+
+    private final ForecastRepository mRepository = ForecastRepository.getInstance(mContext);
+
+    @Before
+    public void setUp() {
+        mResolver.delete(WeatherContract.WeatherEntry.CONTENT_URI, null, null);
+    }
+
+    @After
+    public void tearDown() {
+        mResolver.delete(WeatherContract.WeatherEntry.CONTENT_URI, null, null);
+    }
+
+    @Test
+    public void testReplacedForecastIsInMemory() {
+        ForecastBatch forecast = createForecast(25.0);
+        replaceForecast(forecast);
+
+        ForecastBatch inMemory = mRepository.peekForecast();
+        assertNotNull("Replacing the forecast didn't hand it to the repository", inMemory);
+        assertForecastEquals(forecast, inMemory);
+    }
+
+    @Test
+    public void testDeleteDropsForecast() {
+        replaceForecast(createForecast(25.0));
+
+        mResolver.delete(WeatherContract.WeatherEntry.CONTENT_URI, null, null);
+
+        assertNull("Deleting the weather didn't drop the forecast", mRepository.peekForecast());
+        assertEquals(0, mRepository.getForecast().size());
+    }
+
+    @Test
+    public void testForecastIsReadBackFromProvider() {
+        ForecastBatch forecast = createForecast(25.0);
+        replaceForecast(forecast);
+
+        /* Make the repository forget it, so that it has to query the provider */
+        mRepository.invalidate();
+
+        assertForecastEquals(forecast, mRepository.getForecast());
+    }
+
+    @Test
+    public void testRepositoryKeepsItsOwnCopy() {
+        ForecastBatch forecast = createForecast(25.0);
+        replaceForecast(forecast);
+
+        forecast.maxTemps[0] = -40.0;
+
+        assertEquals(25.0, mRepository.getForecast().maxTemps[0]);
+    }
+
+    /* DAYS days from today, the sync's way of storing a forecast */
+    private ForecastBatch createForecast(double maxTemp) {
+        long today = SunshineDateUtils.getNormalizedUtcDateForToday();
+        ForecastBatch forecast = new ForecastBatch(DAYS);
+        for (int day = 0; day < DAYS; day++) {
+            forecast.add(today + day * SunshineDateUtils.DAY_IN_MILLIS,
+                    800, 10.0, maxTemp, 80.0, 1013.0, 5.0, 90.0);
+        }
+        return forecast;
+    }
+
+    private void replaceForecast(ForecastBatch forecast) {
+        mResolver.call(WeatherContract.WeatherEntry.CONTENT_URI,
+                WeatherContract.METHOD_REPLACE_FORECAST,
+                null,
+                forecast.toBundle());
+    }
+
+    private static void assertForecastEquals(ForecastBatch expected, ForecastBatch actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int day = 0; day < expected.size(); day++) {
+            assertEquals(expected.dates[day], actual.dates[day]);
+            assertEquals(expected.weatherIds[day], actual.weatherIds[day]);
+            assertEquals(expected.minTemps[day], actual.minTemps[day]);
+            assertEquals(expected.maxTemps[day], actual.maxTemps[day]);
+            assertEquals(expected.humidities[day], actual.humidities[day]);
+            assertEquals(expected.pressures[day], actual.pressures[day]);
+            assertEquals(expected.windSpeeds[day], actual.windSpeeds[day]);
+            assertEquals(expected.degrees[day], actual.degrees[day]);
+        }
+    }
+}
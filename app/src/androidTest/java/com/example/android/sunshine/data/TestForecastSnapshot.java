@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+
+/**
+ * Checks that {@link ForecastSnapshot} reads back the forecast it wrote, and that it ignores a
+ * file it can't trust rather than showing garbage.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TestForecastSnapshot {
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+
+    @Before
+    public void setUp() {
+        ForecastSnapshot.delete(mContext);
+    }
+
+    @After
+    public void tearDown() {
+        ForecastSnapshot.delete(mContext);
+    }
+
+    @Test
+    public void testNoSnapshot() {
+        assertNull(ForecastSnapshot.read(mContext));
+    }
+
+    @Test
+    public void testReadsWhatWasWritten() {
+        ForecastBatch forecast = TestUtilities.createBulkInsertTestForecastBatch();
+        ForecastSnapshot.write(mContext, forecast);
+
+        ForecastBatch read = ForecastSnapshot.read(mContext);
+
+        assertNotNull("Couldn't read the snapshot back", read);
+        assertEquals(forecast.getContentHash(), read.getContentHash());
+    }
+
+    @Test
+    public void testTruncatedSnapshotIsIgnored() throws Exception {
+        ForecastSnapshot.write(mContext, TestUtilities.createBulkInsertTestForecastBatch());
+
+        RandomAccessFile file = new RandomAccessFile(ForecastSnapshot.getFile(mContext), "rw");
+        file.setLength(file.length() - 1);
+        file.close();
+
+        assertNull(ForecastSnapshot.read(mContext));
+    }
+
+    @Test
+    public void testForeignFileIsIgnored() throws Exception {
+        FileOutputStream outputStream = new FileOutputStream(ForecastSnapshot.getFile(mContext));
+        outputStream.write("not a forecast snapshot".getBytes("UTF-8"));
+        outputStream.close();
+
+        assertNull(ForecastSnapshot.read(mContext));
+    }
+}
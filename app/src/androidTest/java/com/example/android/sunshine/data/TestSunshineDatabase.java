@@ -193,7 +193,7 @@ public class TestSunshineDatabase {
 
     @Test
     public void testDatabaseVersionWasIncremented() {
-        int expectedDatabaseVersion = 3;
+        int expectedDatabaseVersion = 4;
         String databaseVersionShouldBe1 = "Database version should be "
                 + expectedDatabaseVersion + " but isn't."
                 + "\n Database version: ";
@@ -456,6 +456,7 @@ public class TestSunshineDatabase {
 
         /* Here, we add the name of our only table in this particular database */
         tableNameHashSet.add(REFLECTED_TABLE_NAME);
+        tableNameHashSet.add(WeatherContract.SyncStateEntry.TABLE_NAME);
         /* Students, here is where you would add any other table names if you had them */
 //        tableNameHashSet.add(MyAwesomeSuperCoolTableName);
 //        tableNameHashSet.add(MyOtherCoolTableNameThatContainsOtherCoolData);
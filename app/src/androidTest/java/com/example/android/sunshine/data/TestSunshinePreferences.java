@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.sunshine.R;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotSame;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Checks that SunshinePreferences.Snapshot follows changes to the preferences, whether they are
+ * made through SunshinePreferences or straight to SharedPreferences as the SettingsFragment
+ * does, and that it isn't replaced while nothing changes.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TestSunshinePreferences {
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+
+    private SharedPreferences mSharedPreferences;
+
+    @Before
+    public void setUp() {
+        mSharedPreferences = PreferenceManager.getDefaultSharedPreferences(mContext);
+        resetPreferences();
+    }
+
+    @After
+    public void tearDown() {
+        resetPreferences();
+    }
+
+    @Test
+    public void testSnapshotIsReusedUntilAPreferenceChanges() {
+        SunshinePreferences.Snapshot snapshot = SunshinePreferences.getSnapshot(mContext);
+
+        assertSame(snapshot, SunshinePreferences.getSnapshot(mContext));
+        assertTrue("Metric should be the default", snapshot.isMetric);
+        assertEquals(mContext.getString(R.string.pref_location_default), snapshot.location);
+        assertFalse(snapshot.isLocationLatLonAvailable);
+
+        mSharedPreferences.edit()
+                .putString(mContext.getString(R.string.pref_units_key),
+                        mContext.getString(R.string.pref_units_imperial))
+                .commit();
+        waitForListeners();
+
+        SunshinePreferences.Snapshot changed = SunshinePreferences.getSnapshot(mContext);
+        assertNotSame(snapshot, changed);
+        assertFalse("Snapshot didn't pick up the change of units", changed.isMetric);
+        assertFalse(SunshinePreferences.isMetric(mContext));
+    }
+
+    /**
+     * A thread that changes a preference through SunshinePreferences sees the change at once,
+     * without waiting for the listener to run on the main thread.
+     */
+    @Test
+    public void testSnapshotSeesOwnChangesImmediately() {
+        SunshinePreferences.getSnapshot(mContext);
+
+        SunshinePreferences.setLocationDetails(mContext, 37.4, -122.1);
+
+        SunshinePreferences.Snapshot snapshot = SunshinePreferences.getSnapshot(mContext);
+        assertTrue(snapshot.isLocationLatLonAvailable);
+        assertEquals(37.4, snapshot.latitude);
+        assertEquals(-122.1, snapshot.longitude);
+
+        SunshinePreferences.saveLastNotificationTime(mContext, 1000);
+        assertEquals(1000, SunshinePreferences.getSnapshot(mContext).lastNotificationTimeInMillis);
+
+        SunshinePreferences.resetLocationCoordinates(mContext);
+        assertFalse(SunshinePreferences.getSnapshot(mContext).isLocationLatLonAvailable);
+    }
+
+    /*
+     * Removes the preferences the tests change. Before API 30, clear() doesn't notify listeners,
+     * so each key is removed on its own.
+     */
+    private void resetPreferences() {
+        mSharedPreferences.edit()
+                .remove(mContext.getString(R.string.pref_units_key))
+                .remove(mContext.getString(R.string.pref_last_notification))
+                .remove(SunshinePreferences.PREF_COORD_LAT)
+                .remove(SunshinePreferences.PREF_COORD_LONG)
+                .commit();
+        waitForListeners();
+    }
+
+    /* Change listeners are called on the main thread */
+    private static void waitForListeners() {
+        InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+    }
+}
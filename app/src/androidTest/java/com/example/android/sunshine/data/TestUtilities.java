@@ -145,13 +145,23 @@ class TestUtilities {
      * @return Array of ContentValues that can be inserted into our ContentProvider or weather.db
      */
     static ContentValues[] createBulkInsertTestWeatherValues() {
+        return createBulkInsertTestWeatherValues(BULK_INSERT_RECORDS_TO_INSERT);
+    }
 
-        ContentValues[] bulkTestWeatherValues = new ContentValues[BULK_INSERT_RECORDS_TO_INSERT];
+    /**
+     * Same as {@link #createBulkInsertTestWeatherValues()}, for any number of days.
+     *
+     * @param recordCount The number of days to create
+     * @return Array of ContentValues that can be inserted into our ContentProvider or weather.db
+     */
+    static ContentValues[] createBulkInsertTestWeatherValues(int recordCount) {
+
+        ContentValues[] bulkTestWeatherValues = new ContentValues[recordCount];
 
         long testDate = TestUtilities.DATE_NORMALIZED;
         long normalizedTestDate = SunshineDateUtils.normalizeDate(testDate);
 
-        for (int i = 0; i < BULK_INSERT_RECORDS_TO_INSERT; i++) {
+        for (int i = 0; i < recordCount; i++) {
 
             normalizedTestDate += SunshineDateUtils.DAY_IN_MILLIS;
 
@@ -172,6 +182,47 @@ class TestUtilities {
         return bulkTestWeatherValues;
     }
 
+    /**
+     * Returns the same days as {@link #createBulkInsertTestWeatherValues()}, stored in a
+     * {@link ForecastBatch} instead of an array of ContentValues.
+     *
+     * @return ForecastBatch that can be inserted into our ContentProvider
+     */
+    static ForecastBatch createBulkInsertTestForecastBatch() {
+        return createBulkInsertTestForecastBatch(BULK_INSERT_RECORDS_TO_INSERT);
+    }
+
+    /**
+     * Returns the same days as {@link #createBulkInsertTestWeatherValues(int)}, stored in a
+     * {@link ForecastBatch} instead of an array of ContentValues.
+     *
+     * @param recordCount The number of days to create
+     * @return ForecastBatch that can be inserted into our ContentProvider
+     */
+    static ForecastBatch createBulkInsertTestForecastBatch(int recordCount) {
+
+        ForecastBatch batch = new ForecastBatch(recordCount);
+
+        long testDate = TestUtilities.DATE_NORMALIZED;
+        long normalizedTestDate = SunshineDateUtils.normalizeDate(testDate);
+
+        for (int i = 0; i < recordCount; i++) {
+
+            normalizedTestDate += SunshineDateUtils.DAY_IN_MILLIS;
+
+            batch.add(normalizedTestDate,
+                    321,
+                    65 - i,
+                    75 + i,
+                    1.2 + 0.01 * (float) i,
+                    1.3 - 0.01 * (float) i,
+                    5.5 + 0.2 * (float) i,
+                    1.1);
+        }
+
+        return batch;
+    }
+
 
     static TestContentObserver getTestContentObserver() {
         return TestContentObserver.getTestContentObserver();
@@ -188,6 +239,7 @@ class TestUtilities {
     static class TestContentObserver extends ContentObserver {
         final HandlerThread mHT;
         boolean mContentChanged;
+        Uri mChangedUri;
 
         private TestContentObserver(HandlerThread ht) {
             super(new Handler(ht.getLooper()));
@@ -222,6 +274,7 @@ class TestUtilities {
          */
         @Override
         public void onChange(boolean selfChange, Uri uri) {
+            mChangedUri = uri;
             mContentChanged = true;
         }
 
@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.sunshine.utils.Benchmark;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static com.example.android.sunshine.data.WeatherContract.WeatherEntry.COLUMN_DATE;
+import static com.example.android.sunshine.data.WeatherContract.WeatherEntry.COLUMN_DEGREES;
+import static com.example.android.sunshine.data.WeatherContract.WeatherEntry.COLUMN_HUMIDITY;
+import static com.example.android.sunshine.data.WeatherContract.WeatherEntry.COLUMN_MAX_TEMP;
+import static com.example.android.sunshine.data.WeatherContract.WeatherEntry.COLUMN_MIN_TEMP;
+import static com.example.android.sunshine.data.WeatherContract.WeatherEntry.COLUMN_PRESSURE;
+import static com.example.android.sunshine.data.WeatherContract.WeatherEntry.COLUMN_WEATHER_ID;
+import static com.example.android.sunshine.data.WeatherContract.WeatherEntry.COLUMN_WIND_SPEED;
+import static com.example.android.sunshine.data.WeatherContract.WeatherEntry.TABLE_NAME;
+import static junit.framework.Assert.assertEquals;
+
+/**
+ * Checks that {@link WeatherBulkWriter} stores the same rows as SQLiteDatabase#insert and
+ * measures how long each of them takes per row. The time of every run is logged under the
+ * TestWeatherBulkWriter tag, for example:
+ * <p>
+ *   adb logcat -s TestWeatherBulkWriter
+ */
+@RunWith(AndroidJUnit4.class)
+public class TestWeatherBulkWriter {
+
+    private static final String TAG = TestWeatherBulkWriter.class.getSimpleName();
+
+    /* A day of forecast, a long history and a very long history */
+    private static final int[] ROW_COUNTS = {14, 1000, 100000};
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+
+    private SQLiteDatabase mDatabase;
+
+    @Before
+    public void setUp() {
+        mDatabase = new WeatherDbHelper(mContext).getWritableDatabase();
+        mDatabase.delete(TABLE_NAME, null, null);
+    }
+
+    @After
+    public void tearDown() {
+        mDatabase.delete(TABLE_NAME, null, null);
+        mDatabase.close();
+    }
+
+    /**
+     * Inserting the test ContentValues through WeatherBulkWriter must give exactly the rows that
+     * SQLiteDatabase#insert gives.
+     */
+    @Test
+    public void testBulkWriterMatchesInsert() {
+        ContentValues[] bulkInsertTestContentValues =
+                TestUtilities.createBulkInsertTestWeatherValues();
+
+        insertRowByRow(bulkInsertTestContentValues);
+        String expectedRows = dumpWeatherTable();
+        mDatabase.delete(TABLE_NAME, null, null);
+
+        int rowsInserted = WeatherBulkWriter.insert(mDatabase, bulkInsertTestContentValues);
+
+        assertEquals("Number of rows inserted by WeatherBulkWriter is incorrect",
+                TestUtilities.BULK_INSERT_RECORDS_TO_INSERT, rowsInserted);
+        assertEquals("WeatherBulkWriter stored different values than SQLiteDatabase#insert",
+                expectedRows, dumpWeatherTable());
+    }
+
+    /**
+     * Writes 14, 1,000 and 100,000 rows with SQLiteDatabase#insert, with WeatherBulkWriter from
+     * ContentValues and with WeatherBulkWriter from a ForecastBatch, and logs the time each of
+     * them takes per row.
+     */
+    @Test
+    public void testBulkInsertThroughput() {
+        for (final int rowCount : ROW_COUNTS) {
+            final ContentValues[] values =
+                    TestUtilities.createBulkInsertTestWeatherValues(rowCount);
+            final ForecastBatch batch = TestUtilities.createBulkInsertTestForecastBatch(rowCount);
+
+            Benchmark.measure(TAG, rowCount + " rows with SQLiteDatabase#insert", rowCount,
+                    new Runnable() {
+                        @Override
+                        public void run() {
+                            assertInserted(rowCount, insertRowByRow(values));
+                        }
+                    });
+
+            Benchmark.measure(TAG, rowCount + " rows with WeatherBulkWriter from ContentValues",
+                    rowCount, new Runnable() {
+                        @Override
+                        public void run() {
+                            assertInserted(rowCount, WeatherBulkWriter.insert(mDatabase, values));
+                        }
+                    });
+
+            Benchmark.measure(TAG, rowCount + " rows with WeatherBulkWriter from ForecastBatch",
+                    rowCount, new Runnable() {
+                        @Override
+                        public void run() {
+                            assertInserted(rowCount, WeatherBulkWriter.insert(mDatabase, batch));
+                        }
+                    });
+        }
+    }
+
+    /* The way WeatherProvider#bulkInsert wrote rows before WeatherBulkWriter existed */
+    private int insertRowByRow(ContentValues[] values) {
+        int rowsInserted = 0;
+        mDatabase.beginTransaction();
+        try {
+            for (ContentValues value : values) {
+                if (mDatabase.insert(TABLE_NAME, null, value) != -1) {
+                    rowsInserted++;
+                }
+            }
+            mDatabase.setTransactionSuccessful();
+        } finally {
+            mDatabase.endTransaction();
+        }
+        return rowsInserted;
+    }
+
+    /*
+     * Every run starts from an empty table, so that the date column's ON CONFLICT REPLACE
+     * doesn't turn the later runs into a delete plus an insert per row. Deleting every row is a
+     * single truncation in SQLite, so it adds little to the time measured.
+     */
+    private void assertInserted(int expected, int inserted) {
+        assertEquals("Unexpected number of rows inserted", expected, inserted);
+        mDatabase.delete(TABLE_NAME, null, null);
+    }
+
+    /* Every column except _ID, in date order, so that two dumps can be compared */
+    private String dumpWeatherTable() {
+        Cursor cursor = mDatabase.query(TABLE_NAME,
+                new String[]{COLUMN_DATE, COLUMN_WEATHER_ID, COLUMN_MIN_TEMP, COLUMN_MAX_TEMP,
+                        COLUMN_HUMIDITY, COLUMN_PRESSURE, COLUMN_WIND_SPEED, COLUMN_DEGREES},
+                null,
+                null,
+                null,
+                null,
+                COLUMN_DATE);
+        StringBuilder dump = new StringBuilder();
+        try {
+            while (cursor.moveToNext()) {
+                for (int i = 0; i < cursor.getColumnCount(); i++) {
+                    dump.append(cursor.getString(i)).append(' ');
+                }
+                dump.append('\n');
+            }
+            return dump.toString();
+        } finally {
+            cursor.close();
+        }
+    }
+}
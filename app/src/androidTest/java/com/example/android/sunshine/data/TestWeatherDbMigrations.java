@@ -0,0 +1,303 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.sunshine.data.WeatherContract.SyncStateEntry;
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Builds populated databases in the schemas of older Sunshine versions, then opens them with
+ * WeatherDbHelper and checks that the forecast they held made it through every migration to
+ * the current version.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TestWeatherDbMigrations {
+
+    private static final String TEST_DATABASE_NAME = "migration_test.db";
+
+    /* DATE_NORMALIZED written as version 1 stored it */
+    private static final String DATE_TEXT = "20161001";
+
+    private static final long LOCATION_OLD = 1;
+    private static final long LOCATION_LAST_SYNCED = 2;
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+
+    @Before
+    public void setUp() {
+        mContext.deleteDatabase(TEST_DATABASE_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        mContext.deleteDatabase(TEST_DATABASE_NAME);
+    }
+
+    @Test
+    public void testEveryVersionHasAMigration() {
+        assertEquals("Each version after the oldest one needs a migration",
+                WeatherDbHelper.DATABASE_VERSION - WeatherDbMigrations.OLDEST_VERSION,
+                WeatherDbMigrations.MIGRATIONS.length);
+    }
+
+    /**
+     * Version 1 dates are "yyyyMMdd" text. Migrating to version 3 turns them into normalized
+     * milliseconds and keeps only the location the user synced last.
+     */
+    @Test
+    public void testMigrateFromVersion1() {
+        SQLiteDatabase database = createLegacyDatabase(1);
+        insertLegacyDay(database, LOCATION_OLD, DATE_TEXT, 500);
+        insertLegacyDay(database, LOCATION_LAST_SYNCED, DATE_TEXT, 800);
+        insertLegacyDay(database, LOCATION_LAST_SYNCED, "20161002", 801);
+        database.close();
+
+        SQLiteDatabase migrated = openWithHelper();
+
+        assertCurrentSchema(migrated);
+        Cursor cursor = queryForecast(migrated);
+        assertEquals("Migration didn't keep the last synced location's forecast",
+                2, cursor.getCount());
+
+        cursor.moveToFirst();
+        assertEquals(TestUtilities.DATE_NORMALIZED, getLong(cursor, WeatherEntry.COLUMN_DATE));
+        assertEquals(800, getLong(cursor, WeatherEntry.COLUMN_WEATHER_ID));
+        cursor.moveToNext();
+        assertEquals(TestUtilities.DATE_NORMALIZED + SunshineDateUtils.DAY_IN_MILLIS,
+                getLong(cursor, WeatherEntry.COLUMN_DATE));
+        assertEquals(801, getLong(cursor, WeatherEntry.COLUMN_WEATHER_ID));
+        cursor.close();
+        migrated.close();
+    }
+
+    /**
+     * Version 2 dates are milliseconds, but not necessarily at midnight UTC.
+     */
+    @Test
+    public void testMigrateFromVersion2() {
+        SQLiteDatabase database = createLegacyDatabase(2);
+        insertLegacyDay(database, LOCATION_LAST_SYNCED,
+                TestUtilities.DATE_NORMALIZED + 7 * 60 * 60 * 1000, 800);
+        database.close();
+
+        SQLiteDatabase migrated = openWithHelper();
+
+        assertCurrentSchema(migrated);
+        Cursor cursor = queryForecast(migrated);
+        assertEquals(1, cursor.getCount());
+        cursor.moveToFirst();
+        assertEquals("Date wasn't normalized",
+                TestUtilities.DATE_NORMALIZED, getLong(cursor, WeatherEntry.COLUMN_DATE));
+        assertEquals(800, getLong(cursor, WeatherEntry.COLUMN_WEATHER_ID));
+        cursor.close();
+        migrated.close();
+    }
+
+    /**
+     * A version 3 database already has the current weather table, its rows must come out of the
+     * migration exactly as they went in.
+     */
+    @Test
+    public void testMigrateFromVersion3() {
+        SQLiteDatabase database = mContext.openOrCreateDatabase(TEST_DATABASE_NAME,
+                Context.MODE_PRIVATE, null);
+        database.execSQL("CREATE TABLE weather ("
+                + "_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + "date INTEGER NOT NULL, "
+                + "weather_id INTEGER NOT NULL,"
+                + "min REAL NOT NULL, "
+                + "max REAL NOT NULL, "
+                + "humidity REAL NOT NULL, "
+                + "pressure REAL NOT NULL, "
+                + "wind REAL NOT NULL, "
+                + "degrees REAL NOT NULL, "
+                + " UNIQUE (date) ON CONFLICT REPLACE)");
+        ForecastBatch forecast = TestUtilities.createBulkInsertTestForecastBatch();
+        WeatherBulkWriter.insert(database, forecast);
+        String before = dumpForecast(database);
+        database.setVersion(3);
+        database.close();
+
+        SQLiteDatabase migrated = openWithHelper();
+
+        assertCurrentSchema(migrated);
+        assertEquals("Migration changed the stored forecast", before, dumpForecast(migrated));
+        migrated.close();
+    }
+
+    /**
+     * Older Sunshine releases didn't all share one schema. A version 1 database laid out unlike
+     * the one the migration expects can't keep its forecast, but must still open, recreated
+     * empty, rather than fail every time the app starts.
+     */
+    @Test
+    public void testUnexpectedVersion1SchemaIsRecreated() {
+        SQLiteDatabase database = mContext.openOrCreateDatabase(TEST_DATABASE_NAME,
+                Context.MODE_PRIVATE, null);
+        /* No location table, no location_id and no short_desc */
+        database.execSQL("CREATE TABLE weather ("
+                + "_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + "date TEXT NOT NULL, "
+                + "weather_id INTEGER NOT NULL, "
+                + "min REAL NOT NULL, "
+                + "max REAL NOT NULL)");
+        database.execSQL("INSERT INTO weather (date, weather_id, min, max) "
+                + "VALUES ('" + DATE_TEXT + "', 800, 10, 20)");
+        database.setVersion(1);
+        database.close();
+
+        assertRecreated(openWithHelper());
+    }
+
+    /**
+     * A version 2 database whose weather table lacks columns the migration copies.
+     */
+    @Test
+    public void testUnexpectedVersion2SchemaIsRecreated() {
+        SQLiteDatabase database = mContext.openOrCreateDatabase(TEST_DATABASE_NAME,
+                Context.MODE_PRIVATE, null);
+        database.execSQL("CREATE TABLE weather ("
+                + "_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + "location_id INTEGER NOT NULL, "
+                + "date INTEGER NOT NULL, "
+                + "weather_id INTEGER NOT NULL)");
+        database.execSQL("INSERT INTO weather (location_id, date, weather_id) "
+                + "VALUES (" + LOCATION_LAST_SYNCED + ", " + TestUtilities.DATE_NORMALIZED
+                + ", 800)");
+        database.setVersion(2);
+        database.close();
+
+        assertRecreated(openWithHelper());
+    }
+
+    private SQLiteDatabase createLegacyDatabase(int version) {
+        SQLiteDatabase database = mContext.openOrCreateDatabase(TEST_DATABASE_NAME,
+                Context.MODE_PRIVATE, null);
+        database.execSQL("CREATE TABLE location ("
+                + "_id INTEGER PRIMARY KEY, "
+                + "location_setting TEXT UNIQUE NOT NULL, "
+                + "city_name TEXT NOT NULL, "
+                + "coord_lat REAL NOT NULL, "
+                + "coord_long REAL NOT NULL)");
+        database.execSQL("CREATE TABLE weather ("
+                + "_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + "location_id INTEGER NOT NULL, "
+                + "date " + (version == 1 ? "TEXT" : "INTEGER") + " NOT NULL, "
+                + "weather_id INTEGER NOT NULL, "
+                + "short_desc TEXT NOT NULL, "
+                + "min REAL NOT NULL, "
+                + "max REAL NOT NULL, "
+                + "humidity REAL NOT NULL, "
+                + "pressure REAL NOT NULL, "
+                + "wind REAL NOT NULL, "
+                + "degrees REAL NOT NULL, "
+                + "FOREIGN KEY (location_id) REFERENCES location (_id), "
+                + "UNIQUE (date, location_id) ON CONFLICT REPLACE)");
+        database.execSQL("INSERT INTO location VALUES (" + LOCATION_OLD
+                + ", '94043', 'Mountain View', 37.4, -122.1)");
+        database.execSQL("INSERT INTO location VALUES (" + LOCATION_LAST_SYNCED
+                + ", '10001', 'New York', 40.7, -74.0)");
+        database.setVersion(version);
+        return database;
+    }
+
+    private static void insertLegacyDay(SQLiteDatabase database, long locationId, Object date,
+                                        int weatherId) {
+        database.execSQL("INSERT INTO weather (location_id, date, weather_id, short_desc, min, "
+                + "max, humidity, pressure, wind, degrees) "
+                + "VALUES (?, ?, ?, 'Clear', 10, 20, 50, 1000, 3, 90)",
+                new Object[] {locationId, date, weatherId});
+    }
+
+    private SQLiteDatabase openWithHelper() {
+        WeatherDbHelper dbHelper = new WeatherDbHelper(mContext, TEST_DATABASE_NAME);
+        return dbHelper.getWritableDatabase();
+    }
+
+    private static void assertCurrentSchema(SQLiteDatabase database) {
+        assertEquals(WeatherDbHelper.DATABASE_VERSION, database.getVersion());
+
+        Set<String> tables = new HashSet<>();
+        Cursor cursor = database.rawQuery(
+                "SELECT name FROM sqlite_master WHERE type='table'", null);
+        while (cursor.moveToNext()) {
+            tables.add(cursor.getString(0));
+        }
+        cursor.close();
+
+        assertTrue(tables.contains(WeatherEntry.TABLE_NAME));
+        assertTrue(tables.contains(SyncStateEntry.TABLE_NAME));
+        assertFalse("Legacy location table wasn't dropped", tables.contains("location"));
+        assertEquals(0, DatabaseUtils.queryNumEntries(database, SyncStateEntry.TABLE_NAME));
+    }
+
+    /* The database opened with the current schema, without any leftover of the old one */
+    private static void assertRecreated(SQLiteDatabase database) {
+        assertCurrentSchema(database);
+        assertEquals("Recreated database kept rows of the old schema",
+                0, DatabaseUtils.queryNumEntries(database, WeatherEntry.TABLE_NAME));
+
+        /* The recreated weather table takes a whole forecast */
+        ForecastBatch forecast = TestUtilities.createBulkInsertTestForecastBatch();
+        WeatherBulkWriter.insert(database, forecast);
+        assertEquals(forecast.size(),
+                DatabaseUtils.queryNumEntries(database, WeatherEntry.TABLE_NAME));
+        database.close();
+    }
+
+    private static Cursor queryForecast(SQLiteDatabase database) {
+        return database.query(WeatherEntry.TABLE_NAME, null, null, null, null, null,
+                WeatherEntry.COLUMN_DATE + " ASC");
+    }
+
+    private static long getLong(Cursor cursor, String column) {
+        return cursor.getLong(cursor.getColumnIndexOrThrow(column));
+    }
+
+    private static String dumpForecast(SQLiteDatabase database) {
+        StringBuilder dump = new StringBuilder();
+        Cursor cursor = queryForecast(database);
+        while (cursor.moveToNext()) {
+            for (int column = 0; column < cursor.getColumnCount(); column++) {
+                dump.append(cursor.getColumnName(column)).append('=')
+                        .append(cursor.getString(column)).append(' ');
+            }
+            dump.append('\n');
+        }
+        cursor.close();
+        return dump.toString();
+    }
+}
@@ -24,13 +24,18 @@ import android.content.pm.ProviderInfo;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.net.Uri;
+import android.os.Bundle;
 import android.support.test.InstrumentationRegistry;
 import android.support.test.runner.AndroidJUnit4;
 
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.util.Arrays;
+
 import static com.example.android.sunshine.data.TestUtilities.BULK_INSERT_RECORDS_TO_INSERT;
 import static com.example.android.sunshine.data.TestUtilities.createBulkInsertTestWeatherValues;
 import static junit.framework.Assert.assertEquals;
@@ -326,6 +331,194 @@ public class TestWeatherProvider {
         cursor.close();
     }
 
+    /**
+     * This test inserts a {@link ForecastBatch} through {@link WeatherProvider#call} and checks
+     * that it produces exactly the same rows as {@link #testBulkInsert()} does with an array of
+     * ContentValues.
+     */
+    @Test
+    public void testBulkInsertForecastBatch() {
+
+        ForecastBatch batch = TestUtilities.createBulkInsertTestForecastBatch();
+        ContentValues[] expectedValues = createBulkInsertTestWeatherValues();
+
+        TestUtilities.TestContentObserver weatherObserver = TestUtilities.getTestContentObserver();
+
+        ContentResolver contentResolver = mContext.getContentResolver();
+
+        contentResolver.registerContentObserver(
+                WeatherContract.WeatherEntry.CONTENT_URI,
+                true,
+                weatherObserver);
+
+        Bundle result = contentResolver.call(
+                WeatherContract.WeatherEntry.CONTENT_URI,
+                WeatherContract.METHOD_BULK_INSERT_BATCH,
+                null,
+                batch.toBundle());
+
+        weatherObserver.waitForNotificationOrFail();
+        contentResolver.unregisterContentObserver(weatherObserver);
+
+        assertNotNull("Calling " + WeatherContract.METHOD_BULK_INSERT_BATCH + " returned null",
+                result);
+        assertEquals("Number of expected records inserted does not match actual inserted record count",
+                BULK_INSERT_RECORDS_TO_INSERT,
+                result.getInt(WeatherContract.KEY_ROWS_INSERTED));
+
+        Cursor cursor = contentResolver.query(
+                WeatherContract.WeatherEntry.CONTENT_URI,
+                null,
+                null,
+                null,
+                WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
+
+        assertEquals(BULK_INSERT_RECORDS_TO_INSERT, cursor.getCount());
+
+        cursor.moveToFirst();
+        for (int i = 0; i < BULK_INSERT_RECORDS_TO_INSERT; i++, cursor.moveToNext()) {
+            TestUtilities.validateCurrentRecord(
+                    "testBulkInsertForecastBatch. Error validating WeatherEntry " + i,
+                    cursor,
+                    expectedValues[i]);
+        }
+
+        cursor.close();
+    }
+
+    /**
+     * This test replaces a stored forecast with one where a day changed, a day is gone and a day
+     * is new. Only those three days should be touched, and observers should receive a single
+     * notification that lists their dates.
+     */
+    @Test
+    public void testReplaceForecast() {
+
+        ContentResolver contentResolver = mContext.getContentResolver();
+
+        ForecastBatch stored = TestUtilities.createBulkInsertTestForecastBatch();
+        contentResolver.call(
+                WeatherContract.WeatherEntry.CONTENT_URI,
+                WeatherContract.METHOD_BULK_INSERT_BATCH,
+                null,
+                stored.toBundle());
+
+        /* Drop the first day, change the third and add one after the last */
+        ForecastBatch replacement = new ForecastBatch(BULK_INSERT_RECORDS_TO_INSERT);
+        for (int i = 1; i < stored.size(); i++) {
+            replacement.add(stored.dates[i],
+                    stored.weatherIds[i],
+                    stored.minTemps[i],
+                    i == 2 ? stored.maxTemps[i] + 1 : stored.maxTemps[i],
+                    stored.humidities[i],
+                    stored.pressures[i],
+                    stored.windSpeeds[i],
+                    stored.degrees[i]);
+        }
+        long newDate = stored.dates[stored.size() - 1] + SunshineDateUtils.DAY_IN_MILLIS;
+        replacement.add(newDate, 800, 10, 20, 50, 1000, 3, 90);
+
+        long[] expectedChangedDates = {stored.dates[0], stored.dates[2], newDate};
+
+        TestUtilities.TestContentObserver weatherObserver = TestUtilities.getTestContentObserver();
+        contentResolver.registerContentObserver(
+                WeatherContract.WeatherEntry.CONTENT_URI,
+                true,
+                weatherObserver);
+
+        Bundle result = contentResolver.call(
+                WeatherContract.WeatherEntry.CONTENT_URI,
+                WeatherContract.METHOD_REPLACE_FORECAST,
+                null,
+                replacement.toBundle());
+
+        weatherObserver.waitForNotificationOrFail();
+        contentResolver.unregisterContentObserver(weatherObserver);
+
+        assertNotNull("Calling " + WeatherContract.METHOD_REPLACE_FORECAST + " returned null",
+                result);
+
+        long[] changedDates = result.getLongArray(WeatherContract.KEY_CHANGED_DATES);
+        Arrays.sort(changedDates);
+        assertTrue("Unexpected changed dates: " + Arrays.toString(changedDates),
+                Arrays.equals(expectedChangedDates, changedDates));
+
+        long[] notifiedDates =
+                WeatherContract.WeatherEntry.getChangedDates(weatherObserver.mChangedUri);
+        assertNotNull("Notified Uri doesn't list the changed dates", notifiedDates);
+        Arrays.sort(notifiedDates);
+        assertTrue("Unexpected notified dates: " + Arrays.toString(notifiedDates),
+                Arrays.equals(expectedChangedDates, notifiedDates));
+
+        Cursor cursor = contentResolver.query(
+                WeatherContract.WeatherEntry.CONTENT_URI,
+                new String[]{WeatherContract.WeatherEntry.COLUMN_DATE,
+                        WeatherContract.WeatherEntry.COLUMN_MAX_TEMP},
+                null,
+                null,
+                WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
+
+        assertEquals(replacement.size(), cursor.getCount());
+        for (int i = 0; cursor.moveToNext(); i++) {
+            assertEquals(replacement.dates[i], cursor.getLong(0));
+            assertEquals(replacement.maxTemps[i], cursor.getDouble(1));
+        }
+        cursor.close();
+
+        /* Replacing with the same forecast again must not change anything */
+        result = contentResolver.call(
+                WeatherContract.WeatherEntry.CONTENT_URI,
+                WeatherContract.METHOD_REPLACE_FORECAST,
+                null,
+                replacement.toBundle());
+
+        assertEquals("Replacing an identical forecast changed rows",
+                0, result.getLongArray(WeatherContract.KEY_CHANGED_DATES).length);
+    }
+
+    /**
+     * This test saves the sync state of two locations, reads them back through the
+     * ContentProvider and checks that saving a location again replaces its previous state. As
+     * the weather table only holds the forecast of the last location synced, saving the state
+     * of one location must also forget that of any other.
+     */
+    @Test
+    public void testSyncStateRoundTrip() {
+
+        SyncState.clear(mContext);
+
+        SyncState mountainView = new SyncState("94043,USA", 1000L,
+                "http://example.com/forecast?q=94043", "\"abc\"", null, "0123abcd");
+        SyncState london = new SyncState("London, UK", 2000L,
+                "http://example.com/forecast?q=London", null,
+                "Sat, 01 Oct 2016 00:00:00 GMT", "4567ef01");
+
+        london.save(mContext);
+
+        SyncState loaded = SyncState.load(mContext, london.location);
+        assertNotNull("Sync state of " + london.location + " wasn't stored", loaded);
+        assertEquals(london.lastModified, loaded.lastModified);
+        assertEquals(london.contentHash, loaded.contentHash);
+
+        mountainView.save(mContext);
+        mountainView.withLastSyncTime(3000L).save(mContext);
+
+        loaded = SyncState.load(mContext, mountainView.location);
+        assertNotNull("Sync state of " + mountainView.location + " wasn't stored", loaded);
+        assertEquals(3000L, loaded.lastSyncTime);
+        assertEquals(mountainView.url, loaded.url);
+        assertEquals(mountainView.eTag, loaded.eTag);
+        assertEquals(null, loaded.lastModified);
+        assertEquals(mountainView.contentHash, loaded.contentHash);
+
+        assertEquals("Sync state of " + london.location + " outlived the switch away from it",
+                null, SyncState.load(mContext, london.location));
+
+        SyncState.clear(mContext);
+        assertEquals("Sync state wasn't cleared",
+                null, SyncState.load(mContext, mountainView.location));
+    }
+
     /**
      * This test deletes all records from the weather table using the ContentProvider. It also
      * verifies that registered ContentObservers receive onChange callbacks when data is deleted.
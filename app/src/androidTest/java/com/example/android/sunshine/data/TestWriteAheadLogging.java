@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Checks that the weather database uses write-ahead logging, and that a query made while the
+ * sync is in the middle of a large write transaction returns right away with the data committed
+ * before that transaction, rather than waiting for it to finish.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TestWriteAheadLogging {
+
+    /* Rows written by the long transaction, about as many as a large history import */
+    private static final int ROWS_TO_WRITE = 100000;
+
+    /* How long the writer keeps its transaction open at most, waiting for the reader */
+    private static final long WRITER_HOLD_SECONDS = 10;
+
+    /*
+     * A query of the whole forecast takes a few milliseconds. Waiting for the writer would take
+     * as long as it holds its transaction, so anything close to WRITER_HOLD_SECONDS means the
+     * reader stalled.
+     */
+    private static final long MAX_QUERY_MILLIS = 1000;
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+
+    private WeatherDbHelper mDbHelper;
+
+    @Before
+    public void setUp() {
+        mDbHelper = new WeatherDbHelper(mContext);
+        mDbHelper.getWritableDatabase().delete(WeatherContract.WeatherEntry.TABLE_NAME, null, null);
+    }
+
+    @After
+    public void tearDown() {
+        mDbHelper.getWritableDatabase().delete(WeatherContract.WeatherEntry.TABLE_NAME, null, null);
+        mDbHelper.close();
+    }
+
+    @Test
+    public void testWriteAheadLoggingEnabled() {
+        SQLiteDatabase database = mDbHelper.getWritableDatabase();
+
+        assertTrue("Write-ahead logging isn't enabled", database.isWriteAheadLoggingEnabled());
+        assertEquals("wal", DatabaseUtils.stringForQuery(database, "PRAGMA journal_mode", null));
+    }
+
+    /**
+     * Starts a transaction that writes ROWS_TO_WRITE rows on another thread and, while it is still
+     * open, queries the weather table through the same WeatherDbHelper, as WeatherProvider does
+     * for the CursorLoaders. The query must neither wait for the transaction nor see its rows.
+     */
+    @Test
+    public void testQueryDoesNotWaitForWriteTransaction() throws Exception {
+        final SQLiteDatabase database = mDbHelper.getWritableDatabase();
+
+        /* The forecast the screens are showing before the sync starts writing */
+        final ForecastBatch committed = TestUtilities.createBulkInsertTestForecastBatch();
+        WeatherBulkWriter.insert(database, committed);
+
+        final CountDownLatch transactionOpen = new CountDownLatch(1);
+        final CountDownLatch readerDone = new CountDownLatch(1);
+        final Throwable[] writerError = new Throwable[1];
+
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                database.beginTransaction();
+                try {
+                    ForecastBatch history = new ForecastBatch(ROWS_TO_WRITE);
+                    long date = TestUtilities.DATE_NORMALIZED
+                            - ROWS_TO_WRITE * SunshineDateUtils.DAY_IN_MILLIS;
+                    for (int i = 0; i < ROWS_TO_WRITE; i++) {
+                        history.add(date + i * SunshineDateUtils.DAY_IN_MILLIS,
+                                800, 10, 20, 50, 1000, 3, 90);
+                    }
+
+                    /* Nested in our transaction, so nothing is committed yet */
+                    WeatherBulkWriter.insert(database, history);
+
+                    transactionOpen.countDown();
+                    readerDone.await(WRITER_HOLD_SECONDS, TimeUnit.SECONDS);
+
+                    database.setTransactionSuccessful();
+                } catch (Throwable t) {
+                    writerError[0] = t;
+                } finally {
+                    database.endTransaction();
+                    transactionOpen.countDown();
+                }
+            }
+        });
+        writer.start();
+
+        assertTrue("Writer didn't open its transaction",
+                transactionOpen.await(60, TimeUnit.SECONDS));
+
+        long start = SystemClock.elapsedRealtime();
+        Cursor cursor = mDbHelper.getReadableDatabase().query(
+                WeatherContract.WeatherEntry.TABLE_NAME,
+                null,
+                null,
+                null,
+                null,
+                null,
+                WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
+        int rowCount = cursor.getCount();
+        cursor.close();
+        long queryMillis = SystemClock.elapsedRealtime() - start;
+
+        readerDone.countDown();
+        writer.join();
+
+        assertNull("Writer failed: " + writerError[0], writerError[0]);
+        assertTrue("Query waited " + queryMillis + " ms for the write transaction",
+                queryMillis < MAX_QUERY_MILLIS);
+        assertEquals("Query didn't see exactly the committed forecast",
+                committed.size(), rowCount);
+        assertEquals("Write transaction wasn't committed",
+                committed.size() + ROWS_TO_WRITE,
+                DatabaseUtils.queryNumEntries(database, WeatherContract.WeatherEntry.TABLE_NAME));
+    }
+}
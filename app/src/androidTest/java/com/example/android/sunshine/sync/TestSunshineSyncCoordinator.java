@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.sync;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.CancellationSignal;
+import android.preference.PreferenceManager;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.sunshine.R;
+import com.example.android.sunshine.data.SunshinePreferences;
+import com.example.android.sunshine.utils.PollingCheck;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Checks that {@link SunshineSyncCoordinator} has concurrent callers share one run, only cancels
+ * a run once nobody waits for it anymore, syncs again when the location changed while a run was
+ * fetching the previous one, and still releases its callers when a sync throws. The weather sync
+ * itself is replaced by a task that blocks until the test lets it finish.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TestSunshineSyncCoordinator {
+
+    private static final long TIMEOUT_SECONDS = 5;
+
+    private static final String OTHER_LOCATION = "London, UK";
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+
+    private final ExecutorService mCallers = Executors.newCachedThreadPool();
+
+    private BlockingSyncTask mSyncTask;
+
+    @Before
+    public void setUp() {
+        setLocation(null);
+        mSyncTask = new BlockingSyncTask();
+        SunshineSyncCoordinator.setSyncTask(mSyncTask);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mSyncTask.mRelease.countDown();
+        PollingCheck.check("A sync task didn't finish", TIMEOUT_SECONDS * 1000,
+                new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() {
+                        return mSyncTask.mFinished.get() == mSyncTask.mLocations.size();
+                    }
+                });
+        SunshineSyncCoordinator.setSyncTask(null);
+        mCallers.shutdownNow();
+        setLocation(null);
+    }
+
+    @Test
+    public void testConcurrentCallersShareOneRun() throws Exception {
+        Future<Integer> first = startSync(false, null);
+        assertTrue("Sync didn't start",
+                mSyncTask.mStarted.tryAcquire(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        Future<Integer> second = startSync(false, null);
+        waitForWaitingCallers(2);
+
+        mSyncTask.mRelease.countDown();
+
+        assertEquals(SunshineSyncTask.RESULT_UPDATED, getResult(first));
+        assertEquals(SunshineSyncTask.RESULT_UPDATED, getResult(second));
+        assertEquals("Callers didn't share the run", 1, mSyncTask.mLocations.size());
+    }
+
+    @Test
+    public void testLastWaiterCancelsRun() throws Exception {
+        CancellationSignal firstSignal = new CancellationSignal();
+        CancellationSignal secondSignal = new CancellationSignal();
+        Future<Integer> first = startSync(false, firstSignal);
+        assertTrue("Sync didn't start",
+                mSyncTask.mStarted.tryAcquire(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        Future<Integer> second = startSync(false, secondSignal);
+        waitForWaitingCallers(2);
+
+        firstSignal.cancel();
+        assertEquals(SunshineSyncTask.RESULT_CANCELLED, getResult(first));
+        assertFalse("Run was cancelled while a caller still waited for it",
+                mSyncTask.mCancellationSignal.isCanceled());
+
+        secondSignal.cancel();
+        assertEquals(SunshineSyncTask.RESULT_CANCELLED, getResult(second));
+        assertTrue("Run wasn't cancelled once nobody waited for it",
+                mSyncTask.mCancellationSignal.isCanceled());
+
+        /* A caller coming after that must get a run of its own, not the cancelled one */
+        mSyncTask.mRelease.countDown();
+        assertEquals(SunshineSyncTask.RESULT_UPDATED, getResult(startSync(false, null)));
+        assertEquals(2, mSyncTask.mLocations.size());
+    }
+
+    @Test
+    public void testLocationChangeSyncsAgain() throws Exception {
+        String location = SunshinePreferences.getPreferredWeatherLocation(mContext);
+        Future<Integer> first = startSync(false, null);
+        assertTrue("Sync didn't start",
+                mSyncTask.mStarted.tryAcquire(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        setLocation(OTHER_LOCATION);
+        Future<Integer> second = startSync(false, null);
+        waitForWaitingCallers(2);
+
+        mSyncTask.mRelease.countDown();
+
+        assertEquals(SunshineSyncTask.RESULT_UPDATED, getResult(first));
+        assertEquals(SunshineSyncTask.RESULT_UPDATED, getResult(second));
+        assertEquals("Run didn't sync the new location after the old one",
+                Arrays.asList(location, OTHER_LOCATION), mSyncTask.mLocations);
+    }
+
+    @Test
+    public void testThrowingTaskReleasesCallers() throws Exception {
+        SunshineSyncCoordinator.setSyncTask(new SunshineSyncCoordinator.SyncTask() {
+            @Override
+            public int syncWeather(Context context, CancellationSignal cancellationSignal) {
+                throw new IllegalStateException("Sync failed on purpose");
+            }
+        });
+        assertEquals(SunshineSyncTask.RESULT_FAILED, getResult(startSync(false, null)));
+
+        /* The failed run mustn't be left as the current one for the next caller to join */
+        SunshineSyncCoordinator.setSyncTask(mSyncTask);
+        mSyncTask.mRelease.countDown();
+        assertEquals(SunshineSyncTask.RESULT_UPDATED, getResult(startSync(false, null)));
+        assertEquals(1, mSyncTask.mLocations.size());
+    }
+
+    private Future<Integer> startSync(final boolean syncAgain,
+                                      final CancellationSignal cancellationSignal) {
+        return mCallers.submit(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return SunshineSyncCoordinator.sync(mContext, syncAgain, cancellationSignal);
+            }
+        });
+    }
+
+    private static int getResult(Future<Integer> future) throws Exception {
+        return future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private static void waitForWaitingCallers(final int callers) throws Exception {
+        PollingCheck.check("Callers didn't join the run", TIMEOUT_SECONDS * 1000,
+                new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() {
+                        return SunshineSyncCoordinator.getWaitingCallers() == callers;
+                    }
+                });
+    }
+
+    /*
+     * Sets the location the way the SettingsFragment does, or removes it for null. The snapshot
+     * of the preferences is updated on the main thread.
+     */
+    private void setLocation(String location) {
+        SharedPreferences.Editor editor =
+                PreferenceManager.getDefaultSharedPreferences(mContext).edit();
+        String key = mContext.getString(R.string.pref_location_key);
+        if (location == null) {
+            editor.remove(key);
+        } else {
+            editor.putString(key, location);
+        }
+        editor.commit();
+        InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+    }
+
+    /**
+     * Records the location of every pass, then blocks until the test releases it or the run is
+     * cancelled.
+     */
+    private static final class BlockingSyncTask implements SunshineSyncCoordinator.SyncTask {
+
+        final CountDownLatch mRelease = new CountDownLatch(1);
+        final Semaphore mStarted = new Semaphore(0);
+        final List<String> mLocations = Collections.synchronizedList(new ArrayList<String>());
+        final AtomicInteger mFinished = new AtomicInteger();
+
+        /* The signal of the last pass */
+        volatile CancellationSignal mCancellationSignal;
+
+        @Override
+        public int syncWeather(Context context, CancellationSignal cancellationSignal) {
+            mCancellationSignal = cancellationSignal;
+            mLocations.add(SunshinePreferences.getPreferredWeatherLocation(context));
+            mStarted.release();
+            try {
+                while (!cancellationSignal.isCanceled()) {
+                    if (mRelease.await(10, TimeUnit.MILLISECONDS)) {
+                        return SunshineSyncTask.RESULT_UPDATED;
+                    }
+                }
+                return SunshineSyncTask.RESULT_CANCELLED;
+            } catch (InterruptedException e) {
+                return SunshineSyncTask.RESULT_FAILED;
+            } finally {
+                mFinished.incrementAndGet();
+            }
+        }
+    }
+}
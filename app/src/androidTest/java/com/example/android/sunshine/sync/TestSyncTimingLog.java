@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.sync;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Checks that {@link SyncTimingLog} keeps the last {@link SyncTimingLog#CAPACITY} runs in order
+ * across wraparound and reopening, computes its percentiles by nearest rank, and recovers from a
+ * damaged header instead of writing past its buffer.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TestSyncTimingLog {
+
+    private static final String TEST_FILE_NAME = "sync_timings_test.bin";
+
+    /* Offsets of the next slot and of the number of runs, see the layout in SyncTimingLog */
+    private static final int OFFSET_NEXT = 4;
+    private static final int OFFSET_COUNT = 8;
+
+    private static final Pattern BYTES = Pattern.compile(" bytes=(\\d+) ");
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+
+    private File mFile;
+
+    @Before
+    public void setUp() {
+        mFile = new File(mContext.getFilesDir(), TEST_FILE_NAME);
+        mFile.delete();
+    }
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    @Test
+    public void testKeepsRunsInOrderBeforeWraparound() {
+        SyncTimingLog log = SyncTimingLog.open(mFile);
+        for (int i = 0; i < 3; i++) {
+            log.record(createRun(i));
+        }
+
+        assertEquals(listOf(0, 3), getRecordedBytes(log));
+    }
+
+    @Test
+    public void testOverwritesOldestRunsAfterWraparound() {
+        SyncTimingLog log = SyncTimingLog.open(mFile);
+        int runs = SyncTimingLog.CAPACITY + 10;
+        for (int i = 0; i < runs; i++) {
+            log.record(createRun(i));
+        }
+
+        assertEquals("Log didn't keep the last runs, oldest first",
+                listOf(10, runs), getRecordedBytes(log));
+
+        /* Reopening the file, as a new process would, finds the same runs */
+        assertEquals(listOf(10, runs), getRecordedBytes(SyncTimingLog.open(mFile)));
+    }
+
+    @Test
+    public void testPercentiles() {
+        long[] hundred = new long[100];
+        for (int i = 0; i < hundred.length; i++) {
+            hundred[i] = i + 1;
+        }
+        assertEquals(50, SyncTimingLog.percentile(hundred, 50));
+        assertEquals(90, SyncTimingLog.percentile(hundred, 90));
+        assertEquals(99, SyncTimingLog.percentile(hundred, 99));
+
+        long[] ten = {1, 2, 3, 4, 5, 6, 7, 8, 9, 10};
+        assertEquals(5, SyncTimingLog.percentile(ten, 50));
+        assertEquals(9, SyncTimingLog.percentile(ten, 90));
+        assertEquals("p99 of few runs is the slowest one", 10, SyncTimingLog.percentile(ten, 99));
+
+        long[] one = {7};
+        assertEquals(7, SyncTimingLog.percentile(one, 50));
+        assertEquals(7, SyncTimingLog.percentile(one, 99));
+    }
+
+    @Test
+    public void testDamagedHeaderIsReset() throws Exception {
+        SyncTimingLog.open(mFile).record(createRun(1));
+        writeHeader(SyncTimingLog.CAPACITY + 5, -1);
+
+        SyncTimingLog log = SyncTimingLog.open(mFile);
+        log.record(createRun(2));
+
+        assertEquals(listOf(2, 3), getRecordedBytes(log));
+    }
+
+    @Test
+    public void testCountAboveCapacityIsReset() throws Exception {
+        SyncTimingLog.open(mFile).record(createRun(1));
+        writeHeader(0, SyncTimingLog.CAPACITY + 1);
+
+        assertEquals(new ArrayList<Long>(), getRecordedBytes(SyncTimingLog.open(mFile)));
+    }
+
+    /* A run told apart from the others by its number of bytes */
+    private static SyncTimingLog.Run createRun(long bytes) {
+        SyncTimingLog.Run run = new SyncTimingLog.Run();
+        run.setBytes(bytes);
+        run.add(SyncTimingLog.PHASE_DOWNLOAD, bytes * 1000000);
+        run.setOutcome(SunshineSyncTask.RESULT_UPDATED);
+        return run;
+    }
+
+    /* The bytes of every run dump prints, in the order it prints them */
+    private static List<Long> getRecordedBytes(SyncTimingLog log) {
+        StringWriter dump = new StringWriter();
+        PrintWriter writer = new PrintWriter(dump);
+        log.dump(writer);
+        writer.flush();
+
+        List<Long> bytes = new ArrayList<>();
+        Matcher matcher = BYTES.matcher(dump.toString());
+        while (matcher.find()) {
+            bytes.add(Long.parseLong(matcher.group(1)));
+        }
+        assertTrue("Dump didn't list the runs", dump.toString().startsWith("Sync runs ("));
+        return bytes;
+    }
+
+    /* The numbers from first, included, to last, excluded */
+    private static List<Long> listOf(long first, long last) {
+        List<Long> numbers = new ArrayList<>();
+        for (long i = first; i < last; i++) {
+            numbers.add(i);
+        }
+        return numbers;
+    }
+
+    private void writeHeader(int next, int count) throws Exception {
+        RandomAccessFile file = new RandomAccessFile(mFile, "rw");
+        file.seek(OFFSET_NEXT);
+        file.writeInt(next);
+        file.seek(OFFSET_COUNT);
+        file.writeInt(count);
+        file.close();
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.sync;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.sunshine.R;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Checks that {@link WearArtAssets} compresses each piece of art once, into a PNG the watch can
+ * decode, and that it only asks for art to be sent again when it differs from the art sent last.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TestWearArtAssets {
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+
+    @Before
+    public void setUp() {
+        WearArtAssets.clearSent(mContext);
+    }
+
+    @After
+    public void tearDown() {
+        WearArtAssets.clearSent(mContext);
+    }
+
+    @Test
+    public void testEncodesOnce() {
+        WearArtAssets.EncodedArt art = WearArtAssets.getEncodedArt(mContext, R.drawable.ic_clear);
+
+        assertNotNull("The art wasn't encoded", art);
+        assertSame(art, WearArtAssets.getEncodedArt(mContext, R.drawable.ic_clear));
+    }
+
+    @Test
+    public void testEncodesDecodablePng() {
+        WearArtAssets.EncodedArt art = WearArtAssets.getEncodedArt(mContext, R.drawable.ic_rain);
+
+        Bitmap decoded = BitmapFactory.decodeByteArray(art.png, 0, art.png.length);
+        assertNotNull("The watch couldn't decode the art", decoded);
+        assertEquals(SunshineSyncUtils.getBitmap(mContext, R.drawable.ic_rain).getWidth(),
+                decoded.getWidth());
+    }
+
+    @Test
+    public void testOnlyChangedArtIsSentAgain() {
+        WearArtAssets.EncodedArt clear = WearArtAssets.getEncodedArt(mContext, R.drawable.ic_clear);
+        WearArtAssets.EncodedArt snow = WearArtAssets.getEncodedArt(mContext, R.drawable.ic_snow);
+        assertFalse("Different art got the same digest", clear.digest.equals(snow.digest));
+
+        assertFalse(WearArtAssets.wasSent(mContext, clear));
+
+        WearArtAssets.setSent(mContext, clear);
+        assertTrue("The art sent last would be sent again", WearArtAssets.wasSent(mContext, clear));
+        assertFalse("Changed art wouldn't be sent", WearArtAssets.wasSent(mContext, snow));
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.utilities;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.sunshine.utils.Benchmark;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Locale;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotSame;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Checks that {@link SunshineDateUtils#getFriendlyDateString} returns the same labels from
+ * {@link FriendlyDateCache} as it builds without it, and measures both. Results are logged under
+ * this class's name:
+ * <p>
+ *   adb logcat -s TestFriendlyDateCache
+ */
+@RunWith(AndroidJUnit4.class)
+public class TestFriendlyDateCache {
+
+    private static final String TAG = TestFriendlyDateCache.class.getSimpleName();
+
+    /* As many days as a sync stores, which goes past the week of plain day names */
+    private static final int DAYS = 14;
+
+    /* Every date is formatted this many times per measurement */
+    private static final int PASSES = 100;
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+
+    private final FriendlyDateCache mCache = FriendlyDateCache.getInstance(mContext);
+
+    private long mToday;
+
+    @Before
+    public void setUp() {
+        mToday = SunshineDateUtils.getNormalizedUtcDateForToday();
+        invalidate();
+    }
+
+    @Test
+    public void testCachedLabelsMatchBuiltLabels() {
+        for (int day = 0; day < DAYS; day++) {
+            for (boolean full : new boolean[] {false, true}) {
+                long date = mToday + day * SunshineDateUtils.DAY_IN_MILLIS;
+
+                invalidate();
+                String built = SunshineDateUtils.getFriendlyDateString(mContext, date, full);
+                String cached = SunshineDateUtils.getFriendlyDateString(mContext, date, full);
+
+                assertSame("Label of day " + day + " wasn't cached", built, cached);
+            }
+        }
+    }
+
+    @Test
+    public void testInvalidateBuildsLabelsAgain() {
+        String before = SunshineDateUtils.getFriendlyDateString(mContext, mToday, true);
+        invalidate();
+        String after = SunshineDateUtils.getFriendlyDateString(mContext, mToday, true);
+
+        assertNotSame(before, after);
+        assertEquals(before, after);
+    }
+
+    @Test
+    public void testChangeOfLocaleBuildsLabelsAgain() {
+        Locale defaultLocale = Locale.getDefault();
+        try {
+            Locale.setDefault(Locale.US);
+            String english = SunshineDateUtils.getFriendlyDateString(
+                    mContext, mToday + 3 * SunshineDateUtils.DAY_IN_MILLIS, false);
+
+            Locale.setDefault(Locale.FRANCE);
+            String french = SunshineDateUtils.getFriendlyDateString(
+                    mContext, mToday + 3 * SunshineDateUtils.DAY_IN_MILLIS, false);
+
+            assertTrue("Expected different day names, got " + english + " and " + french,
+                    !english.equals(french));
+        } finally {
+            Locale.setDefault(defaultLocale);
+            invalidate();
+        }
+    }
+
+    @Test
+    public void testFormatBenchmark() {
+        Benchmark.measure(TAG, "Built every time", PASSES * DAYS, new Runnable() {
+            @Override
+            public void run() {
+                formatEveryDate(false);
+            }
+        });
+        Benchmark.measure(TAG, "Cached", PASSES * DAYS, new Runnable() {
+            @Override
+            public void run() {
+                formatEveryDate(true);
+            }
+        });
+    }
+
+    /*
+     * Formats every date PASSES times. Without the cache, every label is built as
+     * getFriendlyDateString used to.
+     */
+    private void formatEveryDate(boolean cached) {
+        for (int pass = 0; pass < PASSES; pass++) {
+            for (int day = 0; day < DAYS; day++) {
+                if (!cached) {
+                    invalidate();
+                }
+                SunshineDateUtils.getFriendlyDateString(
+                        mContext, mToday + day * SunshineDateUtils.DAY_IN_MILLIS, day == 0);
+            }
+        }
+    }
+
+    private void invalidate() {
+        synchronized (mCache) {
+            mCache.invalidate();
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.utilities;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.sunshine.R;
+import com.example.android.sunshine.utils.Benchmark;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNotSame;
+import static junit.framework.Assert.assertSame;
+
+/**
+ * Checks that {@link WeatherArtCache} renders both kinds of art at the size asked for, hands out
+ * the same bitmap until memory runs low, and measures it against decoding and scaling the art
+ * every time like the notification and the wear updates used to. Results are logged under this
+ * class's name:
+ * <p>
+ *   adb logcat -s TestWeatherArtCache
+ */
+@RunWith(AndroidJUnit4.class)
+public class TestWeatherArtCache {
+
+    private static final String TAG = TestWeatherArtCache.class.getSimpleName();
+
+    /* The size the wear updates send the art at */
+    private static final int SIZE = 50;
+
+    /* The art of a sync, drawn this many times per measurement */
+    private static final int PASSES = 100;
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+
+    private WeatherArtCache mCache;
+
+    @Before
+    public void setUp() {
+        mCache = WeatherArtCache.getInstance(mContext);
+        mCache.trimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+    }
+
+    @Test
+    public void testRendersBitmapArtAtSize() {
+        Bitmap bitmap = mCache.getBitmap(R.drawable.ic_clear, SIZE, SIZE * 2);
+
+        assertNotNull("The small art wasn't rendered", bitmap);
+        assertEquals(SIZE, bitmap.getWidth());
+        assertEquals(SIZE * 2, bitmap.getHeight());
+    }
+
+    @Test
+    public void testRendersVectorArtAtSize() {
+        Bitmap bitmap = mCache.getBitmap(R.drawable.art_clear, SIZE, SIZE);
+
+        assertNotNull("The large art wasn't rendered", bitmap);
+        assertEquals(SIZE, bitmap.getWidth());
+        assertEquals(SIZE, bitmap.getHeight());
+    }
+
+    @Test
+    public void testReturnsCachedBitmap() {
+        Bitmap bitmap = mCache.getBitmap(R.drawable.ic_rain, SIZE, SIZE);
+
+        assertSame(bitmap, mCache.getBitmap(R.drawable.ic_rain, SIZE, SIZE));
+        assertNotSame("Another size has to be rendered on its own",
+                bitmap, mCache.getBitmap(R.drawable.ic_rain, SIZE * 2, SIZE * 2));
+    }
+
+    @Test
+    public void testTrimMemoryEvicts() {
+        Bitmap bitmap = mCache.getBitmap(R.drawable.ic_snow, SIZE, SIZE);
+
+        /* The UI being hidden only trims the cache, which keeps a single bitmap */
+        mCache.trimMemory(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN);
+        assertSame(bitmap, mCache.getBitmap(R.drawable.ic_snow, SIZE, SIZE));
+
+        mCache.trimMemory(ComponentCallbacks2.TRIM_MEMORY_BACKGROUND);
+        Bitmap rendered = mCache.getBitmap(R.drawable.ic_snow, SIZE, SIZE);
+        assertNotSame("The cache kept the art in the background", bitmap, rendered);
+
+        /* A bitmap handed out before stays usable */
+        assertFalse(bitmap.isRecycled());
+    }
+
+    @Test
+    public void testCacheBenchmark() {
+        Benchmark.measure(TAG, "Decoded and scaled", PASSES, new Runnable() {
+            @Override
+            public void run() {
+                drawSync(false);
+            }
+        });
+        Benchmark.measure(TAG, "Cached", PASSES, new Runnable() {
+            @Override
+            public void run() {
+                drawSync(true);
+            }
+        });
+    }
+
+    /*
+     * Draws the art a sync sends to the watch PASSES times, from the cache or the way
+     * SunshineSyncUtils#getBitmap used to.
+     */
+    private void drawSync(boolean cached) {
+        for (int pass = 0; pass < PASSES; pass++) {
+            Bitmap bitmap;
+            if (cached) {
+                bitmap = mCache.getBitmap(R.drawable.ic_light_clouds, SIZE, SIZE);
+            } else {
+                Bitmap decoded = BitmapFactory.decodeResource(
+                        mContext.getResources(), R.drawable.ic_light_clouds);
+                bitmap = Bitmap.createScaledBitmap(decoded, SIZE, SIZE, true /* filter */);
+            }
+            assertNotNull(bitmap);
+            assertEquals(SIZE, bitmap.getWidth());
+        }
+    }
+}
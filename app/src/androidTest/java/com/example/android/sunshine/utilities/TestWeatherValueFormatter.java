@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.utilities;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.sunshine.R;
+import com.example.android.sunshine.utils.Benchmark;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Locale;
+
+import static junit.framework.Assert.assertEquals;
+
+/**
+ * Checks that {@link WeatherValueFormatter} writes exactly what String#format writes with the
+ * format strings of our resources, in locales with different digits, and measures both. Results
+ * are logged under this class's name:
+ * <p>
+ *   adb logcat -s TestWeatherValueFormatter
+ */
+@RunWith(AndroidJUnit4.class)
+public class TestWeatherValueFormatter {
+
+    private static final String TAG = TestWeatherValueFormatter.class.getSimpleName();
+
+    /* Latin digits, a decimal comma, Arabic-Indic digits and Extended Arabic-Indic digits */
+    private static final Locale[] LOCALES = {
+            Locale.US, Locale.FRANCE, new Locale("ar", "EG"), new Locale("fa", "IR")};
+
+    /* Temperatures of a forecast, formatted this many times per measurement */
+    private static final double[] TEMPERATURES = {
+            21.3, 12.8, 19.5, 9.49, 24.0, 15.7, -2.5, -0.4, 30.1, 17.2, 8.6, 11.1, 22.9, 14.4};
+    private static final int PASSES = 1000;
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+
+    private final Locale mDefaultLocale = Locale.getDefault();
+
+    @After
+    public void tearDown() {
+        Locale.setDefault(mDefaultLocale);
+    }
+
+    @Test
+    public void testTemperaturesMatchStringFormat() {
+        for (Locale locale : LOCALES) {
+            Locale.setDefault(locale);
+            WeatherValueFormatter formatter = WeatherValueFormatter.getInstance(mContext);
+
+            for (int tenths = -2000; tenths <= 2000; tenths++) {
+                double temperature = tenths / 10.0;
+                assertEquals(locale + ", " + temperature,
+                        String.format(format, temperature),
+                        formatter.formatTemperature(temperature));
+            }
+            for (double temperature : new double[] {-0.0, 0.5, -0.5, 1e20, Double.NaN,
+                    Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY}) {
+                assertEquals(locale + ", " + temperature,
+                        String.format(format, temperature),
+                        formatter.formatTemperature(temperature));
+            }
+        }
+    }
+
+    @Test
+    public void testWindMatchesStringFormat() {
+        String kmh = mContext.getString(R.string.format_wind_kmh);
+        String mph = mContext.getString(R.string.format_wind_mph);
+        for (Locale locale : LOCALES) {
+            Locale.setDefault(locale);
+            WeatherValueFormatter formatter = WeatherValueFormatter.getInstance(mContext);
+
+            for (float degrees = -45f; degrees <= 405f; degrees += 0.5f) {
+                float speed = degrees / 7f;
+                String direction = legacyCompassDirection(degrees);
+                assertEquals(locale + ", " + speed + " km/h " + degrees,
+                        String.format(kmh, speed, direction),
+                        formatter.formatWind(speed, degrees, true));
+                assertEquals(locale + ", " + speed + " mph " + degrees,
+                        String.format(mph, speed, direction),
+                        formatter.formatWind(speed, degrees, false));
+            }
+            assertEquals("Unknown", WeatherValueFormatter.getCompassDirection(Float.NaN));
+        }
+    }
+
+    @Test
+    public void testPressureAndHumidityMatchStringFormat() {
+        String pressureFormat = mContext.getString(R.string.format_pressure);
+        String humidityFormat = mContext.getString(R.string.format_humidity);
+        for (Locale locale : LOCALES) {
+            Locale.setDefault(locale);
+            WeatherValueFormatter formatter = WeatherValueFormatter.getInstance(mContext);
+
+            for (float value = 0f; value <= 1100f; value += 0.25f) {
+                assertEquals(locale + ", " + value + " hPa",
+                        String.format(pressureFormat, value), formatter.formatPressure(value));
+                assertEquals(locale + ", " + value + " %",
+                        String.format(humidityFormat, value), formatter.formatHumidity(value));
+            }
+        }
+    }
+
+    @Test
+    public void testFormatBenchmark() {
+        final WeatherValueFormatter formatter = WeatherValueFormatter.getInstance(mContext);
+        int temperatures = PASSES * TEMPERATURES.length;
+
+        Benchmark.measure(TAG, "String.format", temperatures, new Runnable() {
+            @Override
+            public void run() {
+                formatForecast(formatter, false);
+            }
+        });
+        Benchmark.measure(TAG, "WeatherValueFormatter", temperatures, new Runnable() {
+            @Override
+            public void run() {
+                formatForecast(formatter, true);
+            }
+        });
+    }
+
+    /*
+     * Formats every temperature PASSES times, with the formatter or the way formatTemperature
+     * did before it.
+     */
+    private void formatForecast(WeatherValueFormatter formatter, boolean useFormatter) {
+        for (int pass = 0; pass < PASSES; pass++) {
+            for (double temperature : TEMPERATURES) {
+                if (useFormatter) {
+                    formatter.formatTemperature(temperature);
+                } else {
+                    String.format(mContext.getString(R.string.format_temperature), temperature);
+                }
+            }
+        }
+    }
+
+    /* The if/else ladder getFormattedWind used before the lookup table */
+    private static String legacyCompassDirection(float degrees) {
+        String direction = "Unknown";
+        if (degrees >= 337.5 || degrees < 22.5) {
+            direction = "N";
+        } else if (degrees >= 22.5 && degrees < 67.5) {
+            direction = "NE";
+        } else if (degrees >= 67.5 && degrees < 112.5) {
+            direction = "E";
+        } else if (degrees >= 112.5 && degrees < 157.5) {
+            direction = "SE";
+        } else if (degrees >= 157.5 && degrees < 202.5) {
+            direction = "S";
+        } else if (degrees >= 202.5 && degrees < 247.5) {
+            direction = "SW";
+        } else if (degrees >= 247.5 && degrees < 292.5) {
+            direction = "W";
+        } else if (degrees >= 292.5 && degrees < 337.5) {
+            direction = "NW";
+        }
+        return direction;
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.utils;
+
+import android.os.Debug;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.Locale;
+
+/**
+ * Measures how long a block of code takes on the calling thread, and how many objects it
+ * allocates, for the tests that compare a code path with the one it replaced. The numbers depend
+ * on the device and the runtime, so they are only logged, under the tag the test passes; tests
+ * assert on what the code does instead.
+ */
+public final class Benchmark {
+
+    private Benchmark() {
+    }
+
+    /**
+     * Runs a block once to warm up, so that the measurement doesn't pay for loading classes and
+     * resources, then once more while measuring it, and logs the time and allocations per call.
+     *
+     * @param tag   Tag to log under, the test's class name
+     * @param label What the block does, to tell measurements apart in the log
+     * @param calls The number of calls the block makes to the code being measured
+     * @param block The code to measure
+     */
+    @SuppressWarnings("deprecation")
+    public static void measure(String tag, String label, int calls, Runnable block) {
+        block.run();
+
+        /* Still the only way to count the allocations of a single thread */
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        long start = SystemClock.elapsedRealtimeNanos();
+
+        block.run();
+
+        long nanos = SystemClock.elapsedRealtimeNanos() - start;
+        Debug.stopAllocCounting();
+        long allocations = Debug.getThreadAllocCount();
+
+        Log.i(tag, String.format(Locale.US, "%s: %.2f us and %.1f allocations per call",
+                label, nanos / 1000.0 / calls, (double) allocations / calls));
+    }
+}
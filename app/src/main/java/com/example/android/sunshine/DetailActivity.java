@@ -16,26 +16,23 @@
 package com.example.android.sunshine;
 
 import android.content.Intent;
-import android.database.Cursor;
 import android.databinding.DataBindingUtil;
 import android.net.Uri;
 import android.os.Bundle;
-import android.support.v4.app.LoaderManager;
 import android.support.v4.app.ShareCompat;
-import android.support.v4.content.CursorLoader;
-import android.support.v4.content.Loader;
 import android.support.v7.app.AppCompatActivity;
 import android.view.Menu;
 import android.view.MenuInflater;
 import android.view.MenuItem;
 
-import com.example.android.sunshine.data.WeatherContract;
+import com.example.android.sunshine.data.ForecastBatch;
+import com.example.android.sunshine.data.ForecastRepository;
 import com.example.android.sunshine.databinding.ActivityDetailBinding;
 import com.example.android.sunshine.utilities.SunshineDateUtils;
 import com.example.android.sunshine.utilities.SunshineWeatherUtils;
 
 public class DetailActivity extends AppCompatActivity implements
-        LoaderManager.LoaderCallbacks<Cursor> {
+        ForecastRepository.Observer {
 
     /*
      * In this Activity, you can share the selected day's forecast. No social sharing is complete
@@ -43,50 +40,15 @@ public class DetailActivity extends AppCompatActivity implements
      */
     private static final String FORECAST_SHARE_HASHTAG = " #SunshineApp";
 
-    /*
-     * The columns of data that we are interested in displaying within our DetailActivity's
-     * weather display.
-     */
-    public static final String[] WEATHER_DETAIL_PROJECTION = {
-            WeatherContract.WeatherEntry.COLUMN_DATE,
-            WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
-            WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
-            WeatherContract.WeatherEntry.COLUMN_HUMIDITY,
-            WeatherContract.WeatherEntry.COLUMN_PRESSURE,
-            WeatherContract.WeatherEntry.COLUMN_WIND_SPEED,
-            WeatherContract.WeatherEntry.COLUMN_DEGREES,
-            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID
-    };
-
-    /*
-     * We store the indices of the values in the array of Strings above to more quickly be able
-     * to access the data from our query. If the order of the Strings above changes, these
-     * indices must be adjusted to match the order of the Strings.
-     */
-    public static final int INDEX_WEATHER_DATE = 0;
-    public static final int INDEX_WEATHER_MAX_TEMP = 1;
-    public static final int INDEX_WEATHER_MIN_TEMP = 2;
-    public static final int INDEX_WEATHER_HUMIDITY = 3;
-    public static final int INDEX_WEATHER_PRESSURE = 4;
-    public static final int INDEX_WEATHER_WIND_SPEED = 5;
-    public static final int INDEX_WEATHER_DEGREES = 6;
-    public static final int INDEX_WEATHER_CONDITION_ID = 7;
-
-    /*
-     * This ID will be used to identify the Loader responsible for loading the weather details
-     * for a particular day. In some cases, one Activity can deal with many Loaders. However, in
-     * our case, there is only one. We will still use this ID to initialize the loader and create
-     * the loader for best practice. Please note that 353 was chosen arbitrarily. You can use
-     * whatever number you like, so long as it is unique and consistent.
-     */
-    private static final int ID_DETAIL_LOADER = 353;
-
     /* A summary of the forecast that can be shared by clicking the share button in the ActionBar */
     private String mForecastSummary;
 
     /* The URI that is used to access the chosen day's weather details */
     private Uri mUri;
 
+    /* The normalized UTC date of the chosen day, the last segment of mUri */
+    private long mDate;
+
 
     /*
      * This field is used for data binding. Normally, we would have to call findViewById many
@@ -106,9 +68,34 @@ public class DetailActivity extends AppCompatActivity implements
 
         mUri = getIntent().getData();
         if (mUri == null) throw new NullPointerException("URI for DetailActivity cannot be null");
+        mDate = Long.parseLong(mUri.getLastPathSegment());
+    }
 
-        /* This connects our Activity into the loader lifecycle. */
-        getSupportLoaderManager().initLoader(ID_DETAIL_LOADER, null, this);
+    /**
+     * The forecast is usually in memory already, since the list we were opened from displays it.
+     * If it isn't, for example when we were opened from the notification in a new process, the
+     * repository loads it and tells us once it's there. Either way, we keep observing it so the
+     * details follow a sync that happens while they are displayed.
+     */
+    @Override
+    protected void onStart() {
+        super.onStart();
+
+        ForecastRepository repository = ForecastRepository.getInstance(this);
+        repository.addObserver(this);
+
+        ForecastBatch forecast = repository.peekForecast();
+        if (forecast != null) {
+            bindForecast(forecast);
+        } else {
+            repository.loadForecast();
+        }
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        ForecastRepository.getInstance(this).removeObserver(this);
     }
 
     /**
@@ -179,62 +166,34 @@ public class DetailActivity extends AppCompatActivity implements
     }
 
     /**
-     * Creates and returns a CursorLoader that loads the data for our URI and stores it in a Cursor.
-     *
-     * @param loaderId The loader ID for which we need to create a loader
-     * @param loaderArgs Any arguments supplied by the caller
+     * Called on the main thread when the forecast changed or was loaded.
      *
-     * @return A new Loader instance that is ready to start loading.
+     * @param forecast The new forecast, null if it has to be loaded again
      */
     @Override
-    public Loader<Cursor> onCreateLoader(int loaderId, Bundle loaderArgs) {
-
-        switch (loaderId) {
-
-            case ID_DETAIL_LOADER:
-
-                return new CursorLoader(this,
-                        mUri,
-                        WEATHER_DETAIL_PROJECTION,
-                        null,
-                        null,
-                        null);
-
-            default:
-                throw new RuntimeException("Loader Not Implemented: " + loaderId);
+    public void onForecastChanged(ForecastBatch forecast) {
+        if (forecast == null) {
+            ForecastRepository.getInstance(this).loadForecast();
+        } else {
+            bindForecast(forecast);
         }
     }
 
     /**
-     * Runs on the main thread when a load is complete. If initLoader is called (we call it from
-     * onCreate in DetailActivity) and the LoaderManager already has completed a previous load
-     * for this Loader, onLoadFinished will be called immediately. Within onLoadFinished, we bind
-     * the data to our views so the user can see the details of the weather on the date they
-     * selected from the forecast.
+     * Binds the chosen day of the forecast to our views so the user can see the details of the
+     * weather on the date they selected from the forecast.
      *
-     * @param loader The cursor loader that finished.
-     * @param data   The cursor that is being returned.
+     * @param forecast The forecast held by ForecastRepository
      */
-    @Override
-    public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
+    private void bindForecast(ForecastBatch forecast) {
 
         /*
-         * Before we bind the data to the UI that will display that data, we need to check the
-         * cursor to make sure we have the results that we are expecting. In order to do that, we
-         * check to make sure the cursor is not null and then we call moveToFirst on the cursor.
-         * Although it may not seem obvious at first, moveToFirst will return true if it contains
-         * a valid first row of data.
-         *
-         * If we have valid data, we want to continue on to bind that data to the UI. If we don't
-         * have any data to bind, we just return from this method.
+         * Before we bind the data to the UI that will display that data, we need to make sure
+         * the forecast has the day we are expecting. If we don't have any data to bind, we just
+         * return from this method.
          */
-        boolean cursorHasValidData = false;
-        if (data != null && data.moveToFirst()) {
-            /* We have valid data, continue on to bind the data to the UI */
-            cursorHasValidData = true;
-        }
-
-        if (!cursorHasValidData) {
+        int day = forecast.indexOfDate(mDate);
+        if (day < 0) {
             /* No data to display, simply return and do nothing */
             return;
         }
@@ -242,8 +201,8 @@ public class DetailActivity extends AppCompatActivity implements
         /****************
          * Weather Icon *
          ****************/
-        /* Read weather condition ID from the cursor (ID provided by Open Weather Map) */
-        int weatherId = data.getInt(INDEX_WEATHER_CONDITION_ID);
+        /* Read weather condition ID from the forecast (ID provided by Open Weather Map) */
+        int weatherId = forecast.weatherIds[day];
         /* Use our utility method to determine the resource ID for the proper art */
         int weatherImageId = SunshineWeatherUtils.getLargeArtResourceIdForWeatherCondition(weatherId);
 
@@ -254,7 +213,7 @@ public class DetailActivity extends AppCompatActivity implements
          * Weather Date *
          ****************/
         /*
-         * Read the date from the cursor. It is important to note that the date from the cursor
+         * Read the date from the forecast. It is important to note that the date from the forecast
          * is the same date from the weather SQL table. The date that is stored is a GMT
          * representation at midnight of the date when the weather information was loaded for.
          *
@@ -262,7 +221,7 @@ public class DetailActivity extends AppCompatActivity implements
          * the date representation for the local date in local time.
          * SunshineDateUtils#getFriendlyDateString takes care of this for us.
          */
-        long localDateMidnightGmt = data.getLong(INDEX_WEATHER_DATE);
+        long localDateMidnightGmt = forecast.dates[day];
         String dateText = SunshineDateUtils.getFriendlyDateString(this, localDateMidnightGmt, true);
 
         mDetailBinding.primaryInfo.date.setText(dateText);
@@ -286,8 +245,8 @@ public class DetailActivity extends AppCompatActivity implements
         /**************************
          * High (max) temperature *
          **************************/
-        /* Read high temperature from the cursor (in degrees celsius) */
-        double highInCelsius = data.getDouble(INDEX_WEATHER_MAX_TEMP);
+        /* Read high temperature from the forecast (in degrees celsius) */
+        double highInCelsius = forecast.maxTemps[day];
         /*
          * If the user's preference for weather is fahrenheit, formatTemperature will convert
          * the temperature. This method will also append either °C or °F to the temperature
@@ -305,8 +264,8 @@ public class DetailActivity extends AppCompatActivity implements
         /*************************
          * Low (min) temperature *
          *************************/
-        /* Read low temperature from the cursor (in degrees celsius) */
-        double lowInCelsius = data.getDouble(INDEX_WEATHER_MIN_TEMP);
+        /* Read low temperature from the forecast (in degrees celsius) */
+        double lowInCelsius = forecast.minTemps[day];
         /*
          * If the user's preference for weather is fahrenheit, formatTemperature will convert
          * the temperature. This method will also append either °C or °F to the temperature
@@ -323,9 +282,9 @@ public class DetailActivity extends AppCompatActivity implements
         /************
          * Humidity *
          ************/
-        /* Read humidity from the cursor */
-        float humidity = data.getFloat(INDEX_WEATHER_HUMIDITY);
-        String humidityString = getString(R.string.format_humidity, humidity);
+        /* Read humidity from the forecast */
+        float humidity = (float) forecast.humidities[day];
+        String humidityString = SunshineWeatherUtils.formatHumidity(this, humidity);
 
         String humidityA11y = getString(R.string.a11y_humidity, humidityString);
 
@@ -338,9 +297,9 @@ public class DetailActivity extends AppCompatActivity implements
         /****************************
          * Wind speed and direction *
          ****************************/
-        /* Read wind speed (in MPH) and direction (in compass degrees) from the cursor  */
-        float windSpeed = data.getFloat(INDEX_WEATHER_WIND_SPEED);
-        float windDirection = data.getFloat(INDEX_WEATHER_DEGREES);
+        /* Read wind speed (in MPH) and direction (in compass degrees) from the forecast */
+        float windSpeed = (float) forecast.windSpeeds[day];
+        float windDirection = (float) forecast.degrees[day];
         String windString = SunshineWeatherUtils.getFormattedWind(this, windSpeed, windDirection);
 
         String windA11y = getString(R.string.a11y_wind, windString);
@@ -354,17 +313,15 @@ public class DetailActivity extends AppCompatActivity implements
         /************
          * Pressure *
          ************/
-        /* Read pressure from the cursor */
-        float pressure = data.getFloat(INDEX_WEATHER_PRESSURE);
+        /* Read pressure from the forecast */
+        float pressure = (float) forecast.pressures[day];
 
         /*
-         * Format the pressure text using string resources. The reason we directly access
-         * resources using getString rather than using a method from SunshineWeatherUtils as
-         * we have for other data displayed in this Activity is because there is no
-         * additional logic that needs to be considered in order to properly display the
-         * pressure.
+         * Format the pressure text the way the string resource describes it. SunshineWeatherUtils
+         * does so without going through String.format, like it does for the other values
+         * displayed in this Activity.
          */
-        String pressureString = getString(R.string.format_pressure, pressure);
+        String pressureString = SunshineWeatherUtils.formatPressure(this, pressure);
 
         String pressureA11y = getString(R.string.a11y_pressure, pressureString);
 
@@ -378,15 +335,4 @@ public class DetailActivity extends AppCompatActivity implements
         mForecastSummary = String.format("%s - %s - %s/%s",
                 dateText, description, highString, lowString);
     }
-
-    /**
-     * Called when a previously created loader is being reset, thus making its data unavailable.
-     * The application should at this point remove any references it has to the Loader's data.
-     * Since we don't store any of this cursor's data, there are no references we need to remove.
-     *
-     * @param loader The Loader that is being reset.
-     */
-    @Override
-    public void onLoaderReset(Loader<Cursor> loader) {
-    }
 }
\ No newline at end of file
@@ -16,8 +16,11 @@
 package com.example.android.sunshine;
 
 import android.content.Context;
-import android.database.Cursor;
+import android.os.Handler;
+import android.os.Looper;
 import android.support.annotation.NonNull;
+import android.support.annotation.VisibleForTesting;
+import android.support.v7.util.DiffUtil;
 import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -25,12 +28,16 @@ import android.view.ViewGroup;
 import android.widget.ImageView;
 import android.widget.TextView;
 
-import com.example.android.sunshine.utilities.SunshineDateUtils;
-import com.example.android.sunshine.utilities.SunshineWeatherUtils;
+import com.example.android.sunshine.utilities.WeatherArtCache;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 /**
- * {@link ForecastAdapter} exposes a list of weather forecasts
- * from a {@link android.database.Cursor} to a {@link android.support.v7.widget.RecyclerView}.
+ * {@link ForecastAdapter} exposes a list of weather forecasts, formatted into
+ * {@link ForecastRow}s, to a {@link android.support.v7.widget.RecyclerView}.
  */
 class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapterViewHolder> {
 
@@ -48,6 +55,11 @@ class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapt
      */
     final private ForecastAdapterOnClickHandler mClickHandler;
 
+    /* Holds the weather art already rendered, at the sizes of the icons below in pixels */
+    private final WeatherArtCache mArtCache;
+    private final int mTodayIconSize;
+    private final int mListIconSize;
+
     /**
      * The interface that receives onClick messages.
      */
@@ -63,7 +75,17 @@ class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapt
      */
     private boolean mUseTodayLayout;
 
-    private Cursor mCursor;
+    /* The formatted forecast, one row per day */
+    private List<ForecastRow> mRows = Collections.emptyList();
+
+    /* Compares the displayed rows with new ones, see swapForecast */
+    private static final Executor sDiffExecutor = Executors.newSingleThreadExecutor();
+
+    /* Applies the result of a comparison, on the main thread where the RecyclerView lives */
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /* Incremented by every call to swapForecast, to drop comparisons that are out of date */
+    private int mSwapGeneration;
 
     /**
      * Creates a ForecastAdapter.
@@ -76,6 +98,14 @@ class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapt
         mContext = context;
         mClickHandler = clickHandler;
         mUseTodayLayout = mContext.getResources().getBoolean(R.bool.use_today_layout);
+
+        /* The art is rendered at the size of the icons, so that binding only hands it over */
+        mArtCache = WeatherArtCache.getInstance(mContext);
+        mTodayIconSize = mContext.getResources().getDimensionPixelSize(R.dimen.today_icon);
+        mListIconSize = mContext.getResources().getDimensionPixelSize(R.dimen.list_icon);
+
+        /* A day keeps its ID as long as it's displayed, which lets the list animate updates */
+        setHasStableIds(true);
     }
 
     /**
@@ -129,90 +159,62 @@ class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapt
      */
     @Override
     public void onBindViewHolder(ForecastAdapterViewHolder forecastAdapterViewHolder, int position) {
-        mCursor.moveToPosition(position);
+        /*
+         * Everything was formatted when the row was loaded, so binding only hands the results
+         * to the views.
+         */
+        ForecastRow row = mRows.get(position);
 
         /****************
          * Weather Icon *
          ****************/
-        int weatherId = mCursor.getInt(MainActivity.INDEX_WEATHER_CONDITION_ID);
         int weatherImageId;
+        int iconSize;
 
         int viewType = getItemViewType(position);
 
         switch (viewType) {
 
             case VIEW_TYPE_TODAY:
-                weatherImageId = SunshineWeatherUtils
-                        .getLargeArtResourceIdForWeatherCondition(weatherId);
+                weatherImageId = row.largeIconResId;
+                iconSize = mTodayIconSize;
                 break;
 
             case VIEW_TYPE_FUTURE_DAY:
-                weatherImageId = SunshineWeatherUtils
-                        .getSmallArtResourceIdForWeatherCondition(weatherId);
+                weatherImageId = row.smallIconResId;
+                iconSize = mListIconSize;
                 break;
 
             default:
                 throw new IllegalArgumentException("Invalid view type, value of " + viewType);
         }
 
-        forecastAdapterViewHolder.iconView.setImageResource(weatherImageId);
+        forecastAdapterViewHolder.iconView.setImageBitmap(
+                mArtCache.getBitmap(weatherImageId, iconSize, iconSize));
 
         /****************
          * Weather Date *
          ****************/
-         /* Read date from the cursor */
-        long dateInMillis = mCursor.getLong(MainActivity.INDEX_WEATHER_DATE);
-         /* Get human readable string using our utility method */
-        String dateString = SunshineDateUtils.getFriendlyDateString(mContext, dateInMillis, false);
-
-         /* Display friendly date string */
-        forecastAdapterViewHolder.dateView.setText(dateString);
+        forecastAdapterViewHolder.dateView.setText(row.dateText);
 
         /***********************
          * Weather Description *
          ***********************/
-        String description = SunshineWeatherUtils.getStringForWeatherCondition(mContext, weatherId);
-         /* Create the accessibility (a11y) String from the weather description */
-        String descriptionA11y = mContext.getString(R.string.a11y_forecast, description);
-
          /* Set the text and content description (for accessibility purposes) */
-        forecastAdapterViewHolder.descriptionView.setText(description);
-        forecastAdapterViewHolder.descriptionView.setContentDescription(descriptionA11y);
+        forecastAdapterViewHolder.descriptionView.setText(row.description);
+        forecastAdapterViewHolder.descriptionView.setContentDescription(row.descriptionA11y);
 
         /**************************
          * High (max) temperature *
          **************************/
-         /* Read high temperature from the cursor (in degrees celsius) */
-        double highInCelsius = mCursor.getDouble(MainActivity.INDEX_WEATHER_MAX_TEMP);
-         /*
-          * If the user's preference for weather is fahrenheit, formatTemperature will convert
-          * the temperature. This method will also append either °C or °F to the temperature
-          * String.
-          */
-        String highString = SunshineWeatherUtils.formatTemperature(mContext, highInCelsius);
-         /* Create the accessibility (a11y) String from the weather description */
-        String highA11y = mContext.getString(R.string.a11y_high_temp, highString);
-
-         /* Set the text and content description (for accessibility purposes) */
-        forecastAdapterViewHolder.highTempView.setText(highString);
-        forecastAdapterViewHolder.highTempView.setContentDescription(highA11y);
+        forecastAdapterViewHolder.highTempView.setText(row.highText);
+        forecastAdapterViewHolder.highTempView.setContentDescription(row.highA11y);
 
         /*************************
          * Low (min) temperature *
          *************************/
-         /* Read low temperature from the cursor (in degrees celsius) */
-        double lowInCelsius = mCursor.getDouble(MainActivity.INDEX_WEATHER_MIN_TEMP);
-         /*
-          * If the user's preference for weather is fahrenheit, formatTemperature will convert
-          * the temperature. This method will also append either °C or °F to the temperature
-          * String.
-          */
-        String lowString = SunshineWeatherUtils.formatTemperature(mContext, lowInCelsius);
-        String lowA11y = mContext.getString(R.string.a11y_low_temp, lowString);
-
-         /* Set the text and content description (for accessibility purposes) */
-        forecastAdapterViewHolder.lowTempView.setText(lowString);
-        forecastAdapterViewHolder.lowTempView.setContentDescription(lowA11y);
+        forecastAdapterViewHolder.lowTempView.setText(row.lowText);
+        forecastAdapterViewHolder.lowTempView.setContentDescription(row.lowA11y);
     }
 
     /**
@@ -223,8 +225,18 @@ class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapt
      */
     @Override
     public int getItemCount() {
-        if (null == mCursor) return 0;
-        return mCursor.getCount();
+        return mRows.size();
+    }
+
+    /**
+     * Returns the date of the day at the given position, which is unique within the forecast.
+     *
+     * @param position index within our RecyclerView and list of rows
+     * @return the normalized UTC date of the day
+     */
+    @Override
+    public long getItemId(int position) {
+        return mRows.get(position).date;
     }
 
     /**
@@ -234,7 +246,7 @@ class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapt
      * different layout for the "today" layout. The "today" layout is only shown in portrait mode
      * with the first item in the list.
      *
-     * @param position index within our RecyclerView and Cursor
+     * @param position index within our RecyclerView and list of rows
      * @return the view type (today or future day)
      */
     @Override
@@ -247,16 +259,94 @@ class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapt
     }
 
     /**
-     * Swaps the cursor used by the ForecastAdapter for its weather data. This method is called by
-     * MainActivity after a load has finished, as well as when the Loader responsible for loading
-     * the weather data is reset. When this method is called, we assume we have a completely new
-     * set of data, so we call notifyDataSetChanged to tell the RecyclerView to update.
+     * Swaps the rows displayed by the ForecastAdapter. This method is called by MainActivity after
+     * a load has finished, as well as when the Loader responsible for loading the weather data is
+     * reset.
+     * <p>
+     * Rather than rebinding every row, the new rows are compared with the displayed ones on a
+     * background thread, matching days by their date. Only days that were added, removed or
+     * whose text changed are then updated, so a sync that lands while the user is scrolling
+     * doesn't relayout the whole list. The displayed rows stay the same until then.
      *
-     * @param newCursor the new cursor to use as ForecastAdapter's data source
+     * @param newRows the formatted rows to display, null to display nothing
+     */
+    void swapForecast(List<ForecastRow> newRows) {
+        final List<ForecastRow> oldRows = mRows;
+        final List<ForecastRow> rows =
+                newRows != null ? newRows : Collections.<ForecastRow>emptyList();
+        final int generation = ++mSwapGeneration;
+
+        /* Nothing to compare, every row is inserted or removed */
+        if (oldRows.isEmpty() || rows.isEmpty()) {
+            mRows = rows;
+            notifyItemRangeRemoved(0, oldRows.size());
+            notifyItemRangeInserted(0, rows.size());
+            return;
+        }
+
+        sDiffExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final DiffUtil.DiffResult diff =
+                        DiffUtil.calculateDiff(new ForecastDiffCallback(oldRows, rows), false);
+
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        /* Rows swapped in after these replace them, this diff is out of date */
+                        if (generation != mSwapGeneration) {
+                            return;
+                        }
+                        mRows = rows;
+                        diff.dispatchUpdatesTo(ForecastAdapter.this);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * @return the rows displayed right now, which swapForecast replaces once it has compared
+     * them with the new ones
+     */
+    @VisibleForTesting
+    List<ForecastRow> getForecast() {
+        return mRows;
+    }
+
+    /**
+     * Tells DiffUtil that two rows are the same day if they have the same date, and that a day
+     * needs to be rebound only if any of its text or its icon changed.
      */
-    void swapCursor(Cursor newCursor) {
-        mCursor = newCursor;
-        notifyDataSetChanged();
+    private static final class ForecastDiffCallback extends DiffUtil.Callback {
+
+        private final List<ForecastRow> mOldRows;
+        private final List<ForecastRow> mNewRows;
+
+        ForecastDiffCallback(List<ForecastRow> oldRows, List<ForecastRow> newRows) {
+            mOldRows = oldRows;
+            mNewRows = newRows;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return mOldRows.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return mNewRows.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return mOldRows.get(oldItemPosition).date == mNewRows.get(newItemPosition).date;
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            return mOldRows.get(oldItemPosition).hasSameContents(mNewRows.get(newItemPosition));
+        }
     }
 
     /**
@@ -294,8 +384,7 @@ class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapt
         @Override
         public void onClick(View v) {
             int adapterPosition = getAdapterPosition();
-            mCursor.moveToPosition(adapterPosition);
-            long dateInMillis = mCursor.getLong(MainActivity.INDEX_WEATHER_DATE);
+            long dateInMillis = mRows.get(adapterPosition).date;
             mClickHandler.onClick(dateInMillis);
         }
     }
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine;
+
+import android.content.Context;
+
+import com.example.android.sunshine.data.ForecastBatch;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+import com.example.android.sunshine.utilities.SunshineWeatherUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One day of the forecast list, with every String the list item displays already formatted.
+ * Rows are built off the main thread by {@link ForecastRowLoader}, so that
+ * {@link ForecastAdapter#onBindViewHolder} only has to hand them to the views.
+ */
+final class ForecastRow {
+
+    /* Normalized UTC date of the day, what the list reports when the row is clicked */
+    final long date;
+
+    final int weatherId;
+
+    /* The "today" layout shows the large art, every other row the small one */
+    final int largeIconResId;
+    final int smallIconResId;
+
+    final String dateText;
+
+    final String description;
+    final String descriptionA11y;
+
+    final String highText;
+    final String highA11y;
+
+    final String lowText;
+    final String lowA11y;
+
+    private ForecastRow(Context context, ForecastBatch forecast, int day) {
+        date = forecast.dates[day];
+        weatherId = forecast.weatherIds[day];
+
+        /****************
+         * Weather Icon *
+         ****************/
+        largeIconResId = SunshineWeatherUtils.getLargeArtResourceIdForWeatherCondition(weatherId);
+        smallIconResId = SunshineWeatherUtils.getSmallArtResourceIdForWeatherCondition(weatherId);
+
+        /****************
+         * Weather Date *
+         ****************/
+        /* Get human readable string using our utility method */
+        dateText = SunshineDateUtils.getFriendlyDateString(context, date, false);
+
+        /***********************
+         * Weather Description *
+         ***********************/
+        description = SunshineWeatherUtils.getStringForWeatherCondition(context, weatherId);
+        /* Create the accessibility (a11y) String from the weather description */
+        descriptionA11y = context.getString(R.string.a11y_forecast, description);
+
+        /**************************
+         * High (max) temperature *
+         **************************/
+        /*
+         * If the user's preference for weather is fahrenheit, formatTemperature will convert
+         * the temperature. This method will also append either °C or °F to the temperature
+         * String.
+         */
+        double highInCelsius = forecast.maxTemps[day];
+        highText = SunshineWeatherUtils.formatTemperature(context, highInCelsius);
+        highA11y = context.getString(R.string.a11y_high_temp, highText);
+
+        /*************************
+         * Low (min) temperature *
+         *************************/
+        double lowInCelsius = forecast.minTemps[day];
+        lowText = SunshineWeatherUtils.formatTemperature(context, lowInCelsius);
+        lowA11y = context.getString(R.string.a11y_low_temp, lowText);
+    }
+
+    /**
+     * Returns true if this row displays exactly what other does: the same day, with the same
+     * icon and text.
+     *
+     * @param other Another row
+     * @return true if binding other in place of this row wouldn't change anything on screen
+     */
+    boolean hasSameContents(ForecastRow other) {
+        return date == other.date
+                && largeIconResId == other.largeIconResId
+                && smallIconResId == other.smallIconResId
+                && dateText.equals(other.dateText)
+                && description.equals(other.description)
+                && descriptionA11y.equals(other.descriptionA11y)
+                && highText.equals(other.highText)
+                && highA11y.equals(other.highA11y)
+                && lowText.equals(other.lowText)
+                && lowA11y.equals(other.lowA11y);
+    }
+
+    /**
+     * Formats one day of a forecast.
+     *
+     * @param context  Used to access resources and the user's preferred units
+     * @param forecast The forecast, as held by ForecastRepository
+     * @param day      Index of the day within the forecast
+     * @return The formatted row
+     */
+    static ForecastRow fromForecast(Context context, ForecastBatch forecast, int day) {
+        return new ForecastRow(context, forecast, day);
+    }
+
+    /**
+     * Formats the days of a forecast from a given date onwards, in order.
+     *
+     * @param context   Used to access resources and the user's preferred units
+     * @param forecast  The forecast, sorted by date as ForecastRepository holds it
+     * @param firstDate Normalized UTC date of the first day to format, usually today
+     * @return The formatted rows, which can't be modified
+     */
+    static List<ForecastRow> listFromForecast(Context context, ForecastBatch forecast,
+                                              long firstDate) {
+        List<ForecastRow> rows = new ArrayList<>(forecast.size());
+        for (int day = 0; day < forecast.size(); day++) {
+            if (forecast.dates[day] >= firstDate) {
+                rows.add(new ForecastRow(context, forecast, day));
+            }
+        }
+        return Collections.unmodifiableList(rows);
+    }
+}
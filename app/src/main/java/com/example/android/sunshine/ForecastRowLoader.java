@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine;
+
+import android.content.Context;
+import android.database.ContentObserver;
+import android.net.Uri;
+import android.os.Handler;
+import android.support.v4.content.AsyncTaskLoader;
+
+import com.example.android.sunshine.data.ForecastBatch;
+import com.example.android.sunshine.data.ForecastRepository;
+import com.example.android.sunshine.data.WeatherContract;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Reads the forecast from today onwards from {@link ForecastRepository} and formats it into
+ * {@link ForecastRow}s on the loader's background thread. Like a CursorLoader, it loads again
+ * whenever the weather data changes, which includes the SettingsFragment notifying a change of
+ * units.
+ * <p>
+ * The rows hold text formatted for a locale and relative to a day ("Today", "Tomorrow"). The
+ * loader outlives its activity, so rows it kept from before a change of locale, or from an
+ * earlier day, are loaded again rather than delivered to the new activity.
+ */
+class ForecastRowLoader extends AsyncTaskLoader<List<ForecastRow>> {
+
+    /*
+     * Reloads the rows when something notifies a change of the weather data. The repository
+     * tells us about a new forecast; a change of units is only notified on the ContentResolver.
+     * The provider also notifies the ContentResolver of a new forecast, on a Uri listing the
+     * dates that changed. The repository already told us about it, so that Uri is skipped here,
+     * or each sync would load the rows twice. Registering without descendants doesn't leave it
+     * out, as it only differs from CONTENT_URI by its query, but does leave out single days.
+     */
+    private final ContentObserver mObserver = new ContentObserver(new Handler()) {
+        @Override
+        public boolean deliverSelfNotifications() {
+            return true;
+        }
+
+        @Override
+        public void onChange(boolean selfChange) {
+            onChange(selfChange, null);
+        }
+
+        @Override
+        public void onChange(boolean selfChange, Uri uri) {
+            if (WeatherContract.WeatherEntry.getChangedDates(uri) == null) {
+                onContentChanged();
+            }
+        }
+    };
+    private final ForecastRepository.Observer mRepositoryObserver =
+            new ForecastRepository.Observer() {
+                @Override
+                public void onForecastChanged(ForecastBatch forecast) {
+                    onContentChanged();
+                }
+            };
+    private boolean mObserving;
+
+    /* The rows delivered last, kept so they can be delivered again without reloading */
+    private List<ForecastRow> mRows;
+
+    /*
+     * The locale and day, in normalized UTC milliseconds, of the rows being loaded or delivered
+     * last. Set on the main thread before each load starts.
+     */
+    private Locale mLocale;
+    private long mToday;
+
+    ForecastRowLoader(Context context) {
+        super(context);
+    }
+
+    @Override
+    public List<ForecastRow> loadInBackground() {
+        /* Only a memory read, unless the repository hasn't loaded the forecast yet */
+        ForecastBatch forecast = ForecastRepository.getInstance(getContext()).getForecast();
+
+        /* All weather data from today onwards */
+        return ForecastRow.listFromForecast(getContext(), forecast, mToday);
+    }
+
+    @Override
+    public void deliverResult(List<ForecastRow> rows) {
+        if (isReset()) {
+            return;
+        }
+
+        mRows = rows;
+        if (isStarted()) {
+            super.deliverResult(rows);
+        }
+    }
+
+    @Override
+    protected void onStartLoading() {
+        if (!mObserving) {
+            getContext().getContentResolver().registerContentObserver(
+                    WeatherContract.WeatherEntry.CONTENT_URI, false, mObserver);
+            ForecastRepository.getInstance(getContext()).addObserver(mRepositoryObserver);
+            mObserving = true;
+        }
+
+        boolean rowsCurrent = mRows != null && isFormattedForNow();
+        if (rowsCurrent) {
+            deliverResult(mRows);
+        }
+
+        if (takeContentChanged() || !rowsCurrent) {
+            forceLoad();
+        }
+    }
+
+    @Override
+    protected void onForceLoad() {
+        mLocale = Locale.getDefault();
+        mToday = getToday();
+        super.onForceLoad();
+    }
+
+    /* Whether the locale and day the rows were formatted for are still the current ones */
+    private boolean isFormattedForNow() {
+        return Locale.getDefault().equals(mLocale) && getToday() == mToday;
+    }
+
+    private static long getToday() {
+        return SunshineDateUtils.normalizeDate(System.currentTimeMillis());
+    }
+
+    @Override
+    protected void onStopLoading() {
+        cancelLoad();
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+        onStopLoading();
+
+        getContext().getContentResolver().unregisterContentObserver(mObserver);
+        ForecastRepository.getInstance(getContext()).removeObserver(mRepositoryObserver);
+        mObserving = false;
+        mRows = null;
+    }
+}
@@ -16,11 +16,9 @@
 package com.example.android.sunshine;
 
 import android.content.Intent;
-import android.database.Cursor;
 import android.net.Uri;
 import android.os.Bundle;
 import android.support.v4.app.LoaderManager;
-import android.support.v4.content.CursorLoader;
 import android.support.v4.content.Loader;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.LinearLayoutManager;
@@ -32,38 +30,21 @@ import android.view.MenuItem;
 import android.view.View;
 import android.widget.ProgressBar;
 
+import com.example.android.sunshine.data.ForecastBatch;
+import com.example.android.sunshine.data.ForecastSnapshot;
 import com.example.android.sunshine.data.SunshinePreferences;
 import com.example.android.sunshine.data.WeatherContract;
 import com.example.android.sunshine.sync.SunshineSyncUtils;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+
+import java.util.List;
 
 public class MainActivity extends AppCompatActivity implements
-        LoaderManager.LoaderCallbacks<Cursor>,
+        LoaderManager.LoaderCallbacks<List<ForecastRow>>,
         ForecastAdapter.ForecastAdapterOnClickHandler {
 
     private final String TAG = MainActivity.class.getSimpleName();
 
-    /*
-     * The columns of data that we are interested in displaying within our MainActivity's list of
-     * weather data.
-     */
-    public static final String[] MAIN_FORECAST_PROJECTION = {
-            WeatherContract.WeatherEntry.COLUMN_DATE,
-            WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
-            WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
-            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
-    };
-
-    /*
-     * We store the indices of the values in the array of Strings above to more quickly be able to
-     * access the data from our query. If the order of the Strings above changes, these indices
-     * must be adjusted to match the order of the Strings.
-     */
-    public static final int INDEX_WEATHER_DATE = 0;
-    public static final int INDEX_WEATHER_MAX_TEMP = 1;
-    public static final int INDEX_WEATHER_MIN_TEMP = 2;
-    public static final int INDEX_WEATHER_CONDITION_ID = 3;
-
-
     /*
      * This ID will be used to identify the Loader responsible for loading our weather forecast. In
      * some cases, one Activity can deal with many Loaders. However, in our case, there is only one.
@@ -143,7 +124,17 @@ public class MainActivity extends AppCompatActivity implements
         mRecyclerView.setAdapter(mForecastAdapter);
 
 
-        showLoading();
+        /*
+         * On a cold start, show the forecast as the last sync stored it until the loader has
+         * loaded the live one. Reading the snapshot only maps a small file, so the first frame
+         * doesn't wait for the database to be opened and queried. After a configuration change,
+         * the loader already holds the live forecast and delivers it right away.
+         */
+        if (getSupportLoaderManager().getLoader(ID_FORECAST_LOADER) == null) {
+            showSnapshot();
+        } else {
+            showLoading();
+        }
 
         /*
          * Ensures a loader is initialized and active. If the loader doesn't already exist, one is
@@ -155,6 +146,32 @@ public class MainActivity extends AppCompatActivity implements
         SunshineSyncUtils.initialize(this);
     }
 
+    /*
+     * Shows the forecast from ForecastSnapshot, or the loading indicator if there is no snapshot
+     * with days from today onwards.
+     */
+    private void showSnapshot() {
+        ForecastBatch snapshot = ForecastSnapshot.read(this);
+        if (snapshot == null) {
+            showLoading();
+            return;
+        }
+
+        long today = SunshineDateUtils.normalizeDate(System.currentTimeMillis());
+        List<ForecastRow> rows = ForecastRow.listFromForecast(this, snapshot, today);
+        if (rows.isEmpty()) {
+            showLoading();
+            return;
+        }
+
+        /* The adapter is empty, so the rows are in as soon as this returns */
+        mForecastAdapter.swapForecast(rows);
+
+        /* The list is already at the top, the live forecast shouldn't scroll it */
+        mPosition = 0;
+        showWeatherDataView();
+    }
+
     @Override
     protected void onResume() {
         super.onResume();
@@ -201,29 +218,17 @@ public class MainActivity extends AppCompatActivity implements
      * @return A new Loader instance that is ready to start loading.
      */
     @Override
-    public Loader<Cursor> onCreateLoader(int loaderId, Bundle bundle) {
+    public Loader<List<ForecastRow>> onCreateLoader(int loaderId, Bundle bundle) {
 
 
         switch (loaderId) {
 
             case ID_FORECAST_LOADER:
-                /* URI for all rows of weather data in our weather table */
-                Uri forecastQueryUri = WeatherContract.WeatherEntry.CONTENT_URI;
-                /* Sort order: Ascending by date */
-                String sortOrder = WeatherContract.WeatherEntry.COLUMN_DATE + " ASC";
                 /*
-                 * A SELECTION in SQL declares which rows you'd like to return. In our case, we
-                 * want all weather data from today onwards that is stored in our weather table.
-                 * We created a handy method to do that in our WeatherEntry class.
+                 * Queries all weather data from today onwards, and formats it for the list on the
+                 * loader's thread rather than while the list is binding its items.
                  */
-                String selection = WeatherContract.WeatherEntry.getSqlSelectForTodayOnwards();
-
-                return new CursorLoader(this,
-                        forecastQueryUri,
-                        MAIN_FORECAST_PROJECTION,
-                        selection,
-                        null,
-                        sortOrder);
+                return new ForecastRowLoader(this);
 
             default:
                 throw new RuntimeException("Loader Not Implemented: " + loaderId);
@@ -242,13 +247,29 @@ public class MainActivity extends AppCompatActivity implements
      * @param data   The data generated by the Loader.
      */
     @Override
-    public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
+    public void onLoadFinished(Loader<List<ForecastRow>> loader, List<ForecastRow> data) {
 
 
-        mForecastAdapter.swapCursor(data);
-        if (mPosition == RecyclerView.NO_POSITION) mPosition = 0;
-        mRecyclerView.smoothScrollToPosition(mPosition);
-        if (data.getCount() != 0) showWeatherDataView();
+        mForecastAdapter.swapForecast(data);
+
+        /*
+         * Only scroll to the top on the first load. Later loads come from syncs and changes of
+         * units, and shouldn't move the list from under the user.
+         */
+        if (mPosition == RecyclerView.NO_POSITION) {
+            mPosition = 0;
+            mRecyclerView.smoothScrollToPosition(mPosition);
+        }
+
+        /*
+         * The snapshot may already have shown the list. If the live forecast has no rows, go
+         * back to the loading indicator rather than leave an empty list on screen.
+         */
+        if (data.isEmpty()) {
+            showLoading();
+        } else {
+            showWeatherDataView();
+        }
     }
 
     /**
@@ -258,12 +279,12 @@ public class MainActivity extends AppCompatActivity implements
      * @param loader The Loader that is being reset.
      */
     @Override
-    public void onLoaderReset(Loader<Cursor> loader) {
+    public void onLoaderReset(Loader<List<ForecastRow>> loader) {
         /*
          * Since this Loader's data is now invalid, we need to clear the Adapter that is
          * displaying the data.
          */
-        mForecastAdapter.swapCursor(null);
+        mForecastAdapter.swapForecast(null);
     }
 
     int cont = 0;
@@ -294,6 +315,12 @@ public class MainActivity extends AppCompatActivity implements
         mLoadingIndicator.setVisibility(View.INVISIBLE);
         /* Finally, make sure the weather data is visible */
         mRecyclerView.setVisibility(View.VISIBLE);
+
+        /*
+         * The forecast is what the user opened Sunshine for. Only the first call is reported,
+         * as the "Fully drawn" time of the launch in logcat.
+         */
+        reportFullyDrawn();
     }
 
     /**
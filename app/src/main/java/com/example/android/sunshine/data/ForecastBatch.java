@@ -0,0 +1,239 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.os.Bundle;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * A set of daily forecasts stored as parallel primitive arrays, one array per column of the
+ * weather table. Index i of every array describes the same day.
+ * <p>
+ * Unlike an array of ContentValues, adding a day doesn't allocate a map or box any of its
+ * values, so the sync can go from JSON to the database without creating garbage per row.
+ */
+public final class ForecastBatch {
+
+    /* Keys used to pass a batch to WeatherProvider#call */
+    private static final String KEY_SIZE = "size";
+    private static final String KEY_DATES = WeatherContract.WeatherEntry.COLUMN_DATE;
+    private static final String KEY_WEATHER_IDS = WeatherContract.WeatherEntry.COLUMN_WEATHER_ID;
+    private static final String KEY_MIN_TEMPS = WeatherContract.WeatherEntry.COLUMN_MIN_TEMP;
+    private static final String KEY_MAX_TEMPS = WeatherContract.WeatherEntry.COLUMN_MAX_TEMP;
+    private static final String KEY_HUMIDITIES = WeatherContract.WeatherEntry.COLUMN_HUMIDITY;
+    private static final String KEY_PRESSURES = WeatherContract.WeatherEntry.COLUMN_PRESSURE;
+    private static final String KEY_WIND_SPEEDS = WeatherContract.WeatherEntry.COLUMN_WIND_SPEED;
+    private static final String KEY_DEGREES = WeatherContract.WeatherEntry.COLUMN_DEGREES;
+
+    private static final String CONTENT_HASH_ALGORITHM = "SHA-1";
+
+    /* Normalized UTC dates, see WeatherContract.WeatherEntry#COLUMN_DATE */
+    public long[] dates;
+    public int[] weatherIds;
+    public double[] minTemps;
+    public double[] maxTemps;
+    public double[] humidities;
+    public double[] pressures;
+    public double[] windSpeeds;
+    public double[] degrees;
+
+    private int mSize;
+
+    /**
+     * Creates an empty batch.
+     *
+     * @param capacity Number of days the batch can hold before its arrays need to grow. The
+     *                 forecast request tells us how many days to expect, so this is usually exact.
+     */
+    public ForecastBatch(int capacity) {
+        dates = new long[capacity];
+        weatherIds = new int[capacity];
+        minTemps = new double[capacity];
+        maxTemps = new double[capacity];
+        humidities = new double[capacity];
+        pressures = new double[capacity];
+        windSpeeds = new double[capacity];
+        degrees = new double[capacity];
+    }
+
+    /**
+     * @return The number of days in this batch. Arrays may be longer than this.
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Appends one day to the batch.
+     */
+    public void add(long date, int weatherId, double minTemp, double maxTemp, double humidity,
+                    double pressure, double windSpeed, double windDegrees) {
+        if (mSize == dates.length) {
+            grow();
+        }
+
+        dates[mSize] = date;
+        weatherIds[mSize] = weatherId;
+        minTemps[mSize] = minTemp;
+        maxTemps[mSize] = maxTemp;
+        humidities[mSize] = humidity;
+        pressures[mSize] = pressure;
+        windSpeeds[mSize] = windSpeed;
+        degrees[mSize] = windDegrees;
+        mSize++;
+    }
+
+    /**
+     * Finds a day by its date.
+     *
+     * @param date Normalized UTC date, see WeatherContract.WeatherEntry#COLUMN_DATE
+     * @return The index of the day, or -1 if the batch doesn't contain it
+     */
+    public int indexOfDate(long date) {
+        for (int i = 0; i < mSize; i++) {
+            if (dates[i] == date) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return A batch holding the same days, in arrays of its own trimmed to its size
+     */
+    public ForecastBatch copy() {
+        ForecastBatch copy = new ForecastBatch(0);
+        copy.mSize = mSize;
+        copy.dates = Arrays.copyOf(dates, mSize);
+        copy.weatherIds = Arrays.copyOf(weatherIds, mSize);
+        copy.minTemps = Arrays.copyOf(minTemps, mSize);
+        copy.maxTemps = Arrays.copyOf(maxTemps, mSize);
+        copy.humidities = Arrays.copyOf(humidities, mSize);
+        copy.pressures = Arrays.copyOf(pressures, mSize);
+        copy.windSpeeds = Arrays.copyOf(windSpeeds, mSize);
+        copy.degrees = Arrays.copyOf(degrees, mSize);
+        return copy;
+    }
+
+    /**
+     * Hashes every value of every day in the batch, in order. Two batches with the same days and
+     * the same values get the same hash, so the sync can tell whether a forecast it downloaded
+     * is the one it already stored without reading the weather table.
+     *
+     * @return SHA-1 of the batch's content, as a hexadecimal String
+     */
+    public String getContentHash() {
+        /* A long and seven numbers of 8 bytes (the weather id is widened) for each day */
+        ByteBuffer content = ByteBuffer.allocate(mSize * 8 * 8);
+        for (int i = 0; i < mSize; i++) {
+            content.putLong(dates[i]);
+            content.putLong(weatherIds[i]);
+            content.putDouble(minTemps[i]);
+            content.putDouble(maxTemps[i]);
+            content.putDouble(humidities[i]);
+            content.putDouble(pressures[i]);
+            content.putDouble(windSpeeds[i]);
+            content.putDouble(degrees[i]);
+        }
+
+        byte[] digest;
+        try {
+            digest = MessageDigest.getInstance(CONTENT_HASH_ALGORITHM).digest(content.array());
+        } catch (NoSuchAlgorithmException e) {
+            /* Every Android device is required to provide SHA-1 */
+            throw new IllegalStateException(e);
+        }
+
+        StringBuilder hash = new StringBuilder(digest.length * 2);
+        for (byte b : digest) {
+            hash.append(Character.forDigit((b >> 4) & 0xf, 16));
+            hash.append(Character.forDigit(b & 0xf, 16));
+        }
+        return hash.toString();
+    }
+
+    private void grow() {
+        int capacity = Math.max(dates.length * 2, 1);
+
+        dates = Arrays.copyOf(dates, capacity);
+        weatherIds = Arrays.copyOf(weatherIds, capacity);
+        minTemps = Arrays.copyOf(minTemps, capacity);
+        maxTemps = Arrays.copyOf(maxTemps, capacity);
+        humidities = Arrays.copyOf(humidities, capacity);
+        pressures = Arrays.copyOf(pressures, capacity);
+        windSpeeds = Arrays.copyOf(windSpeeds, capacity);
+        degrees = Arrays.copyOf(degrees, capacity);
+    }
+
+    /**
+     * Wraps this batch in a Bundle so it can be handed to the ContentProvider through
+     * {@link android.content.ContentResolver#call}. The arrays are stored as they are; within our
+     * own process the Bundle is never parceled, so nothing is copied.
+     *
+     * @return A Bundle that {@link #fromBundle(Bundle)} turns back into this batch
+     */
+    public Bundle toBundle() {
+        Bundle bundle = new Bundle();
+        bundle.putInt(KEY_SIZE, mSize);
+        bundle.putLongArray(KEY_DATES, dates);
+        bundle.putIntArray(KEY_WEATHER_IDS, weatherIds);
+        bundle.putDoubleArray(KEY_MIN_TEMPS, minTemps);
+        bundle.putDoubleArray(KEY_MAX_TEMPS, maxTemps);
+        bundle.putDoubleArray(KEY_HUMIDITIES, humidities);
+        bundle.putDoubleArray(KEY_PRESSURES, pressures);
+        bundle.putDoubleArray(KEY_WIND_SPEEDS, windSpeeds);
+        bundle.putDoubleArray(KEY_DEGREES, degrees);
+        return bundle;
+    }
+
+    /**
+     * Reads back a batch created with {@link #toBundle()}.
+     *
+     * @param bundle Bundle created by {@link #toBundle()}
+     * @return The batch stored in the Bundle
+     * @throws IllegalArgumentException if the Bundle doesn't contain a complete batch
+     */
+    public static ForecastBatch fromBundle(Bundle bundle) {
+        ForecastBatch batch = new ForecastBatch(0);
+        batch.mSize = bundle.getInt(KEY_SIZE, -1);
+        batch.dates = bundle.getLongArray(KEY_DATES);
+        batch.weatherIds = bundle.getIntArray(KEY_WEATHER_IDS);
+        batch.minTemps = bundle.getDoubleArray(KEY_MIN_TEMPS);
+        batch.maxTemps = bundle.getDoubleArray(KEY_MAX_TEMPS);
+        batch.humidities = bundle.getDoubleArray(KEY_HUMIDITIES);
+        batch.pressures = bundle.getDoubleArray(KEY_PRESSURES);
+        batch.windSpeeds = bundle.getDoubleArray(KEY_WIND_SPEEDS);
+        batch.degrees = bundle.getDoubleArray(KEY_DEGREES);
+
+        if (batch.mSize < 0
+                || batch.dates == null || batch.dates.length < batch.mSize
+                || batch.weatherIds == null || batch.weatherIds.length < batch.mSize
+                || batch.minTemps == null || batch.minTemps.length < batch.mSize
+                || batch.maxTemps == null || batch.maxTemps.length < batch.mSize
+                || batch.humidities == null || batch.humidities.length < batch.mSize
+                || batch.pressures == null || batch.pressures.length < batch.mSize
+                || batch.windSpeeds == null || batch.windSpeeds.length < batch.mSize
+                || batch.degrees == null || batch.degrees.length < batch.mSize) {
+            throw new IllegalArgumentException("Bundle does not contain a ForecastBatch");
+        }
+
+        return batch;
+    }
+}
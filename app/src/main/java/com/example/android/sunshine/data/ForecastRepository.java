@@ -0,0 +1,269 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.MainThread;
+import android.support.annotation.WorkerThread;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Keeps the stored forecast in memory, so that the screens and the notification can read it
+ * without querying WeatherProvider each time.
+ * <p>
+ * The forecast is read from the provider once, the first time someone asks for it. After that,
+ * WeatherProvider hands every forecast the sync stores straight to the repository, and drops it
+ * when the weather table is changed any other way, so the next reader loads it again.
+ * Observers are told on the main thread whenever the forecast changes, and every forecast the
+ * sync stores is also saved as the {@link ForecastSnapshot} the next cold start shows.
+ * <p>
+ * The forecast is a {@link ForecastBatch} that is never modified once the repository holds it.
+ * Its days are sorted by date, and include the days before today that are still stored.
+ */
+public final class ForecastRepository {
+
+    /**
+     * Receives the forecast every time it changes.
+     */
+    public interface Observer {
+        /**
+         * Called on the main thread when the forecast changed.
+         *
+         * @param forecast The new forecast, or null if it was dropped and has to be loaded again
+         *                 with {@link #getForecast()} or {@link #loadForecast()}
+         */
+        @MainThread
+        void onForecastChanged(ForecastBatch forecast);
+    }
+
+    private static final String[] FORECAST_PROJECTION = {
+            WeatherContract.WeatherEntry.COLUMN_DATE,
+            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_HUMIDITY,
+            WeatherContract.WeatherEntry.COLUMN_PRESSURE,
+            WeatherContract.WeatherEntry.COLUMN_WIND_SPEED,
+            WeatherContract.WeatherEntry.COLUMN_DEGREES
+    };
+
+    private static final int INDEX_DATE = 0;
+    private static final int INDEX_WEATHER_ID = 1;
+    private static final int INDEX_MIN_TEMP = 2;
+    private static final int INDEX_MAX_TEMP = 3;
+    private static final int INDEX_HUMIDITY = 4;
+    private static final int INDEX_PRESSURE = 5;
+    private static final int INDEX_WIND_SPEED = 6;
+    private static final int INDEX_DEGREES = 7;
+
+    private static final Object sLock = new Object();
+    private static ForecastRepository sInstance;
+
+    private final Context mContext;
+
+    /*
+     * Tells the observers on the main thread. Loads and snapshot writes run off of it, one at a
+     * time, so that snapshots are written in the order the forecasts were stored.
+     */
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final Executor mLoadExecutor = Executors.newSingleThreadExecutor();
+
+    private final CopyOnWriteArrayList<Observer> mObservers = new CopyOnWriteArrayList<>();
+
+    /* Guarded by this. Null until loaded, and after the weather table changed behind our back. */
+    private ForecastBatch mForecast;
+
+    /*
+     * Guarded by this. Incremented every time mForecast is replaced or dropped, so that a load
+     * that read the provider before that happened doesn't overwrite the newer forecast.
+     */
+    private int mVersion;
+
+    private ForecastRepository(Context context) {
+        mContext = context.getApplicationContext();
+    }
+
+    /**
+     * @param context Used to access WeatherProvider
+     * @return The repository of this process
+     */
+    public static ForecastRepository getInstance(Context context) {
+        synchronized (sLock) {
+            if (sInstance == null) {
+                sInstance = new ForecastRepository(context);
+            }
+            return sInstance;
+        }
+    }
+
+    /**
+     * Returns the forecast if it is in memory, without ever querying the provider. This is what
+     * the main thread should call.
+     *
+     * @return The forecast, or null if it hasn't been loaded yet
+     */
+    public synchronized ForecastBatch peekForecast() {
+        return mForecast;
+    }
+
+    /**
+     * Returns the forecast, querying WeatherProvider first if it isn't in memory yet.
+     *
+     * @return The forecast, empty if nothing is stored
+     */
+    @WorkerThread
+    public ForecastBatch getForecast() {
+        int version;
+        synchronized (this) {
+            if (mForecast != null) {
+                return mForecast;
+            }
+            version = mVersion;
+        }
+
+        ForecastBatch forecast = query();
+
+        synchronized (this) {
+            if (version == mVersion) {
+                mForecast = forecast;
+            } else if (mForecast != null) {
+                /* Someone stored a newer forecast while we were querying */
+                return mForecast;
+            }
+        }
+        return forecast;
+    }
+
+    /**
+     * Loads the forecast on a background thread if it isn't in memory yet, and tells the
+     * observers once it is.
+     */
+    public void loadForecast() {
+        mLoadExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                boolean loaded;
+                synchronized (ForecastRepository.this) {
+                    loaded = mForecast != null;
+                }
+                if (!loaded) {
+                    notifyObservers(getForecast());
+                }
+            }
+        });
+    }
+
+    /**
+     * @param observer Told about every change of the forecast from now on, until it is removed
+     */
+    public void addObserver(Observer observer) {
+        mObservers.addIfAbsent(observer);
+    }
+
+    public void removeObserver(Observer observer) {
+        mObservers.remove(observer);
+    }
+
+    /**
+     * Called by WeatherProvider once it stored a forecast that replaced the weather table.
+     *
+     * @param forecast What the weather table now holds. The repository keeps its own copy.
+     */
+    void setForecast(ForecastBatch forecast) {
+        final ForecastBatch copy = forecast.copy();
+        synchronized (this) {
+            mForecast = copy;
+            mVersion++;
+        }
+        notifyObservers(copy);
+
+        /* Keep the snapshot the next cold start shows, without holding up the sync */
+        mLoadExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                ForecastSnapshot.write(mContext, copy);
+            }
+        });
+    }
+
+    /**
+     * Called by WeatherProvider when the weather table was changed in a way the repository can't
+     * follow, such as rows inserted or deleted one by one. The forecast is loaded again the next
+     * time it's asked for.
+     */
+    void invalidate() {
+        synchronized (this) {
+            mForecast = null;
+            mVersion++;
+        }
+        notifyObservers(null);
+
+        /* The snapshot no longer matches the weather table, until the next sync replaces it */
+        mLoadExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                ForecastSnapshot.delete(mContext);
+            }
+        });
+    }
+
+    private void notifyObservers(final ForecastBatch forecast) {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                for (Observer observer : mObservers) {
+                    observer.onForecastChanged(forecast);
+                }
+            }
+        });
+    }
+
+    private ForecastBatch query() {
+        Cursor cursor = mContext.getContentResolver().query(
+                WeatherContract.WeatherEntry.CONTENT_URI,
+                FORECAST_PROJECTION,
+                null,
+                null,
+                WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
+
+        if (cursor == null) {
+            return new ForecastBatch(0);
+        }
+
+        try {
+            ForecastBatch forecast = new ForecastBatch(cursor.getCount());
+            while (cursor.moveToNext()) {
+                forecast.add(cursor.getLong(INDEX_DATE),
+                        cursor.getInt(INDEX_WEATHER_ID),
+                        cursor.getDouble(INDEX_MIN_TEMP),
+                        cursor.getDouble(INDEX_MAX_TEMP),
+                        cursor.getDouble(INDEX_HUMIDITY),
+                        cursor.getDouble(INDEX_PRESSURE),
+                        cursor.getDouble(INDEX_WIND_SPEED),
+                        cursor.getDouble(INDEX_DEGREES));
+            }
+            return forecast;
+        } finally {
+            cursor.close();
+        }
+    }
+}
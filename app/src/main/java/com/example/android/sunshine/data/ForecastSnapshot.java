@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.Context;
+import android.support.annotation.WorkerThread;
+import android.util.Log;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A copy of the last forecast the sync stored, kept in a small binary file next to the database.
+ * MainActivity reads it on a cold start to show the list right away, before the database is
+ * even opened, and swaps in the live forecast once it has been loaded.
+ * <p>
+ * The snapshot holds the forecast rather than the formatted list, so that it is still shown
+ * with the right day names and units when it is read on another day or after the units changed.
+ * Being a copy, it may be older than the database and should only be shown until the live
+ * forecast arrives.
+ */
+public final class ForecastSnapshot {
+
+    private static final String TAG = ForecastSnapshot.class.getSimpleName();
+
+    private static final String FILE_NAME = "forecast_snapshot.bin";
+
+    /*
+     * File layout. A header made of a magic number and the number of days stored, followed by
+     * one record of RECORD_SIZE bytes per day, in the order of the forecast:
+     *
+     *   long date | int weather id | int unused | double min temp | double max temp |
+     *   double humidity | double pressure | double wind speed | double degrees
+     */
+    private static final int MAGIC = 0x46435331;
+    private static final int HEADER_SIZE = 8;
+    private static final int OFFSET_COUNT = 4;
+    private static final int RECORD_SIZE = 8 + 4 + 4 + 8 * 6;
+
+    /* Far more days than a sync ever stores, anything above is a damaged file */
+    private static final int MAX_DAYS = 1024;
+
+    private ForecastSnapshot() {
+    }
+
+    /**
+     * Reads the snapshot by mapping its file, without going through WeatherProvider.
+     *
+     * @param context Used to find the app's files directory
+     * @return The forecast as the sync last stored it, or null if there is no usable snapshot
+     */
+    public static ForecastBatch read(Context context) {
+        File file = getFile(context);
+        if (!file.exists()) {
+            return null;
+        }
+
+        RandomAccessFile randomAccessFile = null;
+        try {
+            randomAccessFile = new RandomAccessFile(file, "r");
+            long length = randomAccessFile.length();
+            if (length < HEADER_SIZE) {
+                return null;
+            }
+
+            /* The mapping stays valid after the file is closed */
+            ByteBuffer buffer = randomAccessFile.getChannel()
+                    .map(FileChannel.MapMode.READ_ONLY, 0, length);
+
+            int count = buffer.getInt(OFFSET_COUNT);
+            if (buffer.getInt(0) != MAGIC || count < 0 || count > MAX_DAYS
+                    || length != HEADER_SIZE + (long) count * RECORD_SIZE) {
+                Log.w(TAG, "Ignoring damaged snapshot " + file);
+                return null;
+            }
+
+            ForecastBatch forecast = new ForecastBatch(count);
+            for (int day = 0; day < count; day++) {
+                int offset = HEADER_SIZE + day * RECORD_SIZE;
+                forecast.add(buffer.getLong(offset),
+                        buffer.getInt(offset + 8),
+                        buffer.getDouble(offset + 16),
+                        buffer.getDouble(offset + 24),
+                        buffer.getDouble(offset + 32),
+                        buffer.getDouble(offset + 40),
+                        buffer.getDouble(offset + 48),
+                        buffer.getDouble(offset + 56));
+            }
+            return forecast;
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to read " + file, e);
+            return null;
+        } finally {
+            close(randomAccessFile);
+        }
+    }
+
+    /**
+     * Replaces the snapshot with a forecast. The file is written next to the old one and then
+     * renamed over it, so a reader never sees a partly written snapshot.
+     *
+     * @param context  Used to find the app's files directory
+     * @param forecast The forecast the weather table now holds
+     */
+    @WorkerThread
+    public static void write(Context context, ForecastBatch forecast) {
+        int count = forecast.size();
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + count * RECORD_SIZE);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(OFFSET_COUNT, count);
+        for (int day = 0; day < count; day++) {
+            int offset = HEADER_SIZE + day * RECORD_SIZE;
+            buffer.putLong(offset, forecast.dates[day]);
+            buffer.putInt(offset + 8, forecast.weatherIds[day]);
+            buffer.putDouble(offset + 16, forecast.minTemps[day]);
+            buffer.putDouble(offset + 24, forecast.maxTemps[day]);
+            buffer.putDouble(offset + 32, forecast.humidities[day]);
+            buffer.putDouble(offset + 40, forecast.pressures[day]);
+            buffer.putDouble(offset + 48, forecast.windSpeeds[day]);
+            buffer.putDouble(offset + 56, forecast.degrees[day]);
+        }
+
+        File file = getFile(context);
+        File temporaryFile = new File(file.getPath() + ".tmp");
+        FileOutputStream outputStream = null;
+        try {
+            outputStream = new FileOutputStream(temporaryFile);
+            outputStream.write(buffer.array());
+            outputStream.getFD().sync();
+            outputStream.close();
+            outputStream = null;
+
+            if (!temporaryFile.renameTo(file)) {
+                Log.e(TAG, "Unable to rename " + temporaryFile + " to " + file);
+                temporaryFile.delete();
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to write " + temporaryFile, e);
+            temporaryFile.delete();
+        } finally {
+            close(outputStream);
+        }
+    }
+
+    /**
+     * Removes the snapshot, for when the weather table changed in a way that makes it misleading.
+     *
+     * @param context Used to find the app's files directory
+     */
+    public static void delete(Context context) {
+        getFile(context).delete();
+    }
+
+    static File getFile(Context context) {
+        return new File(context.getFilesDir(), FILE_NAME);
+    }
+
+    private static void close(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+}
@@ -17,6 +17,7 @@ package com.example.android.sunshine.data;
 
 import android.content.Context;
 import android.content.SharedPreferences;
+import android.content.SharedPreferences.OnSharedPreferenceChangeListener;
 import android.preference.PreferenceManager;
 
 import com.example.android.sunshine.R;
@@ -31,6 +32,148 @@ public final class SunshinePreferences {
     public static final String PREF_COORD_LAT = "coord_lat";
     public static final String PREF_COORD_LONG = "coord_long";
 
+    /*
+     * The settings as of the last change, read once instead of every time a temperature is
+     * formatted. Null until getSnapshot is first called.
+     */
+    private static volatile Snapshot sSnapshot;
+
+    /* Guards creating sSnapshot and replacing it */
+    private static final Object sSnapshotLock = new Object();
+
+    /*
+     * Replaces sSnapshot whenever a preference changes. SharedPreferences only keeps a weak
+     * reference to its listeners, so we have to hold on to it ourselves.
+     */
+    private static OnSharedPreferenceChangeListener sSnapshotUpdater;
+
+    /**
+     * An immutable copy of the settings Sunshine reads while formatting and syncing the weather.
+     * Reading a field is a plain field access, unlike the getters below, which look up the
+     * default SharedPreferences and a key String on each call. Code that reads several settings
+     * should read them all from the same Snapshot, so they can't change halfway through.
+     */
+    public static final class Snapshot {
+
+        /* True if the user has selected metric temperature display */
+        public final boolean isMetric;
+
+        /* The location setting, "94043,USA" by default */
+        public final String location;
+
+        /* True if the coordinates of the location are known, see latitude and longitude */
+        public final boolean isLocationLatLonAvailable;
+        public final double latitude;
+        public final double longitude;
+
+        /* True if the user prefers to see notifications from Sunshine */
+        public final boolean areNotificationsEnabled;
+
+        /* UNIX time of when the last notification was shown, 0 if none was */
+        public final long lastNotificationTimeInMillis;
+
+        private Snapshot(Context context, SharedPreferences sp) {
+            String keyForUnits = context.getString(R.string.pref_units_key);
+            String metric = context.getString(R.string.pref_units_metric);
+            isMetric = metric.equals(sp.getString(keyForUnits, metric));
+
+            String keyForLocation = context.getString(R.string.pref_location_key);
+            String defaultLocation = context.getString(R.string.pref_location_default);
+            location = sp.getString(keyForLocation, defaultLocation);
+
+            isLocationLatLonAvailable = sp.contains(PREF_COORD_LAT)
+                    && sp.contains(PREF_COORD_LONG);
+
+            /*
+             * This is a hack we have to resort to since you can't store doubles in
+             * SharedPreferences.
+             *
+             * Double.doubleToLongBits returns an integer corresponding to the bits of the given
+             * IEEE 754 double precision value.
+             *
+             * Double.longBitsToDouble does the opposite, converting a long (that represents a
+             * double) into the double itself.
+             */
+            latitude = Double
+                    .longBitsToDouble(sp.getLong(PREF_COORD_LAT, Double.doubleToRawLongBits(0.0)));
+            longitude = Double
+                    .longBitsToDouble(sp.getLong(PREF_COORD_LONG, Double.doubleToRawLongBits(0.0)));
+
+            /*
+             * In Sunshine, the user has the ability to say whether she would like notifications
+             * enabled or not. If no preference has been chosen, we want to be able to determine
+             * whether or not to show them. To do this, we reference a bool stored in bools.xml.
+             */
+            String displayNotificationsKey =
+                    context.getString(R.string.pref_enable_notifications_key);
+            boolean shouldDisplayNotificationsByDefault = context
+                    .getResources()
+                    .getBoolean(R.bool.show_notifications_by_default);
+            areNotificationsEnabled = sp
+                    .getBoolean(displayNotificationsKey, shouldDisplayNotificationsByDefault);
+
+            /*
+             * If SharedPreferences doesn't have a value for the last notification time, we use
+             * 0. The reason we use 0 is because we compare this value to the current system
+             * time. If the difference between the last notification time and the current time
+             * is greater than one day, we will show a notification again. If the time of the
+             * last notification was 0, the difference will always be greater than the number
+             * of milliseconds in a day and we will show another notification.
+             */
+            String lastNotificationKey = context.getString(R.string.pref_last_notification);
+            lastNotificationTimeInMillis = sp.getLong(lastNotificationKey, 0);
+        }
+    }
+
+    /**
+     * Returns the current settings. The first call reads them from SharedPreferences and starts
+     * listening for changes; every later call only returns the snapshot taken after the last
+     * change, without touching SharedPreferences.
+     *
+     * @param context Context used to access SharedPreferences the first time
+     * @return The settings as of the last change
+     */
+    public static Snapshot getSnapshot(Context context) {
+        Snapshot snapshot = sSnapshot;
+        if (snapshot != null) {
+            return snapshot;
+        }
+
+        synchronized (sSnapshotLock) {
+            if (sSnapshot == null) {
+                final Context appContext = context.getApplicationContext();
+                SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(appContext);
+
+                sSnapshotUpdater = new OnSharedPreferenceChangeListener() {
+                    @Override
+                    public void onSharedPreferenceChanged(SharedPreferences sp, String key) {
+                        refreshSnapshot(appContext);
+                    }
+                };
+                sp.registerOnSharedPreferenceChangeListener(sSnapshotUpdater);
+
+                sSnapshot = new Snapshot(appContext, sp);
+            }
+            return sSnapshot;
+        }
+    }
+
+    /*
+     * Takes a new snapshot, if anyone asked for one yet. The listener above is notified on the
+     * main thread some time after a change is applied, so the methods below that change a
+     * preference also call this right away. That way the thread that made the change sees it in
+     * the snapshot immediately.
+     */
+    private static void refreshSnapshot(Context context) {
+        synchronized (sSnapshotLock) {
+            if (sSnapshot != null) {
+                Context appContext = context.getApplicationContext();
+                sSnapshot = new Snapshot(appContext,
+                        PreferenceManager.getDefaultSharedPreferences(appContext));
+            }
+        }
+    }
+
     /**
      * Helper method to handle setting location details in Preferences (city name, latitude,
      * longitude)
@@ -48,6 +191,8 @@ public final class SunshinePreferences {
         editor.putLong(PREF_COORD_LAT, Double.doubleToRawLongBits(lat));
         editor.putLong(PREF_COORD_LONG, Double.doubleToRawLongBits(lon));
         editor.apply();
+
+        refreshSnapshot(context);
     }
 
     /**
@@ -62,6 +207,8 @@ public final class SunshinePreferences {
         editor.remove(PREF_COORD_LAT);
         editor.remove(PREF_COORD_LONG);
         editor.apply();
+
+        refreshSnapshot(context);
     }
 
     /**
@@ -74,12 +221,7 @@ public final class SunshinePreferences {
      * "94043,USA" if SharedPreferences have not been implemented yet.
      */
     public static String getPreferredWeatherLocation(Context context) {
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
-
-        String keyForLocation = context.getString(R.string.pref_location_key);
-        String defaultLocation = context.getString(R.string.pref_location_default);
-
-        return sp.getString(keyForLocation, defaultLocation);
+        return getSnapshot(context).location;
     }
 
     /**
@@ -89,19 +231,7 @@ public final class SunshinePreferences {
      * @return true if metric display should be used, false if imperial display should be used
      */
     public static boolean isMetric(Context context) {
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
-
-        String keyForUnits = context.getString(R.string.pref_units_key);
-        String defaultUnits = context.getString(R.string.pref_units_metric);
-        String preferredUnits = sp.getString(keyForUnits, defaultUnits);
-        String metric = context.getString(R.string.pref_units_metric);
-
-        boolean userPrefersMetric = false;
-        if (metric.equals(preferredUnits)) {
-            userPrefersMetric = true;
-        }
-
-        return userPrefersMetric;
+        return getSnapshot(context).isMetric;
     }
 
     /**
@@ -113,25 +243,8 @@ public final class SunshinePreferences {
      * @return an array containing the two coordinate values for the user's preferred location
      */
     public static double[] getLocationCoordinates(Context context) {
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
-
-        double[] preferredCoordinates = new double[2];
-
-        /*
-         * This is a hack we have to resort to since you can't store doubles in SharedPreferences.
-         *
-         * Double.doubleToLongBits returns an integer corresponding to the bits of the given
-         * IEEE 754 double precision value.
-         *
-         * Double.longBitsToDouble does the opposite, converting a long (that represents a double)
-         * into the double itself.
-         */
-        preferredCoordinates[0] = Double
-                 .longBitsToDouble(sp.getLong(PREF_COORD_LAT, Double.doubleToRawLongBits(0.0)));
-        preferredCoordinates[1] = Double
-                .longBitsToDouble(sp.getLong(PREF_COORD_LONG, Double.doubleToRawLongBits(0.0)));
-
-        return preferredCoordinates;
+        Snapshot snapshot = getSnapshot(context);
+        return new double[] {snapshot.latitude, snapshot.longitude};
     }
 
     /**
@@ -142,17 +255,7 @@ public final class SunshinePreferences {
      * @return true if lat/long are saved in SharedPreferences
      */
     public static boolean isLocationLatLonAvailable(Context context) {
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
-
-        boolean spContainLatitude = sp.contains(PREF_COORD_LAT);
-        boolean spContainLongitude = sp.contains(PREF_COORD_LONG);
-
-        boolean spContainBothLatitudeAndLongitude = false;
-        if (spContainLatitude && spContainLongitude) {
-            spContainBothLatitudeAndLongitude = true;
-        }
-
-        return spContainBothLatitudeAndLongitude;
+        return getSnapshot(context).isLocationLatLonAvailable;
     }
 
     /**
@@ -163,26 +266,7 @@ public final class SunshinePreferences {
      * @return true if the user prefers to see notifications, false otherwise
      */
     public static boolean areNotificationsEnabled(Context context) {
-        /* Key for accessing the preference for showing notifications */
-        String displayNotificationsKey = context.getString(R.string.pref_enable_notifications_key);
-
-        /*
-         * In Sunshine, the user has the ability to say whether she would like notifications
-         * enabled or not. If no preference has been chosen, we want to be able to determine
-         * whether or not to show them. To do this, we reference a bool stored in bools.xml.
-         */
-        boolean shouldDisplayNotificationsByDefault = context
-                .getResources()
-                .getBoolean(R.bool.show_notifications_by_default);
-
-        /* As usual, we use the default SharedPreferences to access the user's preferences */
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
-
-        /* If a value is stored with the key, we extract it here. If not, use a default. */
-        boolean shouldDisplayNotifications = sp
-                .getBoolean(displayNotificationsKey, shouldDisplayNotificationsByDefault);
-
-        return shouldDisplayNotifications;
+        return getSnapshot(context).areNotificationsEnabled;
     }
 
     /**
@@ -192,25 +276,7 @@ public final class SunshinePreferences {
      * @return UNIX time of when the last notification was shown
      */
     public static long getLastNotificationTimeInMillis(Context context) {
-        /* Key for accessing the time at which Sunshine last displayed a notification */
-        String lastNotificationKey = context.getString(R.string.pref_last_notification);
-
-        /* As usual, we use the default SharedPreferences to access the user's preferences */
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
-
-        /*
-         * Here, we retrieve the time in milliseconds when the last notification was shown. If
-         * SharedPreferences doesn't have a value for lastNotificationKey, we return 0. The reason
-         * we return 0 is because we compare the value returned from this method to the current
-         * system time. If the difference between the last notification time and the current time
-         * is greater than one day, we will show a notification again. When we compare the two
-         * values, we subtract the last notification time from the current system time. If the
-         * time of the last notification was 0, the difference will always be greater than the
-         * number of milliseconds in a day and we will show another notification.
-         */
-        long lastNotificationTime = sp.getLong(lastNotificationKey, 0);
-
-        return lastNotificationTime;
+        return getSnapshot(context).lastNotificationTimeInMillis;
     }
 
     /**
@@ -241,5 +307,7 @@ public final class SunshinePreferences {
         String lastNotificationKey = context.getString(R.string.pref_last_notification);
         editor.putLong(lastNotificationKey, timeOfNotification);
         editor.apply();
+
+        refreshSnapshot(context);
     }
 }
\ No newline at end of file
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+
+import com.example.android.sunshine.data.WeatherContract.SyncStateEntry;
+
+/**
+ * What the last successful sync of a location received, as stored in the sync_state table.
+ * The sync sends the validators back to make a conditional request, and compares the content
+ * hash with that of a new forecast to know whether anything actually changed.
+ * <p>
+ * The weather table only ever holds the forecast of the last location synced, so only the state
+ * of that location is kept. Were we to keep the state of a location we switched away from, a
+ * sync back to it would be answered with 304 (or find the same content hash) and skip storing
+ * its forecast, leaving the forecast of the other location on screen.
+ */
+public final class SyncState {
+
+    private static final String[] SYNC_STATE_PROJECTION = {
+            SyncStateEntry.COLUMN_LAST_SYNC,
+            SyncStateEntry.COLUMN_URL,
+            SyncStateEntry.COLUMN_ETAG,
+            SyncStateEntry.COLUMN_LAST_MODIFIED,
+            SyncStateEntry.COLUMN_CONTENT_HASH
+    };
+
+    private static final int INDEX_LAST_SYNC = 0;
+    private static final int INDEX_URL = 1;
+    private static final int INDEX_ETAG = 2;
+    private static final int INDEX_LAST_MODIFIED = 3;
+    private static final int INDEX_CONTENT_HASH = 4;
+
+    public final String location;
+    public final long lastSyncTime;
+    public final String url;
+    /* ETag and Last-Modified response headers, either may be null */
+    public final String eTag;
+    public final String lastModified;
+    public final String contentHash;
+
+    public SyncState(String location, long lastSyncTime, String url, String eTag,
+                     String lastModified, String contentHash) {
+        this.location = location;
+        this.lastSyncTime = lastSyncTime;
+        this.url = url;
+        this.eTag = eTag;
+        this.lastModified = lastModified;
+        this.contentHash = contentHash;
+    }
+
+    /**
+     * @param syncTime Time in milliseconds of a sync that found this state still current
+     * @return A copy of this state with its last sync time set to syncTime
+     */
+    public SyncState withLastSyncTime(long syncTime) {
+        return new SyncState(location, syncTime, url, eTag, lastModified, contentHash);
+    }
+
+    /**
+     * Reads the sync state of a location from the ContentProvider. Don't call this on the main
+     * thread.
+     *
+     * @param context  Used to access the ContentResolver
+     * @param location The location setting, see SunshinePreferences#getPreferredWeatherLocation
+     * @return The state of the last successful sync of that location, or null if it was never
+     * synced (or its state was cleared).
+     */
+    public static SyncState load(Context context, String location) {
+        Cursor cursor = context.getContentResolver().query(
+                SyncStateEntry.buildSyncStateUriWithLocation(location),
+                SYNC_STATE_PROJECTION,
+                null,
+                null,
+                null);
+
+        if (cursor == null) {
+            return null;
+        }
+
+        try {
+            if (!cursor.moveToFirst()) {
+                return null;
+            }
+
+            return new SyncState(location,
+                    cursor.getLong(INDEX_LAST_SYNC),
+                    cursor.getString(INDEX_URL),
+                    cursor.getString(INDEX_ETAG),
+                    cursor.getString(INDEX_LAST_MODIFIED),
+                    cursor.getString(INDEX_CONTENT_HASH));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Stores this state, replacing whatever was stored for the same location, and forgets the
+     * state of every other location, as the weather table no longer holds their forecast. The
+     * provider does both in one transaction, so no other location's state can outlive a save.
+     *
+     * @param context Used to access the ContentResolver
+     */
+    public void save(Context context) {
+        ContentValues values = new ContentValues();
+        values.put(SyncStateEntry.COLUMN_LOCATION, location);
+        values.put(SyncStateEntry.COLUMN_LAST_SYNC, lastSyncTime);
+        values.put(SyncStateEntry.COLUMN_URL, url);
+        values.put(SyncStateEntry.COLUMN_ETAG, eTag);
+        values.put(SyncStateEntry.COLUMN_LAST_MODIFIED, lastModified);
+        values.put(SyncStateEntry.COLUMN_CONTENT_HASH, contentHash);
+
+        context.getContentResolver().insert(SyncStateEntry.CONTENT_URI, values);
+    }
+
+    /**
+     * Forgets the sync state of every location. The next sync will then download the full
+     * forecast and store it, which we need whenever our local weather data has been lost.
+     *
+     * @param context Used to access the ContentResolver
+     */
+    public static void clear(Context context) {
+        context.getContentResolver().delete(SyncStateEntry.CONTENT_URI, null, null);
+    }
+}
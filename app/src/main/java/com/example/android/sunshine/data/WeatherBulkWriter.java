@@ -0,0 +1,333 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+import android.util.LongSparseArray;
+
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+
+import java.util.Arrays;
+
+/**
+ * Writes many weather rows in a single transaction using one compiled INSERT statement.
+ * <p>
+ * SQLiteDatabase#insert builds the INSERT SQL from the ContentValues and compiles it again for
+ * every row. Here the statement is compiled once per transaction and each row only binds its
+ * values, as primitives, before executing it.
+ */
+final class WeatherBulkWriter {
+
+    private static final String TAG = WeatherBulkWriter.class.getSimpleName();
+
+    /* Bind indices of the columns in INSERT_SQL below. SQLite bind indices start at 1. */
+    private static final int BIND_DATE = 1;
+    private static final int BIND_WEATHER_ID = 2;
+    private static final int BIND_MIN_TEMP = 3;
+    private static final int BIND_MAX_TEMP = 4;
+    private static final int BIND_HUMIDITY = 5;
+    private static final int BIND_PRESSURE = 6;
+    private static final int BIND_WIND_SPEED = 7;
+    private static final int BIND_DEGREES = 8;
+
+    /*
+     * The weather table declares its date column UNIQUE ON CONFLICT REPLACE, so this statement
+     * replaces any row we already have for the same date, just like SQLiteDatabase#insert did.
+     */
+    private static final String INSERT_SQL =
+            "INSERT INTO " + WeatherEntry.TABLE_NAME + " ("
+                    + WeatherEntry.COLUMN_DATE + ", "
+                    + WeatherEntry.COLUMN_WEATHER_ID + ", "
+                    + WeatherEntry.COLUMN_MIN_TEMP + ", "
+                    + WeatherEntry.COLUMN_MAX_TEMP + ", "
+                    + WeatherEntry.COLUMN_HUMIDITY + ", "
+                    + WeatherEntry.COLUMN_PRESSURE + ", "
+                    + WeatherEntry.COLUMN_WIND_SPEED + ", "
+                    + WeatherEntry.COLUMN_DEGREES
+                    + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String DELETE_SQL = "DELETE FROM " + WeatherEntry.TABLE_NAME
+            + " WHERE " + WeatherEntry.COLUMN_DATE + " = ?";
+
+    /* The columns replace() compares, in the same order as the INSERT_SQL bind indices */
+    private static final String[] ROW_PROJECTION = {
+            WeatherEntry.COLUMN_DATE,
+            WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherEntry.COLUMN_HUMIDITY,
+            WeatherEntry.COLUMN_PRESSURE,
+            WeatherEntry.COLUMN_WIND_SPEED,
+            WeatherEntry.COLUMN_DEGREES
+    };
+
+    private static final int INDEX_DATE = BIND_DATE - 1;
+    private static final int INDEX_WEATHER_ID = BIND_WEATHER_ID - 1;
+    private static final int INDEX_MIN_TEMP = BIND_MIN_TEMP - 1;
+    private static final int INDEX_MAX_TEMP = BIND_MAX_TEMP - 1;
+    private static final int INDEX_HUMIDITY = BIND_HUMIDITY - 1;
+    private static final int INDEX_PRESSURE = BIND_PRESSURE - 1;
+    private static final int INDEX_WIND_SPEED = BIND_WIND_SPEED - 1;
+    private static final int INDEX_DEGREES = BIND_DEGREES - 1;
+
+    private WeatherBulkWriter() {
+    }
+
+    /**
+     * Inserts every day of a {@link ForecastBatch} in a single transaction.
+     *
+     * @param db    Writable database
+     * @param batch The forecast to insert
+     * @return The number of rows that were inserted.
+     * @throws IllegalArgumentException if a date in the batch isn't normalized. Nothing is
+     *                                  inserted in that case.
+     */
+    static int insert(SQLiteDatabase db, ForecastBatch batch) {
+        final int size = batch.size();
+        int rowsInserted = 0;
+
+        SQLiteStatement statement = null;
+        db.beginTransaction();
+        try {
+            statement = db.compileStatement(INSERT_SQL);
+            for (int i = 0; i < size; i++) {
+                if (!SunshineDateUtils.isDateNormalized(batch.dates[i])) {
+                    throw new IllegalArgumentException("Date must be normalized to insert");
+                }
+
+                bindDay(statement, batch, i);
+
+                if (statement.executeInsert() != -1) {
+                    rowsInserted++;
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            if (statement != null) {
+                statement.close();
+            }
+            db.endTransaction();
+        }
+
+        return rowsInserted;
+    }
+
+    /**
+     * Inserts an array of ContentValues in a single transaction. Only the weather columns are
+     * read from each ContentValues; a row missing one of them is skipped, as
+     * SQLiteDatabase#insert would have done.
+     *
+     * @param db     Writable database
+     * @param values The rows to insert
+     * @return The number of rows that were inserted.
+     * @throws IllegalArgumentException if a date isn't normalized. Nothing is inserted in that
+     *                                  case.
+     */
+    static int insert(SQLiteDatabase db, ContentValues[] values) {
+        int rowsInserted = 0;
+
+        SQLiteStatement statement = null;
+        db.beginTransaction();
+        try {
+            statement = db.compileStatement(INSERT_SQL);
+            for (ContentValues value : values) {
+                Long weatherDate = value.getAsLong(WeatherEntry.COLUMN_DATE);
+                if (weatherDate != null && !SunshineDateUtils.isDateNormalized(weatherDate)) {
+                    throw new IllegalArgumentException("Date must be normalized to insert");
+                }
+
+                statement.clearBindings();
+                bindLong(statement, BIND_DATE, weatherDate);
+                bindLong(statement, BIND_WEATHER_ID,
+                        value.getAsLong(WeatherEntry.COLUMN_WEATHER_ID));
+                bindDouble(statement, BIND_MIN_TEMP,
+                        value.getAsDouble(WeatherEntry.COLUMN_MIN_TEMP));
+                bindDouble(statement, BIND_MAX_TEMP,
+                        value.getAsDouble(WeatherEntry.COLUMN_MAX_TEMP));
+                bindDouble(statement, BIND_HUMIDITY,
+                        value.getAsDouble(WeatherEntry.COLUMN_HUMIDITY));
+                bindDouble(statement, BIND_PRESSURE,
+                        value.getAsDouble(WeatherEntry.COLUMN_PRESSURE));
+                bindDouble(statement, BIND_WIND_SPEED,
+                        value.getAsDouble(WeatherEntry.COLUMN_WIND_SPEED));
+                bindDouble(statement, BIND_DEGREES,
+                        value.getAsDouble(WeatherEntry.COLUMN_DEGREES));
+
+                try {
+                    if (statement.executeInsert() != -1) {
+                        rowsInserted++;
+                    }
+                } catch (SQLException e) {
+                    /*
+                     * A missing value violates a NOT NULL constraint. SQLiteDatabase#insert
+                     * logged these and returned -1, so we log and skip the row the same way.
+                     */
+                    Log.e(TAG, "Error inserting " + value, e);
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            if (statement != null) {
+                statement.close();
+            }
+            db.endTransaction();
+        }
+
+        return rowsInserted;
+    }
+
+    /**
+     * Makes the weather table hold exactly the days of a {@link ForecastBatch}, in a single
+     * transaction. Days that are new or whose values changed are written, days that are no longer
+     * in the batch are deleted and days that are identical are left untouched.
+     * <p>
+     * Compared to deleting the whole table and inserting the batch again, readers never see an
+     * empty table and unchanged rows aren't rewritten.
+     *
+     * @param db    Writable database
+     * @param batch The forecast that should replace what the table holds
+     * @return The dates of every row that was written or deleted. Empty if nothing changed.
+     * @throws IllegalArgumentException if a date in the batch isn't normalized. Nothing is
+     *                                  changed in that case.
+     */
+    static long[] replace(SQLiteDatabase db, ForecastBatch batch) {
+        final int size = batch.size();
+
+        /* Index of each day in the batch by date, so every stored row is looked up only once */
+        LongSparseArray<Integer> batchIndexByDate = new LongSparseArray<>(size);
+        for (int i = 0; i < size; i++) {
+            if (!SunshineDateUtils.isDateNormalized(batch.dates[i])) {
+                throw new IllegalArgumentException("Date must be normalized to insert");
+            }
+            batchIndexByDate.put(batch.dates[i], i);
+        }
+
+        boolean[] unchanged = new boolean[size];
+        long[] changedDates = new long[size];
+        int changedCount = 0;
+
+        SQLiteStatement insert = null;
+        SQLiteStatement delete = null;
+        db.beginTransaction();
+        try {
+            insert = db.compileStatement(INSERT_SQL);
+            delete = db.compileStatement(DELETE_SQL);
+
+            Cursor stored = db.query(WeatherEntry.TABLE_NAME, ROW_PROJECTION,
+                    null, null, null, null, null);
+            try {
+                while (stored.moveToNext()) {
+                    long date = stored.getLong(INDEX_DATE);
+                    Integer i = batchIndexByDate.get(date);
+
+                    if (i == null) {
+                        /* A day that isn't in the forecast anymore */
+                        changedDates = append(changedDates, changedCount++, date);
+                    } else if (isSameDay(stored, batch, i)) {
+                        unchanged[i] = true;
+                    }
+                }
+            } finally {
+                stored.close();
+            }
+
+            /* Stale days are deleted once the cursor is closed, not while we walk through it */
+            final int staleCount = changedCount;
+            for (int i = 0; i < staleCount; i++) {
+                delete.bindLong(1, changedDates[i]);
+                delete.executeUpdateDelete();
+            }
+
+            for (int i = 0; i < size; i++) {
+                if (unchanged[i]) {
+                    continue;
+                }
+
+                /* ON CONFLICT REPLACE turns this into an update for days we already have */
+                bindDay(insert, batch, i);
+                insert.executeInsert();
+                changedDates = append(changedDates, changedCount++, batch.dates[i]);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            if (insert != null) {
+                insert.close();
+            }
+            if (delete != null) {
+                delete.close();
+            }
+            db.endTransaction();
+        }
+
+        return Arrays.copyOf(changedDates, changedCount);
+    }
+
+    /*
+     * Values are compared exactly. They went through the same double to REAL conversion when the
+     * row was written, so an unchanged forecast compares equal.
+     */
+    private static boolean isSameDay(Cursor stored, ForecastBatch batch, int i) {
+        return stored.getInt(INDEX_WEATHER_ID) == batch.weatherIds[i]
+                && stored.getDouble(INDEX_MIN_TEMP) == batch.minTemps[i]
+                && stored.getDouble(INDEX_MAX_TEMP) == batch.maxTemps[i]
+                && stored.getDouble(INDEX_HUMIDITY) == batch.humidities[i]
+                && stored.getDouble(INDEX_PRESSURE) == batch.pressures[i]
+                && stored.getDouble(INDEX_WIND_SPEED) == batch.windSpeeds[i]
+                && stored.getDouble(INDEX_DEGREES) == batch.degrees[i];
+    }
+
+    /* Stores date at index count, growing dates when it is full */
+    private static long[] append(long[] dates, int count, long date) {
+        if (count == dates.length) {
+            dates = Arrays.copyOf(dates, count * 2 + 1);
+        }
+        dates[count] = date;
+        return dates;
+    }
+
+    private static void bindDay(SQLiteStatement statement, ForecastBatch batch, int i) {
+        statement.bindLong(BIND_DATE, batch.dates[i]);
+        statement.bindLong(BIND_WEATHER_ID, batch.weatherIds[i]);
+        statement.bindDouble(BIND_MIN_TEMP, batch.minTemps[i]);
+        statement.bindDouble(BIND_MAX_TEMP, batch.maxTemps[i]);
+        statement.bindDouble(BIND_HUMIDITY, batch.humidities[i]);
+        statement.bindDouble(BIND_PRESSURE, batch.pressures[i]);
+        statement.bindDouble(BIND_WIND_SPEED, batch.windSpeeds[i]);
+        statement.bindDouble(BIND_DEGREES, batch.degrees[i]);
+    }
+
+    private static void bindLong(SQLiteStatement statement, int index, Long value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindLong(index, value);
+        }
+    }
+
+    private static void bindDouble(SQLiteStatement statement, int index, Double value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindDouble(index, value);
+        }
+    }
+}
@@ -56,6 +56,28 @@ public class WeatherContract {
      */
     public static final String PATH_WEATHER = "weather";
 
+    /*
+     * Path for the state of the last successful sync of each location, which the sync uses to
+     * make conditional requests and to recognize a forecast it has already stored.
+     */
+    public static final String PATH_SYNC_STATE = "sync_state";
+
+    /*
+     * Method name for ContentResolver#call that inserts a ForecastBatch into the weather table.
+     * The batch is passed as the extras Bundle (see ForecastBatch#toBundle) and the number of
+     * rows inserted is returned under KEY_ROWS_INSERTED.
+     */
+    public static final String METHOD_BULK_INSERT_BATCH = "bulk_insert_batch";
+    public static final String KEY_ROWS_INSERTED = "rows_inserted";
+
+    /*
+     * Method name for ContentResolver#call that makes the weather table hold exactly the days of
+     * a ForecastBatch, in one transaction. Only days that are new, changed or gone are touched.
+     * The dates of those days are returned as a long[] under KEY_CHANGED_DATES.
+     */
+    public static final String METHOD_REPLACE_FORECAST = "replace_forecast";
+    public static final String KEY_CHANGED_DATES = "changed_dates";
+
     /* Inner class that defines the table contents of the weather table */
     public static final class WeatherEntry implements BaseColumns {
 
@@ -109,6 +131,13 @@ public class WeatherContract {
          */
         public static final String COLUMN_DEGREES = "degrees";
 
+        /*
+         * Query parameter of the Uri that WeatherProvider notifies after replacing the forecast.
+         * It holds the comma separated dates of the rows that changed. Observers match Uris by
+         * path only, so anyone observing CONTENT_URI still receives this single notification.
+         */
+        public static final String QUERY_CHANGED_DATES = "changed_dates";
+
         /**
          * Builds a URI that adds the weather date to the end of the forecast content URI path.
          * This is used to query details about a single weather entry by date. This is what we
@@ -123,6 +152,50 @@ public class WeatherContract {
                     .build();
         }
 
+        /**
+         * Builds the Uri that is notified when the rows for the given dates changed. See
+         * {@link #getChangedDates(Uri)} to read the dates back.
+         *
+         * @param dates Normalized dates of the rows that were written or deleted
+         * @return CONTENT_URI, with the dates appended as a query parameter
+         */
+        public static Uri buildChangedDatesUri(long[] dates) {
+            StringBuilder changedDates = new StringBuilder();
+            for (int i = 0; i < dates.length; i++) {
+                if (i > 0) {
+                    changedDates.append(',');
+                }
+                changedDates.append(dates[i]);
+            }
+
+            return CONTENT_URI.buildUpon()
+                    .appendQueryParameter(QUERY_CHANGED_DATES, changedDates.toString())
+                    .build();
+        }
+
+        /**
+         * Reads the dates from a Uri built by {@link #buildChangedDatesUri(long[])}.
+         *
+         * @param uri Uri received by a ContentObserver
+         * @return The normalized dates that changed, or null if the Uri doesn't say which did.
+         */
+        public static long[] getChangedDates(Uri uri) {
+            String changedDates = uri == null ? null : uri.getQueryParameter(QUERY_CHANGED_DATES);
+            if (changedDates == null) {
+                return null;
+            }
+            if (changedDates.isEmpty()) {
+                return new long[0];
+            }
+
+            String[] values = changedDates.split(",");
+            long[] dates = new long[values.length];
+            for (int i = 0; i < values.length; i++) {
+                dates[i] = Long.parseLong(values[i]);
+            }
+            return dates;
+        }
+
         /**
          * Returns just the selection part of the weather query from a normalized today value.
          * This is used to get a weather forecast from today's date. To make this easy to use
@@ -135,4 +208,44 @@ public class WeatherContract {
             return WeatherContract.WeatherEntry.COLUMN_DATE + " >= " + normalizedUtcNow;
         }
     }
+
+    /* Inner class that defines the table contents of the sync_state table */
+    public static final class SyncStateEntry implements BaseColumns {
+
+        /* The base CONTENT_URI used to query the sync_state table from the content provider */
+        public static final Uri CONTENT_URI = BASE_CONTENT_URI.buildUpon()
+                .appendPath(PATH_SYNC_STATE)
+                .build();
+
+        /* Used internally as the name of our sync_state table. */
+        public static final String TABLE_NAME = "sync_state";
+
+        /* The location setting the sync was made for. There is one row per location. */
+        public static final String COLUMN_LOCATION = "location";
+
+        /* Time in milliseconds of the last sync that got a forecast or a 304 Not Modified */
+        public static final String COLUMN_LAST_SYNC = "last_sync";
+
+        /* The request URL the validators below were received for */
+        public static final String COLUMN_URL = "url";
+
+        /* The ETag and Last-Modified response headers of the forecast we stored, may be null */
+        public static final String COLUMN_ETAG = "etag";
+        public static final String COLUMN_LAST_MODIFIED = "last_modified";
+
+        /* Hash of the stored forecast's content, see ForecastBatch#getContentHash */
+        public static final String COLUMN_CONTENT_HASH = "content_hash";
+
+        /**
+         * Builds a URI to query the sync state of a single location.
+         *
+         * @param location The location setting, see SunshinePreferences#getPreferredWeatherLocation
+         * @return Uri to query the sync state of that location
+         */
+        public static Uri buildSyncStateUriWithLocation(String location) {
+            return CONTENT_URI.buildUpon()
+                    .appendPath(location)
+                    .build();
+        }
+    }
 }
\ No newline at end of file
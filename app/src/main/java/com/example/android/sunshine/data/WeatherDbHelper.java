@@ -16,16 +16,26 @@
 package com.example.android.sunshine.data;
 
 import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.support.annotation.VisibleForTesting;
+import android.util.Log;
 
 import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Manages a local database for weather data.
  */
 public class WeatherDbHelper extends SQLiteOpenHelper {
 
+    private static final String TAG = WeatherDbHelper.class.getSimpleName();
+
     /*
      * This is the name of our database. Database names should be descriptive and end with the
      * .db extension.
@@ -42,11 +52,64 @@ public class WeatherDbHelper extends SQLiteOpenHelper {
      * versions of Sunshine could cause everything to break. Although that is certainly a rare
      * use-case, we wanted to watch out for it and warn you what could happen if you mistakenly
      * version your databases.
+     *
+     * Version 4 added the sync_state table. Each new version needs a step at the end of
+     * WeatherDbMigrations.MIGRATIONS that upgrades the previous version to it.
+     */
+    static final int DATABASE_VERSION = 4;
+
+    /* The version whose schema onCreate builds before running the migrations after it */
+    private static final int BASE_VERSION = 3;
+
+    /*
+     * In write-ahead logging mode, a transaction writes to a separate log file instead of the
+     * database itself. Readers keep seeing the last committed data and don't have to wait for
+     * the writer, so the forecast list and detail screen can query while the sync is writing.
+     *
+     * The log is copied back into the database (a "checkpoint") once it holds the number of
+     * pages the framework configures every connection with, config_sqlite_wal_autocheckpoint
+     * (100 pages on most devices). We keep that policy rather than setting our own.
+     *
+     * After a checkpoint, the log file is truncated down to this size. A large history import
+     * can grow the log to many megabytes, which we don't want to keep around on disk between
+     * syncs that only write 14 rows.
      */
-    private static final int DATABASE_VERSION = 3;
+    private static final long JOURNAL_SIZE_LIMIT_BYTES = 512 * 1024;
 
     public WeatherDbHelper(Context context) {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this(context, DATABASE_NAME);
+    }
+
+    /* Lets tests open databases other than the app's */
+    @VisibleForTesting
+    WeatherDbHelper(Context context, String databaseName) {
+        super(context, databaseName, null, DATABASE_VERSION);
+
+        /*
+         * Also gives the database a pool of connections: the writer keeps the primary
+         * connection, and each concurrent reader gets one of the others.
+         */
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    /**
+     * Called when the database connection is being configured, before onCreate, onUpgrade or
+     * onOpen. This is where connection settings (PRAGMAs) go.
+     *
+     * @param sqLiteDatabase The database.
+     */
+    @Override
+    public void onConfigure(SQLiteDatabase sqLiteDatabase) {
+        /*
+         * In WAL mode, NORMAL only syncs the log to disk at checkpoints rather than on every
+         * commit. A power loss can at worst roll back the last sync, which the next sync would
+         * download again anyway; the database itself can't be corrupted.
+         */
+        sqLiteDatabase.execSQL("PRAGMA synchronous = NORMAL");
+
+        /* This PRAGMA returns its new value, so it has to be run as a query */
+        DatabaseUtils.longForQuery(sqLiteDatabase,
+                "PRAGMA journal_size_limit = " + JOURNAL_SIZE_LIMIT_BYTES, null);
     }
 
     /**
@@ -99,15 +162,27 @@ public class WeatherDbHelper extends SQLiteOpenHelper {
          * that SQL with the execSQL method of our SQLite database object.
          */
         sqLiteDatabase.execSQL(SQL_CREATE_WEATHER_TABLE);
+
+        /*
+         * The table above is the schema of version 3. Everything added since is created by the
+         * same migrations that upgrade existing databases, so a fresh install and an upgraded
+         * one always end up with the same schema.
+         */
+        WeatherDbMigrations.migrate(sqLiteDatabase, BASE_VERSION, DATABASE_VERSION);
     }
 
     /**
-     * This database is only a cache for online data, so its upgrade policy is simply to discard
-     * the data and call through to onCreate to recreate the table. Note that this only fires if
-     * you change the version number for your database (in our case, DATABASE_VERSION). It does NOT
-     * depend on the version number for your application found in your app/build.gradle file. If
-     * you want to update the schema without wiping data, commenting out the current body of this
-     * method should be your top priority before modifying this method.
+     * Upgrades the database one version at a time with the steps in WeatherDbMigrations, keeping
+     * the stored forecast. Throwing the forecast away would leave every user with an empty screen
+     * after an update, and have all of them download it again at the same moment.
+     * <p>
+     * A database too old or too new to have a path to DATABASE_VERSION is only a cache for online
+     * data, so its tables are dropped and recreated instead. So is a database whose schema isn't
+     * the one a migration expects, which happens as several schemas of the older Sunshine
+     * releases are out in the wild: failing here would fail every attempt to open the database.
+     * Note that this only fires if you change the version number for your database (in our case,
+     * DATABASE_VERSION). It does NOT depend on the version number for your application found in
+     * your app/build.gradle file.
      *
      * @param sqLiteDatabase Database that is being upgraded
      * @param oldVersion     The old database version
@@ -115,7 +190,38 @@ public class WeatherDbHelper extends SQLiteOpenHelper {
      */
     @Override
     public void onUpgrade(SQLiteDatabase sqLiteDatabase, int oldVersion, int newVersion) {
-        sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + WeatherEntry.TABLE_NAME);
+        try {
+            if (WeatherDbMigrations.migrate(sqLiteDatabase, oldVersion, newVersion)) {
+                return;
+            }
+        } catch (SQLException e) {
+            Log.w(TAG, "Unable to migrate the database from version " + oldVersion + " to "
+                    + newVersion + ", recreating it", e);
+        }
+
+        /*
+         * A migration that failed halfway may have left tables of its own behind, and we can't
+         * tell what a schema we don't know holds, so every table goes.
+         */
+        for (String table : getTableNames(sqLiteDatabase)) {
+            sqLiteDatabase.execSQL("DROP TABLE IF EXISTS \"" + table + "\"");
+        }
         onCreate(sqLiteDatabase);
     }
+
+    /* The tables of the database, except those SQLite and Android keep for themselves */
+    private static List<String> getTableNames(SQLiteDatabase sqLiteDatabase) {
+        List<String> tables = new ArrayList<>();
+        Cursor cursor = sqLiteDatabase.rawQuery("SELECT name FROM sqlite_master "
+                + "WHERE type = 'table' AND name NOT LIKE 'sqlite\\_%' ESCAPE '\\' "
+                + "AND name != 'android_metadata'", null);
+        try {
+            while (cursor.moveToNext()) {
+                tables.add(cursor.getString(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return tables;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * The steps that upgrade the weather database from each schema version to the next, keeping
+ * the rows it holds. {@link WeatherDbHelper#onUpgrade} runs them in order, so a database several
+ * versions old goes through every step in between.
+ * <p>
+ * Each step spells out its table and column names instead of using WeatherContract. A step
+ * describes the schema as it was at its version, and must keep doing so after the contract
+ * changes again.
+ */
+final class WeatherDbMigrations {
+
+    /* Oldest version we have a migration from. Anything older is dropped and recreated. */
+    static final int OLDEST_VERSION = 1;
+
+    /**
+     * Upgrades the database from one version to the next one.
+     */
+    interface Migration {
+        void migrate(SQLiteDatabase db);
+    }
+
+    /*
+     * Versions 1 and 2 are the schemas of the earlier Sunshine releases. They kept the forecast
+     * of several locations, in a weather table referencing a location table. Version 1 stored
+     * dates as "yyyyMMdd" text, version 2 as milliseconds.
+     */
+    private static final Migration MIGRATE_1_TO_2 = new Migration() {
+        @Override
+        public void migrate(SQLiteDatabase db) {
+            db.execSQL("ALTER TABLE weather RENAME TO weather_v1");
+            db.execSQL("CREATE TABLE weather ("
+                    + "_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                    + "location_id INTEGER NOT NULL, "
+                    + "date INTEGER NOT NULL, "
+                    + "weather_id INTEGER NOT NULL, "
+                    + "short_desc TEXT NOT NULL, "
+                    + "min REAL NOT NULL, "
+                    + "max REAL NOT NULL, "
+                    + "humidity REAL NOT NULL, "
+                    + "pressure REAL NOT NULL, "
+                    + "wind REAL NOT NULL, "
+                    + "degrees REAL NOT NULL, "
+                    + "FOREIGN KEY (location_id) REFERENCES location (_id), "
+                    + "UNIQUE (date, location_id) ON CONFLICT REPLACE)");
+
+            /* "20161001" becomes the milliseconds of 2016-10-01 at midnight UTC */
+            db.execSQL("INSERT INTO weather (_id, location_id, date, weather_id, short_desc, "
+                    + "min, max, humidity, pressure, wind, degrees) "
+                    + "SELECT _id, location_id, "
+                    + "CAST(strftime('%s', substr(date, 1, 4) || '-' || substr(date, 5, 2) "
+                    + "|| '-' || substr(date, 7, 2)) AS INTEGER) * 1000, "
+                    + "weather_id, short_desc, min, max, humidity, pressure, wind, degrees "
+                    + "FROM weather_v1");
+            db.execSQL("DROP TABLE weather_v1");
+        }
+    };
+
+    /*
+     * Version 3 keeps a single location's forecast, with normalized dates, and no description
+     * (it is derived from the weather id). We keep the location that was synced last, which is
+     * the one the user was looking at.
+     */
+    private static final Migration MIGRATE_2_TO_3 = new Migration() {
+        @Override
+        public void migrate(SQLiteDatabase db) {
+            db.execSQL("ALTER TABLE weather RENAME TO weather_v2");
+            db.execSQL("CREATE TABLE weather ("
+                    + "_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                    + "date INTEGER NOT NULL, "
+                    + "weather_id INTEGER NOT NULL,"
+                    + "min REAL NOT NULL, "
+                    + "max REAL NOT NULL, "
+                    + "humidity REAL NOT NULL, "
+                    + "pressure REAL NOT NULL, "
+                    + "wind REAL NOT NULL, "
+                    + "degrees REAL NOT NULL, "
+                    + " UNIQUE (date) ON CONFLICT REPLACE)");
+
+            /* Rows are copied in _id order, so the newest row wins if two days normalize alike */
+            db.execSQL("INSERT INTO weather (date, weather_id, min, max, humidity, pressure, "
+                    + "wind, degrees) "
+                    + "SELECT date - date % 86400000, weather_id, min, max, humidity, pressure, "
+                    + "wind, degrees "
+                    + "FROM weather_v2 "
+                    + "WHERE location_id = "
+                    + "(SELECT location_id FROM weather_v2 ORDER BY _id DESC LIMIT 1) "
+                    + "ORDER BY _id");
+            db.execSQL("DROP TABLE weather_v2");
+            db.execSQL("DROP TABLE IF EXISTS location");
+        }
+    };
+
+    /* Version 4 adds the sync_state table, see WeatherContract.SyncStateEntry */
+    private static final Migration MIGRATE_3_TO_4 = new Migration() {
+        @Override
+        public void migrate(SQLiteDatabase db) {
+            db.execSQL("CREATE TABLE sync_state ("
+                    + "_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                    + "location TEXT NOT NULL, "
+                    + "last_sync INTEGER NOT NULL, "
+                    + "url TEXT NOT NULL, "
+                    + "etag TEXT, "
+                    + "last_modified TEXT, "
+                    + "content_hash TEXT NOT NULL, "
+                    + " UNIQUE (location) ON CONFLICT REPLACE)");
+        }
+    };
+
+    /* MIGRATIONS[i] upgrades version OLDEST_VERSION + i to the version after it */
+    static final Migration[] MIGRATIONS = {
+            MIGRATE_1_TO_2,
+            MIGRATE_2_TO_3,
+            MIGRATE_3_TO_4
+    };
+
+    private WeatherDbMigrations() {
+    }
+
+    /**
+     * Runs every step from oldVersion up to newVersion. Called within the transaction
+     * SQLiteOpenHelper opens for onCreate and onUpgrade, so a step that fails leaves the database
+     * as it was.
+     *
+     * @return false if there is no path between the two versions, in which case nothing was run
+     */
+    static boolean migrate(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion < OLDEST_VERSION || newVersion > OLDEST_VERSION + MIGRATIONS.length) {
+            return false;
+        }
+
+        for (int version = oldVersion; version < newVersion; version++) {
+            MIGRATIONS[version - OLDEST_VERSION].migrate(db);
+        }
+        return true;
+    }
+}
@@ -22,9 +22,13 @@ import android.content.UriMatcher;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.net.Uri;
+import android.os.Bundle;
 import android.support.annotation.NonNull;
 
-import com.example.android.sunshine.utilities.SunshineDateUtils;
+import com.example.android.sunshine.sync.SyncTimingLog;
+
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
 
 /**
  * This class serves as the ContentProvider for all of Sunshine's data. This class allows us to
@@ -45,6 +49,8 @@ public class WeatherProvider extends ContentProvider {
      */
     public static final int CODE_WEATHER = 100;
     public static final int CODE_WEATHER_WITH_DATE = 101;
+    public static final int CODE_SYNC_STATE = 200;
+    public static final int CODE_SYNC_STATE_WITH_LOCATION = 201;
 
     /*
      * The URI Matcher used by this content provider. The leading "s" in this variable name
@@ -96,6 +102,15 @@ public class WeatherProvider extends ContentProvider {
          */
         matcher.addURI(authority, WeatherContract.PATH_WEATHER + "/#", CODE_WEATHER_WITH_DATE);
 
+        /*
+         * content://com.example.android.sunshine/sync_state/ and, for a single location,
+         * content://com.example.android.sunshine/sync_state/Mountain%20View. The "/*" matches
+         * any text, as locations are names rather than numbers.
+         */
+        matcher.addURI(authority, WeatherContract.PATH_SYNC_STATE, CODE_SYNC_STATE);
+        matcher.addURI(authority, WeatherContract.PATH_SYNC_STATE + "/*",
+                CODE_SYNC_STATE_WITH_LOCATION);
+
         return matcher;
     }
 
@@ -145,27 +160,14 @@ public class WeatherProvider extends ContentProvider {
         switch (sUriMatcher.match(uri)) {
 
             case CODE_WEATHER:
-                db.beginTransaction();
-                int rowsInserted = 0;
-                try {
-                    for (ContentValues value : values) {
-                        long weatherDate =
-                                value.getAsLong(WeatherContract.WeatherEntry.COLUMN_DATE);
-                        if (!SunshineDateUtils.isDateNormalized(weatherDate)) {
-                            throw new IllegalArgumentException("Date must be normalized to insert");
-                        }
-
-                        long _id = db.insert(WeatherContract.WeatherEntry.TABLE_NAME, null, value);
-                        if (_id != -1) {
-                            rowsInserted++;
-                        }
-                    }
-                    db.setTransactionSuccessful();
-                } finally {
-                    db.endTransaction();
-                }
+                /*
+                 * WeatherBulkWriter compiles the INSERT statement once for the whole transaction
+                 * instead of once per row, which is what SQLiteDatabase#insert would do.
+                 */
+                int rowsInserted = WeatherBulkWriter.insert(db, values);
 
                 if (rowsInserted > 0) {
+                    ForecastRepository.getInstance(getContext()).invalidate();
                     getContext().getContentResolver().notifyChange(uri, null);
                 }
 
@@ -176,6 +178,84 @@ public class WeatherProvider extends ContentProvider {
         }
     }
 
+    /**
+     * Handles provider specific methods. Sunshine uses these to insert or replace a
+     * {@link ForecastBatch}, which carries a whole forecast as primitive arrays instead of one
+     * ContentValues per day.
+     *
+     * @param method {@link WeatherContract#METHOD_BULK_INSERT_BATCH} or
+     *               {@link WeatherContract#METHOD_REPLACE_FORECAST}
+     * @param arg    Unused
+     * @param extras The batch, as created by {@link ForecastBatch#toBundle()}
+     * @return A Bundle holding the number of rows inserted under
+     * {@link WeatherContract#KEY_ROWS_INSERTED}, or the dates that changed under
+     * {@link WeatherContract#KEY_CHANGED_DATES}
+     */
+    @Override
+    public Bundle call(@NonNull String method, String arg, Bundle extras) {
+        if (WeatherContract.METHOD_BULK_INSERT_BATCH.equals(method)) {
+            int rowsInserted = bulkInsert(ForecastBatch.fromBundle(extras));
+
+            Bundle result = new Bundle();
+            result.putInt(WeatherContract.KEY_ROWS_INSERTED, rowsInserted);
+            return result;
+        }
+
+        if (WeatherContract.METHOD_REPLACE_FORECAST.equals(method)) {
+            long[] changedDates = replaceForecast(ForecastBatch.fromBundle(extras));
+
+            Bundle result = new Bundle();
+            result.putLongArray(WeatherContract.KEY_CHANGED_DATES, changedDates);
+            return result;
+        }
+
+        return super.call(method, arg, extras);
+    }
+
+    /**
+     * Inserts every day of a {@link ForecastBatch} in a single transaction. This is the
+     * counterpart of {@link #bulkInsert(Uri, ContentValues[])} for the sync, reading the values
+     * straight from the batch's primitive arrays.
+     *
+     * @param batch The forecast to insert
+     * @return The number of rows that were inserted.
+     */
+    private int bulkInsert(ForecastBatch batch) {
+        final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        int rowsInserted = WeatherBulkWriter.insert(db, batch);
+
+        if (rowsInserted > 0) {
+            ForecastRepository.getInstance(getContext()).invalidate();
+            getContext().getContentResolver()
+                    .notifyChange(WeatherContract.WeatherEntry.CONTENT_URI, null);
+        }
+
+        return rowsInserted;
+    }
+
+    /**
+     * Replaces the stored forecast with a {@link ForecastBatch} in a single transaction, touching
+     * only the days that are new, changed or gone. Observers get one notification, on a Uri that
+     * lists the dates of those days (see WeatherEntry#buildChangedDatesUri), and none at all if
+     * the forecast didn't change. The batch also becomes the forecast of ForecastRepository.
+     *
+     * @param batch The forecast that should replace what we have stored
+     * @return The dates of the rows that were written or deleted.
+     */
+    private long[] replaceForecast(ForecastBatch batch) {
+        final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        long[] changedDates = WeatherBulkWriter.replace(db, batch);
+
+        if (changedDates.length > 0) {
+            /* The table now holds exactly this batch, no need to read it back */
+            ForecastRepository.getInstance(getContext()).setForecast(batch);
+            getContext().getContentResolver().notifyChange(
+                    WeatherContract.WeatherEntry.buildChangedDatesUri(changedDates), null);
+        }
+
+        return changedDates;
+    }
+
     /**
      * Handles query requests from clients. We will use this method in Sunshine to query for all
      * of our weather data as well as to query for the weather on a particular day.
@@ -285,6 +365,33 @@ public class WeatherProvider extends ContentProvider {
                 break;
             }
 
+            /* The sync state of a single location, the location being the last path segment */
+            case CODE_SYNC_STATE_WITH_LOCATION: {
+                cursor = mOpenHelper.getReadableDatabase().query(
+                        WeatherContract.SyncStateEntry.TABLE_NAME,
+                        projection,
+                        WeatherContract.SyncStateEntry.COLUMN_LOCATION + " = ? ",
+                        new String[]{uri.getLastPathSegment()},
+                        null,
+                        null,
+                        sortOrder);
+
+                break;
+            }
+
+            case CODE_SYNC_STATE: {
+                cursor = mOpenHelper.getReadableDatabase().query(
+                        WeatherContract.SyncStateEntry.TABLE_NAME,
+                        projection,
+                        selection,
+                        selectionArgs,
+                        null,
+                        null,
+                        sortOrder);
+
+                break;
+            }
+
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
@@ -324,6 +431,18 @@ public class WeatherProvider extends ContentProvider {
                         selection,
                         selectionArgs);
 
+                if (numRowsDeleted != 0) {
+                    ForecastRepository.getInstance(getContext()).invalidate();
+                }
+
+                break;
+
+            case CODE_SYNC_STATE:
+                numRowsDeleted = mOpenHelper.getWritableDatabase().delete(
+                        WeatherContract.SyncStateEntry.TABLE_NAME,
+                        selection,
+                        selectionArgs);
+
                 break;
 
             default:
@@ -354,20 +473,49 @@ public class WeatherProvider extends ContentProvider {
     }
 
     /**
-     * In Sunshine, we aren't going to do anything with this method. However, we are required to
-     * override it as WeatherProvider extends ContentProvider and insert is an abstract method in
-     * ContentProvider. Rather than the single insert method, we are only going to implement
-     * {@link WeatherProvider#bulkInsert}.
+     * Handles requests to insert a single row. Weather is only ever inserted a whole forecast at
+     * a time, through {@link WeatherProvider#bulkInsert} or {@link #call}, so the only single rows
+     * we insert are sync states. As the weather table only holds the forecast of the last location
+     * synced, inserting the state of a location replaces the one we had and deletes the state of
+     * every other location, in the same transaction. See {@link SyncState}.
      *
      * @param uri    The URI of the insertion request. This must not be null.
      * @param values A set of column_name/value pairs to add to the database.
      *               This must not be null
-     * @return nothing in Sunshine, but normally the URI for the newly inserted item.
+     * @return The URI of the sync state of the inserted location
      */
     @Override
     public Uri insert(@NonNull Uri uri, ContentValues values) {
-        throw new RuntimeException(
-                "We are not implementing insert in Sunshine. Use bulkInsert instead");
+        switch (sUriMatcher.match(uri)) {
+
+            case CODE_SYNC_STATE:
+                String location =
+                        values.getAsString(WeatherContract.SyncStateEntry.COLUMN_LOCATION);
+                final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+                long _id;
+
+                db.beginTransaction();
+                try {
+                    db.delete(WeatherContract.SyncStateEntry.TABLE_NAME,
+                            WeatherContract.SyncStateEntry.COLUMN_LOCATION + " != ? ",
+                            new String[]{location});
+                    _id = db.insert(WeatherContract.SyncStateEntry.TABLE_NAME, null, values);
+                    if (_id != -1) {
+                        db.setTransactionSuccessful();
+                    }
+                } finally {
+                    db.endTransaction();
+                }
+
+                if (_id == -1) {
+                    return null;
+                }
+                return WeatherContract.SyncStateEntry.buildSyncStateUriWithLocation(location);
+
+            default:
+                throw new RuntimeException(
+                        "We are not implementing insert in Sunshine. Use bulkInsert instead");
+        }
     }
 
     @Override
@@ -375,6 +523,17 @@ public class WeatherProvider extends ContentProvider {
         throw new RuntimeException("We are not implementing update in Sunshine");
     }
 
+    /**
+     * Prints the timings of the last syncs, see {@link SyncTimingLog}. The provider lives as
+     * long as our process does, which makes it a reliable place to reach them from:
+     * <p>
+     *   adb shell dumpsys activity provider com.example.android.sunshine/.data.WeatherProvider
+     */
+    @Override
+    public void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        SyncTimingLog.getInstance(getContext()).dump(writer);
+    }
+
     /**
      * You do not need to call this method. This is a method specifically to assist the testing
      * framework in running smoothly. You can read more at:
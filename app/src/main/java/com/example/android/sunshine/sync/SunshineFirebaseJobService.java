@@ -17,6 +17,7 @@ package com.example.android.sunshine.sync;
 
 import android.content.Context;
 import android.os.AsyncTask;
+import android.os.CancellationSignal;
 
 import com.firebase.jobdispatcher.Job;
 import com.firebase.jobdispatcher.JobParameters;
@@ -27,6 +28,7 @@ import com.firebase.jobdispatcher.RetryStrategy;
 public class SunshineFirebaseJobService extends JobService {
 
     private AsyncTask<Void, Void, Void> mFetchWeatherTask;
+    private CancellationSignal mCancellationSignal;
 
     /**
      * The entry point to your Job. Implementations should offload work to another thread of
@@ -41,11 +43,14 @@ public class SunshineFirebaseJobService extends JobService {
     @Override
     public boolean onStartJob(final JobParameters jobParameters) {
 
+        mCancellationSignal = new CancellationSignal();
+        final CancellationSignal cancellationSignal = mCancellationSignal;
+
         mFetchWeatherTask = new AsyncTask<Void, Void, Void>(){
             @Override
             protected Void doInBackground(Void... voids) {
                 Context context = getApplicationContext();
-                SunshineSyncTask.syncWeather(context);
+                SunshineSyncCoordinator.sync(context, false, cancellationSignal);
                 jobFinished(jobParameters, false);
                 return null;
             }
@@ -70,6 +75,10 @@ public class SunshineFirebaseJobService extends JobService {
      */
     @Override
     public boolean onStopJob(JobParameters jobParameters) {
+        /* Stops waiting for the sync, and stops the sync itself if nobody else is waiting */
+        if (mCancellationSignal != null) {
+            mCancellationSignal.cancel();
+        }
         if (mFetchWeatherTask != null) {
             mFetchWeatherTask.cancel(true);
         }
@@ -0,0 +1,261 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.sync;
+
+import android.content.Context;
+import android.os.CancellationSignal;
+import android.support.annotation.NonNull;
+import android.support.annotation.VisibleForTesting;
+import android.util.Log;
+
+import com.example.android.sunshine.data.SunshinePreferences;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Makes sure only one weather sync runs at a time, and that callers asking for a sync while one
+ * is already running share it instead of each fetching the forecast again.
+ * <p>
+ * The periodic job, the IntentService behind SunshineSyncUtils#startImmediateSync and a location
+ * change in the settings often all ask for a sync at about the same moment. The first request
+ * starts a run on the coordinator's own thread; the others join it and all of them get the same
+ * result when it finishes. A run is repeated once more before finishing if someone asked for it,
+ * or if the location setting changed while it was fetching the old location's forecast.
+ */
+public final class SunshineSyncCoordinator {
+
+    private static final String TAG = SunshineSyncCoordinator.class.getSimpleName();
+
+    /* Guards sCurrentRun and the fields of every SyncRun */
+    private static final Object sLock = new Object();
+
+    /* The run in progress, null when no sync is running */
+    private static SyncRun sCurrentRun;
+
+    /* Runs are executed one after the other, on a single thread owned by the coordinator */
+    private static final ExecutorService sExecutor = Executors.newSingleThreadExecutor();
+
+    /**
+     * One pass of a run, which fetches and stores the forecast.
+     */
+    @VisibleForTesting
+    interface SyncTask {
+        /**
+         * @return One of the SunshineSyncTask.RESULT_* constants
+         */
+        int syncWeather(Context context, CancellationSignal cancellationSignal);
+    }
+
+    private static final SyncTask WEATHER_SYNC_TASK = new SyncTask() {
+        @Override
+        public int syncWeather(Context context, CancellationSignal cancellationSignal) {
+            return SunshineSyncTask.syncWeather(context, cancellationSignal);
+        }
+    };
+
+    /* What each pass runs, only ever replaced by tests */
+    private static volatile SyncTask sSyncTask = WEATHER_SYNC_TASK;
+
+    private static final class SyncRun {
+        /* Cancelled once every caller waiting for this run has given up on it */
+        final CancellationSignal mCancellationSignal = new CancellationSignal();
+
+        /*
+         * Set under sLock as soon as the last caller leaves, before mCancellationSignal is
+         * cancelled outside of it, so that no caller can join the run in between.
+         */
+        boolean mCancelled;
+
+        /* One latch per caller waiting for this run, released when it finishes */
+        final List<CountDownLatch> mWaiters = new ArrayList<>();
+
+        /* Location setting the current pass of this run is syncing */
+        String mLocation;
+
+        /* Whether to sync once more when the current pass finishes */
+        boolean mSyncAgain;
+
+        /* One of the SunshineSyncTask.RESULT_* constants, set when the run finishes */
+        int mResult;
+    }
+
+    private SunshineSyncCoordinator() {
+    }
+
+    /**
+     * Syncs the weather, or waits for the sync that is already running. Don't call this on the
+     * main thread, it only returns once the sync finished or was cancelled.
+     *
+     * @param context            Used to access utility methods and the ContentResolver
+     * @param syncAgain          If a sync is already running, have it sync once more after it
+     *                           finishes, for callers that know the running sync is out of date
+     * @param cancellationSignal Cancels waiting for the sync. The sync itself is only cancelled
+     *                           if no other caller is still waiting for it. May be null.
+     * @return One of the SunshineSyncTask.RESULT_* constants. Every caller of the same run gets
+     * the same result, except callers that cancelled, which get RESULT_CANCELLED.
+     */
+    public static int sync(@NonNull Context context, boolean syncAgain,
+                           CancellationSignal cancellationSignal) {
+        final Context appContext = context.getApplicationContext();
+        final String location = SunshinePreferences.getPreferredWeatherLocation(appContext);
+        final CountDownLatch released = new CountDownLatch(1);
+        final SyncRun run;
+
+        synchronized (sLock) {
+            /* A cancelled run is still winding down, it won't fetch anything for us anymore */
+            if (sCurrentRun == null || sCurrentRun.mCancelled) {
+                run = new SyncRun();
+                run.mLocation = location;
+                sCurrentRun = run;
+
+                sExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        execute(appContext, run);
+                    }
+                });
+            } else {
+                run = sCurrentRun;
+
+                /*
+                 * A run that is fetching another location's forecast is of no use to us, but
+                 * cancelling it would waste what it already downloaded. Let it finish, then sync
+                 * again for the new location.
+                 */
+                if (syncAgain || !location.equals(run.mLocation)) {
+                    run.mSyncAgain = true;
+                }
+                Log.d(TAG, "Joining the sync that is already running");
+            }
+            run.mWaiters.add(released);
+        }
+
+        if (cancellationSignal != null) {
+            cancellationSignal.setOnCancelListener(new CancellationSignal.OnCancelListener() {
+                @Override
+                public void onCancel() {
+                    leave(run, released);
+                }
+            });
+        }
+
+        try {
+            released.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            leave(run, released);
+            return SunshineSyncTask.RESULT_CANCELLED;
+        } finally {
+            if (cancellationSignal != null) {
+                cancellationSignal.setOnCancelListener(null);
+            }
+        }
+
+        if (cancellationSignal != null && cancellationSignal.isCanceled()) {
+            return SunshineSyncTask.RESULT_CANCELLED;
+        }
+
+        synchronized (sLock) {
+            return run.mResult;
+        }
+    }
+
+    /*
+     * Runs on the coordinator's thread. Syncs until nobody asked for another pass, then hands
+     * the result of the last pass to every caller that is still waiting. If a pass throws, the run
+     * fails, but its callers are still released and the next caller starts a run of its own.
+     */
+    private static void execute(Context context, SyncRun run) {
+        int result = SunshineSyncTask.RESULT_FAILED;
+        try {
+            while (true) {
+                int passResult = sSyncTask.syncWeather(context, run.mCancellationSignal);
+
+                synchronized (sLock) {
+                    if (!run.mSyncAgain || run.mCancelled) {
+                        result = passResult;
+                        return;
+                    }
+
+                    run.mSyncAgain = false;
+                    run.mLocation = SunshinePreferences.getPreferredWeatherLocation(context);
+                }
+            }
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Sync failed", e);
+        } finally {
+            finish(run, result);
+        }
+    }
+
+    /* Ends run with result and releases every caller still waiting for it */
+    private static void finish(SyncRun run, int result) {
+        synchronized (sLock) {
+            run.mResult = result;
+            if (sCurrentRun == run) {
+                sCurrentRun = null;
+            }
+            for (CountDownLatch waiter : run.mWaiters) {
+                waiter.countDown();
+            }
+            run.mWaiters.clear();
+        }
+    }
+
+    /* A caller stopped waiting for run. Once nobody is waiting anymore, the run is cancelled. */
+    private static void leave(SyncRun run, CountDownLatch released) {
+        boolean nobodyWaiting;
+        synchronized (sLock) {
+            if (!run.mWaiters.remove(released)) {
+                /* The run already finished and released every caller */
+                return;
+            }
+            nobodyWaiting = run.mWaiters.isEmpty();
+            if (nobodyWaiting) {
+                run.mCancelled = true;
+            }
+        }
+
+        released.countDown();
+        if (nobodyWaiting) {
+            run.mCancellationSignal.cancel();
+        }
+    }
+
+    /**
+     * @return The number of callers waiting for the run in progress, 0 if none is running
+     */
+    @VisibleForTesting
+    static int getWaitingCallers() {
+        synchronized (sLock) {
+            return sCurrentRun == null ? 0 : sCurrentRun.mWaiters.size();
+        }
+    }
+
+    /**
+     * Replaces what each pass of a run does.
+     *
+     * @param syncTask The task to run, or null to sync the weather again
+     */
+    @VisibleForTesting
+    static void setSyncTask(SyncTask syncTask) {
+        sSyncTask = syncTask != null ? syncTask : WEATHER_SYNC_TASK;
+    }
+}
@@ -16,101 +16,306 @@
 package com.example.android.sunshine.sync;
 
 import android.content.ContentResolver;
-import android.content.ContentValues;
 import android.content.Context;
+import android.os.CancellationSignal;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
 import android.text.format.DateUtils;
+import android.util.Log;
 
+import com.example.android.sunshine.data.ForecastBatch;
 import com.example.android.sunshine.data.SunshinePreferences;
+import com.example.android.sunshine.data.SyncState;
 import com.example.android.sunshine.data.WeatherContract;
 import com.example.android.sunshine.utilities.NetworkUtils;
 import com.example.android.sunshine.utilities.NotificationUtils;
 import com.example.android.sunshine.utilities.OpenWeatherJsonUtils;
 
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
 import java.net.URL;
 
 public class SunshineSyncTask {
 
+    private static final String TAG = SunshineSyncTask.class.getSimpleName();
+
+    /* Outcomes of a sync, see SunshineSyncCoordinator#sync */
+    public static final int RESULT_UPDATED = 0;
+    public static final int RESULT_UNCHANGED = 1;
+    public static final int RESULT_FAILED = 2;
+    public static final int RESULT_CANCELLED = 3;
+
     /**
      * Performs the network request for updated weather, parses the JSON from that request, and
      * inserts the new weather information into our ContentProvider. Will notify the user that new
      * weather has been loaded if the user hasn't been notified of the weather within the last day
      * AND they haven't disabled notifications in the preferences screen.
+     * <p>
+     * If the forecast turns out to be identical to the one we stored last time, whether because
+     * the server answered 304 Not Modified or because the content hashes match, nothing is
+     * written, notified or sent to the wearable.
+     * <p>
+     * Only {@link SunshineSyncCoordinator} calls this, which makes sure two syncs never run at
+     * the same time.
      *
-     * @param context Used to access utility methods and the ContentResolver
+     * @param context            Used to access utility methods and the ContentResolver
+     * @param cancellationSignal Aborts the network request and keeps the forecast from being
+     *                           stored once cancelled
+     * @return {@link #RESULT_UPDATED} if a new forecast was stored, {@link #RESULT_UNCHANGED} if
+     * the forecast was the one we already had, {@link #RESULT_CANCELLED} or {@link #RESULT_FAILED}
+     */
+    static int syncWeather(Context context, CancellationSignal cancellationSignal) {
+        SyncTimingLog.Run timing = new SyncTimingLog.Run();
+
+        int result = syncWeather(context, cancellationSignal, timing);
+
+        timing.setOutcome(result);
+        SyncTimingLog.getInstance(context).record(timing);
+        return result;
+    }
+
+    /*
+     * Does the actual work of syncWeather(Context, CancellationSignal), recording how long each
+     * phase of the sync takes in timing.
      */
-    synchronized public static void syncWeather(Context context) {
+    private static int syncWeather(Context context, CancellationSignal cancellationSignal,
+                                   SyncTimingLog.Run timing) {
 
         try {
+            cancellationSignal.throwIfCanceled();
+
             /*
              * The getUrl method will return the URL that we need to get the forecast JSON for the
              * weather. It will decide whether to create a URL based off of the latitude and
              * longitude or off of a simple location as a String.
              */
+            timing.start(SyncTimingLog.PHASE_URL);
             URL weatherRequestUrl = NetworkUtils.getUrl(context);
+            timing.stop(SyncTimingLog.PHASE_URL);
 
-            /* Use the URL to retrieve the JSON */
-            String jsonWeatherResponse = NetworkUtils.getResponseFromHttpUrl(weatherRequestUrl);
-
-            /* Parse the JSON into a list of weather values */
-            ContentValues[] weatherValues = OpenWeatherJsonUtils
-                    .getWeatherContentValuesFromJson(context, jsonWeatherResponse);
+            /* What the last successful sync of this location received, null if there was none */
+            timing.start(SyncTimingLog.PHASE_DATABASE);
+            String location = SunshinePreferences.getPreferredWeatherLocation(context);
+            SyncState syncState = SyncState.load(context, location);
+            timing.stop(SyncTimingLog.PHASE_DATABASE);
 
             /*
-             * In cases where our JSON contained an error code, getWeatherContentValuesFromJson
-             * would have returned null. We need to check for those cases here to prevent any
-             * NullPointerExceptions being thrown. We also have no reason to insert fresh data if
-             * there isn't any to insert.
+             * Ask the server for the forecast, sending the validators of the last response we
+             * stored. If nothing changed since then, the server answers with 304 Not Modified and
+             * there is nothing left to parse, store, notify or send to the wearable.
              */
-            if (weatherValues != null && weatherValues.length != 0) {
-                /* Get a handle on the ContentResolver to delete and insert data */
-                ContentResolver sunshineContentResolver = context.getContentResolver();
+            timing.start(SyncTimingLog.PHASE_CONNECT);
+            final HttpURLConnection urlConnection =
+                    NetworkUtils.openConditionalConnection(weatherRequestUrl, syncState);
 
-                /* Delete old weather data because we don't need to keep multiple days' data */
-                sunshineContentResolver.delete(
-                        WeatherContract.WeatherEntry.CONTENT_URI,
-                        null,
-                        null);
+            /* Disconnecting makes a download that is blocked on the network fail right away */
+            cancellationSignal.setOnCancelListener(new CancellationSignal.OnCancelListener() {
+                @Override
+                public void onCancel() {
+                    urlConnection.disconnect();
+                }
+            });
 
-                /* Insert our new weather data into Sunshine's ContentProvider */
-                sunshineContentResolver.bulkInsert(
-                        WeatherContract.WeatherEntry.CONTENT_URI,
-                        weatherValues);
+            try {
+                urlConnection.connect();
+                timing.stop(SyncTimingLog.PHASE_CONNECT);
 
-                /*
-                 * Finally, after we insert data into the ContentProvider, determine whether or not
-                 * we should notify the user that the weather has been refreshed.
-                 */
-                boolean notificationsEnabled = SunshinePreferences.areNotificationsEnabled(context);
+                /* getResponseCode waits for the status line, the first byte of the response */
+                timing.start(SyncTimingLog.PHASE_FIRST_BYTE);
+                int responseCode = urlConnection.getResponseCode();
+                timing.stop(SyncTimingLog.PHASE_FIRST_BYTE);
+
+                if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED && syncState != null) {
+                    Log.d(TAG, "Forecast not modified, skipping sync");
+                    timing.start(SyncTimingLog.PHASE_DATABASE);
+                    syncState.withLastSyncTime(System.currentTimeMillis()).save(context);
+                    timing.stop(SyncTimingLog.PHASE_DATABASE);
+                    return RESULT_UNCHANGED;
+                }
 
                 /*
-                 * If the last notification was shown was more than 1 day ago, we want to send
-                 * another notification to the user that the weather has been updated. Remember,
-                 * it's important that you shouldn't spam your users with notifications.
+                 * Parse the JSON into a batch of weather values straight from the connection's
+                 * stream, without first reading the whole response into a String. Downloading
+                 * and parsing are interleaved, so the time spent waiting in read() is counted as
+                 * download time and the rest as parse time.
                  */
-                long timeSinceLastNotification = SunshinePreferences
-                        .getEllapsedTimeSinceLastNotification(context);
+                TimedInputStream responseStream =
+                        new TimedInputStream(urlConnection.getInputStream());
+                long parseStart = SystemClock.elapsedRealtimeNanos();
+                ForecastBatch forecast =
+                        OpenWeatherJsonUtils.getForecastBatchFromStream(context, responseStream);
+                long parseNanos = SystemClock.elapsedRealtimeNanos() - parseStart;
 
-                boolean oneDayPassedSinceLastNotification = false;
+                timing.add(SyncTimingLog.PHASE_DOWNLOAD, responseStream.mReadNanos);
+                timing.add(SyncTimingLog.PHASE_PARSE, parseNanos - responseStream.mReadNanos);
+                timing.setBytes(responseStream.mBytes);
 
-                if (timeSinceLastNotification >= DateUtils.DAY_IN_MILLIS) {
-                    oneDayPassedSinceLastNotification = true;
+                /*
+                 * In cases where our JSON contained an error code, getForecastBatchFromStream
+                 * would have returned null. We need to check for those cases here to prevent any
+                 * NullPointerExceptions being thrown. We also have no reason to insert fresh data
+                 * if there isn't any to insert.
+                 */
+                if (forecast == null || forecast.size() == 0) {
+                    return RESULT_FAILED;
                 }
 
+                /* Last chance to cancel, we never stop halfway through storing a forecast */
+                cancellationSignal.throwIfCanceled();
+
                 /*
-                 * We only want to show the notification if the user wants them shown and we
-                 * haven't shown a notification in the past day.
+                 * Servers don't always send validators, and a new response doesn't always
+                 * mean a new forecast. If the content is the same as what we stored last
+                 * time, the database, the notification and the wearable are all up to date.
                  */
-                if (notificationsEnabled && oneDayPassedSinceLastNotification) {
-                    NotificationUtils.notifyUserOfNewWeather(context);
+                timing.start(SyncTimingLog.PHASE_PARSE);
+                String contentHash = forecast.getContentHash();
+                timing.stop(SyncTimingLog.PHASE_PARSE);
+
+                boolean forecastChanged =
+                        syncState == null || !contentHash.equals(syncState.contentHash);
+                if (forecastChanged) {
+                    storeForecast(context, forecast, timing);
+                } else {
+                    Log.d(TAG, "Forecast content unchanged, skipping sync");
                 }
 
-            /* If the code reaches this point, we have successfully performed our sync */
+                /*
+                 * Only now that the forecast is stored do we remember its validators, so a
+                 * failed sync never gets answered with 304 on the next attempt.
+                 */
+                timing.start(SyncTimingLog.PHASE_DATABASE);
+                new SyncState(location,
+                        System.currentTimeMillis(),
+                        weatherRequestUrl.toString(),
+                        NetworkUtils.getResponseETag(urlConnection),
+                        NetworkUtils.getResponseLastModified(urlConnection),
+                        contentHash)
+                        .save(context);
+                timing.stop(SyncTimingLog.PHASE_DATABASE);
 
+                /* If the code reaches this point, we have successfully performed our sync */
+                return forecastChanged ? RESULT_UPDATED : RESULT_UNCHANGED;
+            } finally {
+                cancellationSignal.setOnCancelListener(null);
+                urlConnection.disconnect();
             }
 
         } catch (Exception e) {
+            if (cancellationSignal.isCanceled()) {
+                Log.d(TAG, "Sync cancelled");
+                return RESULT_CANCELLED;
+            }
+
             /* Server probably invalid */
             e.printStackTrace();
+            return RESULT_FAILED;
+        }
+    }
+
+    /**
+     * Stores a new forecast, sends today's weather to the wearable and, if it's time to, lets
+     * the user know the weather has been refreshed.
+     *
+     * @param context  Used to access the ContentResolver and utility methods
+     * @param forecast The forecast to store, which holds at least one day
+     * @param timing   Records how long storing, notifying and the wear push take
+     */
+    private static void storeForecast(Context context, ForecastBatch forecast,
+                                      SyncTimingLog.Run timing) {
+        /* Get a handle on the ContentResolver to store the new data */
+        ContentResolver sunshineContentResolver = context.getContentResolver();
+
+        /*
+         * Replace the stored forecast with the new one. The provider does it in one transaction,
+         * only touching the days that changed, so the forecast list is never seen empty and only
+         * requeries once. The batch is handed over as is, so its primitive arrays go straight to
+         * the database.
+         */
+        timing.start(SyncTimingLog.PHASE_DATABASE);
+        sunshineContentResolver.call(
+                WeatherContract.WeatherEntry.CONTENT_URI,
+                WeatherContract.METHOD_REPLACE_FORECAST,
+                null,
+                forecast.toBundle());
+        timing.stop(SyncTimingLog.PHASE_DATABASE);
+
+        /*
+         * The first day of the forecast is always today. Its temperatures and condition are what
+         * the watch face displays.
+         */
+        timing.start(SyncTimingLog.PHASE_WEAR);
+        SunshineSyncUtils.sendDataToWearDevice(context,
+                forecast.dates[0], forecast.maxTemps[0], forecast.minTemps[0]);
+        SunshineSyncUtils.sendWeatherAsset(context, forecast.weatherIds[0]);
+        timing.stop(SyncTimingLog.PHASE_WEAR);
+
+        /*
+         * Finally, after we insert data into the ContentProvider, determine whether or not we
+         * should notify the user that the weather has been refreshed.
+         */
+        SunshinePreferences.Snapshot settings = SunshinePreferences.getSnapshot(context);
+        boolean notificationsEnabled = settings.areNotificationsEnabled;
+
+        /*
+         * If the last notification was shown was more than 1 day ago, we want to send another
+         * notification to the user that the weather has been updated. Remember, it's important
+         * that you shouldn't spam your users with notifications.
+         */
+        long timeSinceLastNotification =
+                System.currentTimeMillis() - settings.lastNotificationTimeInMillis;
+
+        boolean oneDayPassedSinceLastNotification = false;
+
+        if (timeSinceLastNotification >= DateUtils.DAY_IN_MILLIS) {
+            oneDayPassedSinceLastNotification = true;
+        }
+
+        /*
+         * We only want to show the notification if the user wants them shown and we haven't
+         * shown a notification in the past day.
+         */
+        if (notificationsEnabled && oneDayPassedSinceLastNotification) {
+            timing.start(SyncTimingLog.PHASE_NOTIFY);
+            NotificationUtils.notifyUserOfNewWeather(context);
+            timing.stop(SyncTimingLog.PHASE_NOTIFY);
+        }
+    }
+
+    /**
+     * Counts the bytes read from a stream and the time spent waiting for them.
+     */
+    private static final class TimedInputStream extends FilterInputStream {
+
+        long mBytes;
+        long mReadNanos;
+
+        TimedInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            long start = SystemClock.elapsedRealtimeNanos();
+            int b = super.read();
+            mReadNanos += SystemClock.elapsedRealtimeNanos() - start;
+            if (b != -1) {
+                mBytes++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(@NonNull byte[] buffer, int offset, int count) throws IOException {
+            long start = SystemClock.elapsedRealtimeNanos();
+            int read = super.read(buffer, offset, count);
+            mReadNanos += SystemClock.elapsedRealtimeNanos() - start;
+            if (read > 0) {
+                mBytes += read;
+            }
+            return read;
         }
     }
 }
\ No newline at end of file
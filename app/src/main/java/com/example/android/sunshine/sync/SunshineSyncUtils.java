@@ -15,19 +15,18 @@
  */
 package com.example.android.sunshine.sync;
 
-import android.annotation.TargetApi;
 import android.content.Context;
 import android.content.Intent;
 import android.database.Cursor;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.net.Uri;
-import android.os.Build;
 import android.support.annotation.NonNull;
 import android.util.Log;
 
+import com.example.android.sunshine.data.SyncState;
 import com.example.android.sunshine.data.WeatherContract;
 import com.example.android.sunshine.utilities.SunshineWeatherUtils;
+import com.example.android.sunshine.utilities.WeatherArtCache;
 import com.firebase.jobdispatcher.Constraint;
 import com.firebase.jobdispatcher.Driver;
 import com.firebase.jobdispatcher.FirebaseJobDispatcher;
@@ -43,9 +42,6 @@ import com.google.android.gms.wearable.PutDataMapRequest;
 import com.google.android.gms.wearable.PutDataRequest;
 import com.google.android.gms.wearable.Wearable;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.util.Date;
 import java.util.concurrent.TimeUnit;
 
 public class SunshineSyncUtils {
@@ -134,12 +130,6 @@ public class SunshineSyncUtils {
 
         sInitialized = true;
 
-        /*
-         * This method call triggers Sunshine to create its task to synchronize weather data
-         * periodically.
-         */
-        scheduleFirebaseJobDispatcherSync(context);
-
         /*
          * We need to check to see if our ContentProvider has data to display in our forecast
          * list. However, performing a query on the main thread is a bad idea as this may
@@ -150,6 +140,14 @@ public class SunshineSyncUtils {
             @Override
             public void run() {
 
+                /*
+                 * This method call triggers Sunshine to create its task to synchronize weather
+                 * data periodically. Setting up FirebaseJobDispatcher binds to Google Play
+                 * services, which MainActivity shouldn't wait for before drawing its first frame,
+                 * so it is done here rather than on the main thread.
+                 */
+                scheduleFirebaseJobDispatcherSync(context);
+
                 /* URI for every row of weather data in our weather table*/
                 Uri forecastQueryUri = WeatherContract.WeatherEntry.CONTENT_URI;
 
@@ -185,6 +183,12 @@ public class SunshineSyncUtils {
                  * be able to display data to the user.
                  */
                 if (null == cursor || cursor.getCount() == 0) {
+                    /*
+                     * Our data is gone, so a 304 Not Modified answer or a matching content hash
+                     * would leave us with nothing to display. Forget the sync state to force a
+                     * full download that gets stored.
+                     */
+                    SyncState.clear(context);
                     startImmediateSync(context);
                 }
 
@@ -213,9 +217,16 @@ public class SunshineSyncUtils {
     private static final String MAX_KEY = "max";
     private static final String MIN_KEY = "min";
     private static final String IMAGE_KEY = "image";
+    private static final String DATE_KEY = "date";
 
-    public static void sendDataToWearDevice(Context context, double high, double low) {
+    /**
+     * Sends the temperatures of a day to the watch. The date lets a watch paired with several
+     * phones pick the newest weather, and only changes once a day, so the same temperatures
+     * still make the same data item.
+     */
+    public static void sendDataToWearDevice(Context context, long date, double high, double low) {
         PutDataMapRequest putDataMapRequest = PutDataMapRequest.create(SUNSHINE_PATH);
+        putDataMapRequest.getDataMap().putLong(DATE_KEY, date);
         putDataMapRequest.getDataMap().putString(MAX_KEY, SunshineWeatherUtils.formatTemperature(context, high));
         putDataMapRequest.getDataMap().putString(MIN_KEY, SunshineWeatherUtils.formatTemperature(context, low));
 
@@ -234,59 +245,49 @@ public class SunshineSyncUtils {
     }
 
     /**
-     * Sends the asset that was created from the photo we took by adding it to the Data Item store.
+     * Sends the art of a condition to the watch as an asset in the Data Item store, unless the
+     * watch already has that art. The art is only compressed once per process, see
+     * {@link WearArtAssets}.
      */
     public static void sendWeatherAsset(Context context, int weatherId) {
 
         int weatherImageId = SunshineWeatherUtils
                 .getSmallArtResourceIdForWeatherCondition(weatherId);
 
-        Bitmap imageBitmap = getBitmap(context, weatherImageId);
+        final Context appContext = context.getApplicationContext();
+        final WearArtAssets.EncodedArt art =
+                WearArtAssets.getEncodedArt(appContext, weatherImageId);
+        if (art == null) {
+            return;
+        }
 
+        /* The same data item again would change nothing, but still wake the watch up */
+        if (WearArtAssets.wasSent(appContext, art)) {
+            Log.d(SUNSHINE_SYNC_TAG, "The watch already has the art " + art.digest);
+            return;
+        }
+
+        /* Nothing but the art goes in, so the same art always makes the same data item */
         PutDataMapRequest dataMap = PutDataMapRequest.create(IMAGE_PATH);
-        dataMap.getDataMap().putAsset(IMAGE_KEY, toAsset(imageBitmap));
-        dataMap.getDataMap().putLong("time", new Date().getTime());
+        dataMap.getDataMap().putAsset(IMAGE_KEY, Asset.createFromBytes(art.png));
         PutDataRequest request = dataMap.asPutDataRequest();
         request.setUrgent();
 
-        Task<DataItem> dataItemTask = Wearable.getDataClient(context).putDataItem(request);
+        Task<DataItem> dataItemTask = Wearable.getDataClient(appContext).putDataItem(request);
 
         dataItemTask.addOnSuccessListener(new OnSuccessListener<DataItem>() {
             @Override
             public void onSuccess(DataItem dataItem) {
+                WearArtAssets.setSent(appContext, art);
                 Log.d(SUNSHINE_SYNC_TAG, "Sending image wear was successful: " + dataItem);
             }
         });
     }
 
     /**
-     * Builds an {@link com.google.android.gms.wearable.Asset} from a bitmap. The image that we get
-     * back from the camera in "data" is a thumbnail size. Typically, your image should not exceed
-     * 320x320 and if you want to have zoom and parallax effect in your app, limit the size of your
-     * image to 640x400. Resize your image before transferring to your wearable device.
+     * @return The art scaled down for the watch, shared with everyone else drawing it at that size
      */
-    private static Asset toAsset(Bitmap bitmap) {
-        ByteArrayOutputStream byteStream = null;
-        try {
-            byteStream = new ByteArrayOutputStream();
-            bitmap.compress(Bitmap.CompressFormat.PNG, 100, byteStream);
-            return Asset.createFromBytes(byteStream.toByteArray());
-        } finally {
-            if (null != byteStream) {
-                try {
-                    byteStream.close();
-                } catch (IOException e) {
-                    // ignore
-                }
-            }
-        }
-    }
-
-    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
     public static Bitmap getBitmap(Context context, int resourceId) {
-        Bitmap bitmap = BitmapFactory.decodeResource(context.getResources(), resourceId);
-
-        return Bitmap.createScaledBitmap(bitmap,
-                50, 50, true /* filter */);
+        return WeatherArtCache.getInstance(context).getBitmap(resourceId, 50, 50);
     }
 }
\ No newline at end of file
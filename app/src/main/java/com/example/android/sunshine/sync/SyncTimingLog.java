@@ -0,0 +1,293 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.sync;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.support.annotation.VisibleForTesting;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Keeps the timings of the last {@link #CAPACITY} sync runs, phase by phase, in a ring buffer
+ * backed by a memory-mapped file. Runs survive the process being killed, so the history can be
+ * read long after the syncs happened:
+ * <p>
+ *   adb shell dumpsys activity provider com.example.android.sunshine/.data.WeatherProvider
+ * <p>
+ * prints every stored run followed by the 50th, 90th and 99th percentile of each phase.
+ */
+public final class SyncTimingLog {
+
+    private static final String TAG = SyncTimingLog.class.getSimpleName();
+
+    /* The phases of a sync, in the order they happen */
+    public static final int PHASE_URL = 0;
+    public static final int PHASE_CONNECT = 1;
+    public static final int PHASE_FIRST_BYTE = 2;
+    public static final int PHASE_DOWNLOAD = 3;
+    public static final int PHASE_PARSE = 4;
+    public static final int PHASE_DATABASE = 5;
+    public static final int PHASE_NOTIFY = 6;
+    public static final int PHASE_WEAR = 7;
+    private static final int PHASE_COUNT = 8;
+
+    private static final String[] PHASE_NAMES = {
+            "url", "connect", "first_byte", "download", "parse", "database", "notify", "wear"
+    };
+
+    /* Indexed by the SunshineSyncTask.RESULT_* constants */
+    private static final String[] OUTCOME_NAMES = {
+            "updated", "unchanged", "failed", "cancelled"
+    };
+
+    /* Number of runs kept. Older runs are overwritten. */
+    static final int CAPACITY = 256;
+
+    private static final String FILE_NAME = "sync_timings.bin";
+
+    /*
+     * File layout. A header made of a magic number, the index of the slot the next run goes to
+     * and the number of runs stored, followed by CAPACITY records of RECORD_SIZE bytes:
+     *
+     *   long start time (wall clock, ms) | int outcome | int unused | long bytes downloaded |
+     *   PHASE_COUNT longs, the time spent in each phase (ns)
+     */
+    private static final int MAGIC = 0x53594e31;
+    private static final int HEADER_SIZE = 12;
+    private static final int OFFSET_NEXT = 4;
+    private static final int OFFSET_COUNT = 8;
+    private static final int RECORD_SIZE = 8 + 4 + 4 + 8 + 8 * PHASE_COUNT;
+    private static final int FILE_SIZE = HEADER_SIZE + CAPACITY * RECORD_SIZE;
+
+    private static SyncTimingLog sInstance;
+
+    /* Null if the file couldn't be mapped, in which case nothing is recorded */
+    private final ByteBuffer mBuffer;
+
+    /**
+     * The timings of a single sync run, filled in by {@link SunshineSyncTask} as it goes.
+     */
+    public static final class Run {
+        final long mStartTime = System.currentTimeMillis();
+        final long[] mPhaseNanos = new long[PHASE_COUNT];
+        private final long[] mPhaseStart = new long[PHASE_COUNT];
+        long mBytes;
+        int mOutcome;
+
+        /**
+         * Starts timing a phase. A phase can be started and stopped several times, in which case
+         * its durations add up.
+         */
+        public void start(int phase) {
+            mPhaseStart[phase] = SystemClock.elapsedRealtimeNanos();
+        }
+
+        /**
+         * Stops timing a phase that was started with {@link #start(int)}.
+         */
+        public void stop(int phase) {
+            mPhaseNanos[phase] += SystemClock.elapsedRealtimeNanos() - mPhaseStart[phase];
+        }
+
+        /**
+         * Adds time measured elsewhere to a phase.
+         */
+        public void add(int phase, long nanos) {
+            mPhaseNanos[phase] += nanos;
+        }
+
+        public void setBytes(long bytes) {
+            mBytes = bytes;
+        }
+
+        public void setOutcome(int outcome) {
+            mOutcome = outcome;
+        }
+    }
+
+    private SyncTimingLog(ByteBuffer buffer) {
+        mBuffer = buffer;
+    }
+
+    /**
+     * @param context Used to find the app's files directory
+     * @return The log, mapping its file the first time it is used
+     */
+    public static synchronized SyncTimingLog getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = open(new File(context.getFilesDir(), FILE_NAME));
+        }
+        return sInstance;
+    }
+
+    /**
+     * @param file The file that holds the log, created if it doesn't exist
+     * @return A log backed by that file. Only tests use another file than that of getInstance.
+     */
+    @VisibleForTesting
+    static SyncTimingLog open(File file) {
+        return new SyncTimingLog(map(file));
+    }
+
+    private static ByteBuffer map(File file) {
+        RandomAccessFile randomAccessFile = null;
+        try {
+            randomAccessFile = new RandomAccessFile(file, "rw");
+            randomAccessFile.setLength(FILE_SIZE);
+
+            /* The mapping stays valid after the file is closed */
+            ByteBuffer buffer = randomAccessFile.getChannel()
+                    .map(FileChannel.MapMode.READ_WRITE, 0, FILE_SIZE);
+
+            checkHeader(buffer);
+            return buffer;
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to map " + file, e);
+            return null;
+        } finally {
+            if (randomAccessFile != null) {
+                try {
+                    randomAccessFile.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    /*
+     * Empties the log when the file is mapped, if it is new or its header is out of range. The
+     * header of a file damaged on disk could otherwise have record and dump go past the buffer.
+     */
+    private static void checkHeader(ByteBuffer buffer) {
+        int next = buffer.getInt(OFFSET_NEXT);
+        int count = buffer.getInt(OFFSET_COUNT);
+        boolean newFile = buffer.getInt(0) != MAGIC;
+        if (newFile || next < 0 || next >= CAPACITY || count < 0 || count > CAPACITY) {
+            if (!newFile) {
+                Log.w(TAG, "Resetting damaged sync timings, next=" + next + " count=" + count);
+            }
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(OFFSET_NEXT, 0);
+            buffer.putInt(OFFSET_COUNT, 0);
+        }
+    }
+
+    /**
+     * Stores a finished run, overwriting the oldest one if the log is full.
+     */
+    public synchronized void record(Run run) {
+        if (mBuffer == null) {
+            return;
+        }
+
+        int next = mBuffer.getInt(OFFSET_NEXT);
+        int count = mBuffer.getInt(OFFSET_COUNT);
+
+        int offset = HEADER_SIZE + next * RECORD_SIZE;
+        mBuffer.putLong(offset, run.mStartTime);
+        mBuffer.putInt(offset + 8, run.mOutcome);
+        mBuffer.putLong(offset + 16, run.mBytes);
+        for (int phase = 0; phase < PHASE_COUNT; phase++) {
+            mBuffer.putLong(offset + 24 + phase * 8, run.mPhaseNanos[phase]);
+        }
+
+        mBuffer.putInt(OFFSET_NEXT, (next + 1) % CAPACITY);
+        mBuffer.putInt(OFFSET_COUNT, Math.min(count + 1, CAPACITY));
+    }
+
+    /**
+     * Prints every stored run, oldest first, then percentile summaries of each phase and of the
+     * total time. Times are printed in milliseconds.
+     */
+    public synchronized void dump(PrintWriter writer) {
+        if (mBuffer == null) {
+            writer.println("Sync timings unavailable");
+            return;
+        }
+
+        int next = mBuffer.getInt(OFFSET_NEXT);
+        int count = mBuffer.getInt(OFFSET_COUNT);
+        int oldest = (next - count + CAPACITY) % CAPACITY;
+
+        /* One row per phase plus one for the total, one column per run */
+        long[][] nanos = new long[PHASE_COUNT + 1][count];
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US);
+
+        writer.println("Sync runs (" + count + " of at most " + CAPACITY + "):");
+        for (int i = 0; i < count; i++) {
+            int offset = HEADER_SIZE + ((oldest + i) % CAPACITY) * RECORD_SIZE;
+
+            int outcome = mBuffer.getInt(offset + 8);
+            StringBuilder line = new StringBuilder("  ")
+                    .append(dateFormat.format(new Date(mBuffer.getLong(offset))))
+                    .append(' ')
+                    .append(outcome >= 0 && outcome < OUTCOME_NAMES.length
+                            ? OUTCOME_NAMES[outcome] : Integer.toString(outcome))
+                    .append(" bytes=").append(mBuffer.getLong(offset + 16));
+
+            long total = 0;
+            for (int phase = 0; phase < PHASE_COUNT; phase++) {
+                long phaseNanos = mBuffer.getLong(offset + 24 + phase * 8);
+                nanos[phase][i] = phaseNanos;
+                total += phaseNanos;
+                line.append(' ').append(PHASE_NAMES[phase]).append('=')
+                        .append(toMillis(phaseNanos));
+            }
+            nanos[PHASE_COUNT][i] = total;
+            line.append(" total=").append(toMillis(total));
+
+            writer.println(line);
+        }
+
+        if (count == 0) {
+            return;
+        }
+
+        writer.println("Percentiles (ms):         p50       p90       p99");
+        for (int phase = 0; phase <= PHASE_COUNT; phase++) {
+            long[] values = nanos[phase];
+            Arrays.sort(values);
+            writer.println(String.format(Locale.US, "  %-20s %9s %9s %9s",
+                    phase < PHASE_COUNT ? PHASE_NAMES[phase] : "total",
+                    toMillis(percentile(values, 50)),
+                    toMillis(percentile(values, 90)),
+                    toMillis(percentile(values, 99))));
+        }
+    }
+
+    /* Nearest-rank percentile of sorted values */
+    @VisibleForTesting
+    static long percentile(long[] sortedValues, int percentile) {
+        int rank = (int) Math.ceil(percentile / 100.0 * sortedValues.length);
+        return sortedValues[Math.max(rank, 1) - 1];
+    }
+
+    private static String toMillis(long nanos) {
+        return String.format(Locale.US, "%.1f", nanos / 1000000.0);
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.sync;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.graphics.Bitmap;
+import android.support.annotation.VisibleForTesting;
+import android.util.SparseArray;
+
+import java.io.ByteArrayOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * The weather art sent to the watch, compressed to PNG once per piece of art and identified by
+ * the digest of its bytes.
+ * <p>
+ * The digest of the art the watch last received is stored, so that a sync whose condition shows
+ * the same art doesn't send it again. Several conditions share a piece of art, and the digest
+ * also tells apart art that actually changed from art that only has another resource id.
+ * <p>
+ * The digest is kept in its own preferences file, since every change to the default one makes
+ * SunshinePreferences read all the settings again.
+ */
+final class WearArtAssets {
+
+    private static final String PREFERENCES_NAME = "wear_art_assets";
+    private static final String PREF_SENT_DIGEST = "sent_digest";
+
+    private static final String DIGEST_ALGORITHM = "SHA-1";
+
+    /* Encoded art by resource id. Guarded by the class. */
+    private static final SparseArray<EncodedArt> sEncodedArt = new SparseArray<>();
+
+    /**
+     * A piece of art as the watch receives it.
+     */
+    static final class EncodedArt {
+
+        /* The art compressed to PNG. Shared, so it must not be modified. */
+        final byte[] png;
+
+        /* SHA-1 of png, as a hexadecimal String */
+        final String digest;
+
+        EncodedArt(byte[] png, String digest) {
+            this.png = png;
+            this.digest = digest;
+        }
+    }
+
+    private WearArtAssets() {
+    }
+
+    /**
+     * Returns a piece of art scaled and compressed for the watch, compressing it first if that
+     * wasn't done yet in this process.
+     *
+     * @param context       Used to draw the art
+     * @param artResourceId Drawable resource of the art, such as R.drawable.ic_clear
+     * @return The encoded art, or null if the art can't be drawn
+     */
+    static synchronized EncodedArt getEncodedArt(Context context, int artResourceId) {
+        EncodedArt art = sEncodedArt.get(artResourceId);
+        if (art == null) {
+            Bitmap bitmap = SunshineSyncUtils.getBitmap(context, artResourceId);
+            if (bitmap == null) {
+                return null;
+            }
+
+            /* PNG is lossless, the quality is ignored */
+            ByteArrayOutputStream png = new ByteArrayOutputStream();
+            bitmap.compress(Bitmap.CompressFormat.PNG, 100, png);
+            byte[] bytes = png.toByteArray();
+
+            art = new EncodedArt(bytes, digestOf(bytes));
+            sEncodedArt.put(artResourceId, art);
+        }
+        return art;
+    }
+
+    /**
+     * @param context Used to read the stored digest
+     * @param art     Art about to be sent
+     * @return Whether the watch was already sent this art, so there's no need to send it again
+     */
+    static boolean wasSent(Context context, EncodedArt art) {
+        return art.digest.equals(getPreferences(context).getString(PREF_SENT_DIGEST, null));
+    }
+
+    /**
+     * Remembers that the watch received a piece of art, once the Data Layer accepted it.
+     *
+     * @param context Used to store the digest
+     * @param art     Art that was sent
+     */
+    static void setSent(Context context, EncodedArt art) {
+        getPreferences(context).edit().putString(PREF_SENT_DIGEST, art.digest).apply();
+    }
+
+    /**
+     * Forgets which art the watch received, so that the next sync sends it again.
+     */
+    @VisibleForTesting
+    static void clearSent(Context context) {
+        getPreferences(context).edit().remove(PREF_SENT_DIGEST).apply();
+    }
+
+    private static SharedPreferences getPreferences(Context context) {
+        return context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+    }
+
+    private static String digestOf(byte[] bytes) {
+        byte[] digest;
+        try {
+            digest = MessageDigest.getInstance(DIGEST_ALGORITHM).digest(bytes);
+        } catch (NoSuchAlgorithmException e) {
+            /* Every Android device is required to provide SHA-1 */
+            throw new IllegalStateException(e);
+        }
+
+        StringBuilder hex = new StringBuilder(digest.length * 2);
+        for (byte b : digest) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16));
+            hex.append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.utilities;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.support.annotation.VisibleForTesting;
+
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers the labels {@link SunshineDateUtils#getFriendlyDateString} built, such as "Today,
+ * June 8" or "Wednesday", along with the TimeZone and day name format used to build them.
+ * <p>
+ * A label only holds for the day it was built on, in the locale and time zone it was built
+ * with, so the cache empties itself when the day changes, when the default Locale is no longer
+ * the one it was filled in, and when the system broadcasts a change of locale or time zone.
+ * <p>
+ * The cache is shared by the sync and the UI. Every method has to be called while holding the
+ * cache's lock, which also guards the SimpleDateFormat it hands out.
+ */
+final class FriendlyDateCache {
+
+    /*
+     * Number of days remembered, a power of two. A date goes to the slot of its day number
+     * modulo SLOTS, so the forecast's two weeks never push each other out.
+     */
+    private static final int SLOTS = 32;
+
+    private static FriendlyDateCache sInstance;
+
+    /* The date of every label, with the low bit set for the full version. 1 marks no label. */
+    private final long[] mKeys = new long[SLOTS * 2];
+    private final String[] mLabels = new String[SLOTS * 2];
+
+    /* What the labels were built for */
+    private long mDaysFromEpochToToday = -1;
+    private Locale mLocale;
+
+    /* Created on demand, and dropped when the time zone changes */
+    private TimeZone mTimeZone;
+    private SimpleDateFormat mDayNameFormat;
+
+    private FriendlyDateCache() {
+        Arrays.fill(mKeys, 1);
+    }
+
+    /**
+     * @param context Used to register for changes of locale and time zone
+     * @return The cache of this process
+     */
+    static FriendlyDateCache getInstance(Context context) {
+        synchronized (FriendlyDateCache.class) {
+            if (sInstance == null) {
+                final FriendlyDateCache cache = new FriendlyDateCache();
+
+                IntentFilter filter = new IntentFilter(Intent.ACTION_LOCALE_CHANGED);
+                filter.addAction(Intent.ACTION_TIMEZONE_CHANGED);
+                context.getApplicationContext().registerReceiver(new BroadcastReceiver() {
+                    @Override
+                    public void onReceive(Context context, Intent intent) {
+                        synchronized (cache) {
+                            cache.invalidate();
+                        }
+                    }
+                }, filter);
+
+                sInstance = cache;
+            }
+            return sInstance;
+        }
+    }
+
+    /**
+     * Returns the label built for a date, if it still holds.
+     *
+     * @param normalizedUtcMidnight The date, as stored in the database
+     * @param showFullDate          Whether the label is the full version of the date
+     * @return The label, or null if it has to be built
+     */
+    String get(long normalizedUtcMidnight, boolean showFullDate) {
+        long daysFromEpochToToday =
+                TimeUnit.MILLISECONDS.toDays(System.currentTimeMillis());
+        Locale locale = Locale.getDefault();
+        if (daysFromEpochToToday != mDaysFromEpochToToday || !locale.equals(mLocale)) {
+            invalidate();
+            mDaysFromEpochToToday = daysFromEpochToToday;
+            mLocale = locale;
+            return null;
+        }
+
+        int slot = slotOf(normalizedUtcMidnight, showFullDate);
+        if (mKeys[slot] != keyOf(normalizedUtcMidnight, showFullDate)) {
+            return null;
+        }
+        return mLabels[slot];
+    }
+
+    /**
+     * Remembers the label built for a date, after {@link #get} returned null for it.
+     */
+    void put(long normalizedUtcMidnight, boolean showFullDate, String label) {
+        int slot = slotOf(normalizedUtcMidnight, showFullDate);
+        mKeys[slot] = keyOf(normalizedUtcMidnight, showFullDate);
+        mLabels[slot] = label;
+    }
+
+    /**
+     * @return The number of days from the epoch to today that the labels were built for
+     */
+    long getDaysFromEpochToToday() {
+        return mDaysFromEpochToToday;
+    }
+
+    /**
+     * @return The default TimeZone, without cloning it on every call like TimeZone#getDefault
+     */
+    TimeZone getTimeZone() {
+        if (mTimeZone == null) {
+            mTimeZone = TimeZone.getDefault();
+        }
+        return mTimeZone;
+    }
+
+    /**
+     * @return A format for the name of the day of the week, such as "Wednesday"
+     */
+    SimpleDateFormat getDayNameFormat() {
+        if (mDayNameFormat == null) {
+            mDayNameFormat = new SimpleDateFormat("EEEE");
+        }
+        return mDayNameFormat;
+    }
+
+    /**
+     * Forgets every label, as well as the TimeZone and the format built for the old settings.
+     */
+    @VisibleForTesting
+    void invalidate() {
+        Arrays.fill(mKeys, 1);
+        Arrays.fill(mLabels, null);
+        mDaysFromEpochToToday = -1;
+        mLocale = null;
+        mTimeZone = null;
+        mDayNameFormat = null;
+    }
+
+    /* Normalized dates are whole days, so their low bit is free to tell both versions apart */
+    private static long keyOf(long normalizedUtcMidnight, boolean showFullDate) {
+        return showFullDate ? normalizedUtcMidnight | 1 : normalizedUtcMidnight;
+    }
+
+    private static int slotOf(long normalizedUtcMidnight, boolean showFullDate) {
+        int day = (int) TimeUnit.MILLISECONDS.toDays(normalizedUtcMidnight) & (SLOTS - 1);
+        return day * 2 + (showFullDate ? 1 : 0);
+    }
+}
@@ -20,6 +20,7 @@ import android.net.Uri;
 import android.util.Log;
 
 import com.example.android.sunshine.data.SunshinePreferences;
+import com.example.android.sunshine.data.SyncState;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -83,6 +84,12 @@ public final class NetworkUtils {
     /* The days parameter allows us to designate how many days of weather data we want */
     private static final String DAYS_PARAM = "cnt";
 
+    /* HTTP headers used to make conditional requests */
+    private static final String HEADER_ETAG = "ETag";
+    private static final String HEADER_LAST_MODIFIED = "Last-Modified";
+    private static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+    private static final String HEADER_IF_MODIFIED_SINCE = "If-Modified-Since";
+
     /**
      * Retrieves the proper URL to query for the weather data. The reason for both this method as
      * well as {@link #buildUrlWithLocationQuery(String)} is two fold.
@@ -98,14 +105,11 @@ public final class NetworkUtils {
      * @return URL to query weather service
      */
     public static URL getUrl(Context context) {
-        if (SunshinePreferences.isLocationLatLonAvailable(context)) {
-            double[] preferredCoordinates = SunshinePreferences.getLocationCoordinates(context);
-            double latitude = preferredCoordinates[0];
-            double longitude = preferredCoordinates[1];
-            return buildUrlWithLatitudeLongitude(latitude, longitude);
+        SunshinePreferences.Snapshot settings = SunshinePreferences.getSnapshot(context);
+        if (settings.isLocationLatLonAvailable) {
+            return buildUrlWithLatitudeLongitude(settings.latitude, settings.longitude);
         } else {
-            String locationQuery = SunshinePreferences.getPreferredWeatherLocation(context);
-            return buildUrlWithLocationQuery(locationQuery);
+            return buildUrlWithLocationQuery(settings.location);
         }
     }
 
@@ -171,20 +175,84 @@ public final class NetworkUtils {
     public static String getResponseFromHttpUrl(URL url) throws IOException {
         HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
         try {
-            InputStream in = urlConnection.getInputStream();
+            return readResponse(urlConnection);
+        } finally {
+            urlConnection.disconnect();
+        }
+    }
 
-            Scanner scanner = new Scanner(in);
-            scanner.useDelimiter("\\A");
+    /**
+     * Opens a connection to the given URL as a conditional GET. If the last sync stored
+     * validators (ETag / Last-Modified) for this exact URL, they are sent along so the server can
+     * answer with {@link HttpURLConnection#HTTP_NOT_MODIFIED} when the forecast hasn't changed.
+     * <p>
+     * The caller is responsible for checking the response code and for calling
+     * {@link HttpURLConnection#disconnect()} when done.
+     *
+     * @param url       The URL to fetch the HTTP response from.
+     * @param syncState State of the last successful sync of this location, may be null
+     * @return An opened connection for the request
+     * @throws IOException Related to network access
+     */
+    public static HttpURLConnection openConditionalConnection(URL url, SyncState syncState)
+            throws IOException {
+        HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
+
+        /*
+         * We store the parsed forecast in our own database, so we don't want the platform's HTTP
+         * cache to hand us a stored body for a 304. We handle the validators ourselves.
+         */
+        urlConnection.setUseCaches(false);
 
-            boolean hasInput = scanner.hasNext();
-            String response = null;
-            if (hasInput) {
-                response = scanner.next();
+        /* Validators are only valid for the exact request URL they were received for */
+        if (syncState != null && url.toString().equals(syncState.url)) {
+            if (syncState.eTag != null) {
+                urlConnection.setRequestProperty(HEADER_IF_NONE_MATCH, syncState.eTag);
             }
-            scanner.close();
-            return response;
-        } finally {
-            urlConnection.disconnect();
+            if (syncState.lastModified != null) {
+                urlConnection.setRequestProperty(HEADER_IF_MODIFIED_SINCE,
+                        syncState.lastModified);
+            }
+        }
+
+        return urlConnection;
+    }
+
+    /**
+     * @param urlConnection A connection that received a response
+     * @return The ETag response header, or null if the server didn't send one
+     */
+    public static String getResponseETag(HttpURLConnection urlConnection) {
+        return urlConnection.getHeaderField(HEADER_ETAG);
+    }
+
+    /**
+     * @param urlConnection A connection that received a response
+     * @return The Last-Modified response header, or null if the server didn't send one
+     */
+    public static String getResponseLastModified(HttpURLConnection urlConnection) {
+        return urlConnection.getHeaderField(HEADER_LAST_MODIFIED);
+    }
+
+    /**
+     * Reads the entire body of an already opened connection.
+     *
+     * @param urlConnection The connection to read from
+     * @return The contents of the HTTP response, null if no response
+     * @throws IOException Related to network and stream reading
+     */
+    public static String readResponse(HttpURLConnection urlConnection) throws IOException {
+        InputStream in = urlConnection.getInputStream();
+
+        Scanner scanner = new Scanner(in);
+        scanner.useDelimiter("\\A");
+
+        boolean hasInput = scanner.hasNext();
+        String response = null;
+        if (hasInput) {
+            response = scanner.next();
         }
+        scanner.close();
+        return response;
     }
 }
\ No newline at end of file
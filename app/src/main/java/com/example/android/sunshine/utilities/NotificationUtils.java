@@ -5,9 +5,7 @@ import android.app.PendingIntent;
 import android.content.Context;
 import android.content.Intent;
 import android.content.res.Resources;
-import android.database.Cursor;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.net.Uri;
 import android.support.v4.app.NotificationCompat;
 import android.support.v4.app.TaskStackBuilder;
@@ -15,30 +13,13 @@ import android.support.v4.content.ContextCompat;
 
 import com.example.android.sunshine.DetailActivity;
 import com.example.android.sunshine.R;
+import com.example.android.sunshine.data.ForecastBatch;
+import com.example.android.sunshine.data.ForecastRepository;
 import com.example.android.sunshine.data.SunshinePreferences;
 import com.example.android.sunshine.data.WeatherContract;
 
 public class NotificationUtils {
 
-    /*
-     * The columns of data that we are interested in displaying within our notification to let
-     * the user know there is new weather data available.
-     */
-    public static final String[] WEATHER_NOTIFICATION_PROJECTION = {
-            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
-            WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
-            WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
-    };
-
-    /*
-     * We store the indices of the values in the array of Strings above to more quickly be able
-     * to access the data from our query. If the order of the Strings above changes, these
-     * indices must be adjusted to match the order of the Strings.
-     */
-    public static final int INDEX_WEATHER_ID = 0;
-    public static final int INDEX_MAX_TEMP = 1;
-    public static final int INDEX_MIN_TEMP = 2;
-
     /*
      * This notification ID can be used to access our notification after we've displayed it. This
      * can be handy when we need to cancel the notification, or perhaps update it. This number is
@@ -58,34 +39,32 @@ public class NotificationUtils {
                 .buildWeatherUriWithDate(SunshineDateUtils.normalizeDate(System.currentTimeMillis()));
 
         /*
-         * The MAIN_FORECAST_PROJECTION array passed in as the second parameter is defined in our WeatherContract
-         * class and is used to limit the columns returned in our cursor.
+         * The sync that calls us has just handed its forecast to the repository, so finding
+         * today's weather is a memory read rather than a query.
          */
-        Cursor todayWeatherCursor = context.getContentResolver().query(
-                todaysWeatherUri,
-                WEATHER_NOTIFICATION_PROJECTION,
-                null,
-                null,
-                null);
+        ForecastBatch forecast = ForecastRepository.getInstance(context).getForecast();
+        int today = forecast.indexOfDate(
+                SunshineDateUtils.normalizeDate(System.currentTimeMillis()));
 
-        /*
-         * If todayWeatherCursor is empty, moveToFirst will return false. If our cursor is not
-         * empty, we want to show the notification.
-         */
-        if (todayWeatherCursor.moveToFirst()) {
+        /* If we have no weather for today, there is nothing to notify the user of */
+        if (today >= 0) {
 
             /* Weather ID as returned by API, used to identify the icon to be used */
-            int weatherId = todayWeatherCursor.getInt(INDEX_WEATHER_ID);
-            double high = todayWeatherCursor.getDouble(INDEX_MAX_TEMP);
-            double low = todayWeatherCursor.getDouble(INDEX_MIN_TEMP);
+            int weatherId = forecast.weatherIds[today];
+            double high = forecast.maxTemps[today];
+            double low = forecast.minTemps[today];
 
             Resources resources = context.getResources();
             int largeArtResourceId = SunshineWeatherUtils
                     .getLargeArtResourceIdForWeatherCondition(weatherId);
 
-            Bitmap largeIcon = BitmapFactory.decodeResource(
-                    resources,
-                    largeArtResourceId);
+            /* The art is a vector drawable, which only the cache can turn into a bitmap */
+            int iconWidth = resources.getDimensionPixelSize(
+                    android.R.dimen.notification_large_icon_width);
+            int iconHeight = resources.getDimensionPixelSize(
+                    android.R.dimen.notification_large_icon_height);
+            Bitmap largeIcon = WeatherArtCache.getInstance(context)
+                    .getBitmap(largeArtResourceId, iconWidth, iconHeight);
 
             String notificationTitle = context.getString(R.string.app_name);
 
@@ -136,9 +115,6 @@ public class NotificationUtils {
              */
             SunshinePreferences.saveLastNotificationTime(context, System.currentTimeMillis());
         }
-
-        /* Always close your cursor when you're done with it to avoid wasting resources. */
-        todayWeatherCursor.close();
     }
 
     /**
@@ -15,18 +15,17 @@
  */
 package com.example.android.sunshine.utilities;
 
-import android.content.ContentValues;
 import android.content.Context;
+import android.util.JsonReader;
+import android.util.MalformedJsonException;
 
-import com.example.android.sunshine.R;
+import com.example.android.sunshine.data.ForecastBatch;
 import com.example.android.sunshine.data.SunshinePreferences;
-import com.example.android.sunshine.data.WeatherContract;
-import com.example.android.sunshine.sync.SunshineSyncUtils;
-
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
 import java.net.HttpURLConnection;
 
 /**
@@ -62,50 +61,73 @@ public final class OpenWeatherJsonUtils {
 
     private static final String OWM_MESSAGE_CODE = "cod";
 
+    /*
+     * Flags used to check that every field we need for a day was present in the JSON. Since we
+     * no longer build a JSONObject for each day, missing keys won't throw on their own.
+     */
+    private static final int FIELD_PRESSURE = 1;
+    private static final int FIELD_HUMIDITY = 1 << 1;
+    private static final int FIELD_WIND_SPEED = 1 << 2;
+    private static final int FIELD_WIND_DIRECTION = 1 << 3;
+    private static final int FIELD_WEATHER_ID = 1 << 4;
+    private static final int FIELD_MAX = 1 << 5;
+    private static final int FIELD_MIN = 1 << 6;
+    private static final int ALL_FIELDS = (1 << 7) - 1;
+
+    /* We ask the server for 14 days, the batch grows if it sends more */
+    private static final int EXPECTED_DAYS = 14;
+
     /**
-     * This method parses JSON from a web response and returns an array of Strings
+     * This method parses JSON from a web response and returns a {@link ForecastBatch}
      * describing the weather over various days from the forecast.
      * <p/>
-     * Later on, we'll be parsing the JSON into structured data within the
-     * getFullWeatherDataFromJson function, leveraging the data we have stored in the JSON. For
-     * now, we just convert the JSON into human-readable strings.
+     * Prefer {@link #getForecastBatchFromStream(Context, InputStream)} when reading from the
+     * network, as it doesn't need the whole response in memory as a String.
      *
      * @param forecastJsonStr JSON response from server
-     * @return Array of Strings describing weather data
-     * @throws JSONException If JSON data cannot be properly parsed
+     * @return The days of the forecast, null if the server sent an error
+     * @throws IOException If JSON data cannot be properly parsed
      */
-    public static ContentValues[] getWeatherContentValuesFromJson(Context context, String forecastJsonStr)
-            throws JSONException {
-
-        JSONObject forecastJson = new JSONObject(forecastJsonStr);
-
-        /* Is there an error? */
-        if (forecastJson.has(OWM_MESSAGE_CODE)) {
-            int errorCode = forecastJson.getInt(OWM_MESSAGE_CODE);
-
-            switch (errorCode) {
-                case HttpURLConnection.HTTP_OK:
-                    break;
-                case HttpURLConnection.HTTP_NOT_FOUND:
-                    /* Location invalid */
-                    return null;
-                default:
-                    /* Server probably down */
-                    return null;
-            }
+    public static ForecastBatch getForecastBatchFromJson(Context context, String forecastJsonStr)
+            throws IOException {
+        JsonReader reader = new JsonReader(new StringReader(forecastJsonStr));
+        try {
+            return readForecast(context, reader);
+        } finally {
+            reader.close();
         }
+    }
 
-        JSONArray jsonWeatherArray = forecastJson.getJSONArray(OWM_LIST);
+    /**
+     * This method parses the forecast JSON as it is read from the given stream, typically the
+     * body of the HTTP response. The JSON is read token by token, so neither the raw response
+     * nor a JSONObject tree is ever held in memory; each day is appended to the batch as soon as
+     * it has been read.
+     *
+     * @param context     Used to store the location coordinates sent by the server
+     * @param inputStream Stream of the JSON response from server, closed when this returns
+     * @return The days of the forecast, null if the server sent an error
+     * @throws IOException If the stream cannot be read or the JSON cannot be properly parsed
+     */
+    public static ForecastBatch getForecastBatchFromStream(Context context,
+                                                           InputStream inputStream)
+            throws IOException {
+        JsonReader reader = new JsonReader(new InputStreamReader(inputStream, "UTF-8"));
+        try {
+            return readForecast(context, reader);
+        } finally {
+            reader.close();
+        }
+    }
 
-        JSONObject cityJson = forecastJson.getJSONObject(OWM_CITY);
+    private static ForecastBatch readForecast(Context context, JsonReader reader)
+            throws IOException {
 
-        JSONObject cityCoord = cityJson.getJSONObject(OWM_COORD);
-        double cityLatitude = cityCoord.getDouble(OWM_LATITUDE);
-        double cityLongitude = cityCoord.getDouble(OWM_LONGITUDE);
+        int errorCode = HttpURLConnection.HTTP_OK;
 
-        SunshinePreferences.setLocationDetails(context, cityLatitude, cityLongitude);
+        double[] cityCoordinates = null;
 
-        ContentValues[] weatherContentValues = new ContentValues[jsonWeatherArray.length()];
+        ForecastBatch forecast = new ForecastBatch(EXPECTED_DAYS);
 
         /*
          * OWM returns daily forecasts based upon the local time of the city that is being asked
@@ -113,80 +135,207 @@ public final class OpenWeatherJsonUtils {
          * Since this data is also sent in-order and the first day is always the current day, we're
          * going to take advantage of that to get a nice normalized UTC date for all of our weather.
          */
-//        long now = System.currentTimeMillis();
-//        long normalizedUtcStartDay = SunshineDateUtils.normalizeDate(now);
-
         long normalizedUtcStartDay = SunshineDateUtils.getNormalizedUtcDateForToday();
 
-        for (int i = 0; i < jsonWeatherArray.length(); i++) {
-
-            long dateTimeMillis;
-            double pressure;
-            int humidity;
-            double windSpeed;
-            double windDirection;
-
-            double high;
-            double low;
-
-            int weatherId;
-
-            /* Get the JSON object representing the day */
-            JSONObject dayForecast = jsonWeatherArray.getJSONObject(i);
-
-            /*
-             * We ignore all the datetime values embedded in the JSON and assume that
-             * the values are returned in-order by day (which is not guaranteed to be correct).
-             */
-            dateTimeMillis = normalizedUtcStartDay + SunshineDateUtils.DAY_IN_MILLIS * i;
-
-            pressure = dayForecast.getDouble(OWM_PRESSURE);
-            humidity = dayForecast.getInt(OWM_HUMIDITY);
-            windSpeed = dayForecast.getDouble(OWM_WINDSPEED);
-            windDirection = dayForecast.getDouble(OWM_WIND_DIRECTION);
-
-            /*
-             * Description is in a child array called "weather", which is 1 element long.
-             * That element also contains a weather code.
-             */
-            JSONObject weatherObject =
-                    dayForecast.getJSONArray(OWM_WEATHER).getJSONObject(0);
-
-            weatherId = weatherObject.getInt(OWM_WEATHER_ID);
-
-            /*
-             * Temperatures are sent by Open Weather Map in a child object called "temp".
-             *
-             * Editor's Note: Try not to name variables "temp" when working with temperature.
-             * It confuses everybody. Temp could easily mean any number of things, including
-             * temperature, temporary variable, temporary folder, temporary employee, or many
-             * others, and is just a bad variable name.
-             */
-            JSONObject temperatureObject = dayForecast.getJSONObject(OWM_TEMPERATURE);
-            high = temperatureObject.getDouble(OWM_MAX);
-            low = temperatureObject.getDouble(OWM_MIN);
-
-            ContentValues weatherValues = new ContentValues();
-            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DATE, dateTimeMillis);
-            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_HUMIDITY, humidity);
-            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_PRESSURE, pressure);
-            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WIND_SPEED, windSpeed);
-            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DEGREES, windDirection);
-            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP, high);
-            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP, low);
-            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID, weatherId);
-
-            weatherContentValues[i] = weatherValues;
-
-            // Sync with wearable device
-            String dateString = SunshineDateUtils.getFriendlyDateString(context, dateTimeMillis, false);
-            String todayText = context.getString(R.string.today);
-            if (dateString.contains(todayText)) {
-                SunshineSyncUtils.sendDataToWearDevice(context, high, low);
-                SunshineSyncUtils.sendWeatherAsset(context, weatherId);
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case OWM_MESSAGE_CODE:
+                    errorCode = reader.nextInt();
+                    break;
+
+                case OWM_CITY:
+                    cityCoordinates = readCityCoordinates(reader);
+                    break;
+
+                case OWM_LIST:
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        /*
+                         * We ignore all the datetime values embedded in the JSON and assume that
+                         * the values are returned in-order by day (which is not guaranteed to be
+                         * correct).
+                         */
+                        long dateTimeMillis = normalizedUtcStartDay
+                                + SunshineDateUtils.DAY_IN_MILLIS * forecast.size();
+                        readDayForecast(reader, dateTimeMillis, forecast);
+                    }
+                    reader.endArray();
+                    break;
+
+                default:
+                    reader.skipValue();
+                    break;
             }
         }
+        reader.endObject();
+
+        /*
+         * Is there an error? The message code may come after the list, so we can only check it
+         * once the whole response has been read.
+         */
+        switch (errorCode) {
+            case HttpURLConnection.HTTP_OK:
+                break;
+            case HttpURLConnection.HTTP_NOT_FOUND:
+                /* Location invalid */
+                return null;
+            default:
+                /* Server probably down */
+                return null;
+        }
+
+        if (cityCoordinates != null) {
+            SunshinePreferences.setLocationDetails(context, cityCoordinates[0], cityCoordinates[1]);
+        }
+
+        return forecast;
+    }
+
+    /**
+     * Reads the "city" object and returns its coordinates.
+     *
+     * @return latitude and longitude of the city, null if the server didn't send them
+     */
+    private static double[] readCityCoordinates(JsonReader reader) throws IOException {
+        double[] coordinates = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (OWM_COORD.equals(reader.nextName())) {
+                coordinates = new double[2];
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    switch (reader.nextName()) {
+                        case OWM_LATITUDE:
+                            coordinates[0] = reader.nextDouble();
+                            break;
+                        case OWM_LONGITUDE:
+                            coordinates[1] = reader.nextDouble();
+                            break;
+                        default:
+                            reader.skipValue();
+                            break;
+                    }
+                }
+                reader.endObject();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return coordinates;
+    }
+
+    /**
+     * Reads one element of the "list" array and appends it to the forecast.
+     *
+     * @param dateTimeMillis Normalized UTC date this day's forecast is stored under
+     * @param forecast       The batch to add the day to
+     */
+    private static void readDayForecast(JsonReader reader, long dateTimeMillis,
+                                        ForecastBatch forecast) throws IOException {
+
+        double pressure = 0;
+        int humidity = 0;
+        double windSpeed = 0;
+        double windDirection = 0;
+
+        double high = 0;
+        double low = 0;
+
+        int weatherId = 0;
+
+        int fieldsRead = 0;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case OWM_PRESSURE:
+                    pressure = reader.nextDouble();
+                    fieldsRead |= FIELD_PRESSURE;
+                    break;
+
+                case OWM_HUMIDITY:
+                    humidity = (int) reader.nextDouble();
+                    fieldsRead |= FIELD_HUMIDITY;
+                    break;
+
+                case OWM_WINDSPEED:
+                    windSpeed = reader.nextDouble();
+                    fieldsRead |= FIELD_WIND_SPEED;
+                    break;
+
+                case OWM_WIND_DIRECTION:
+                    windDirection = reader.nextDouble();
+                    fieldsRead |= FIELD_WIND_DIRECTION;
+                    break;
+
+                case OWM_WEATHER:
+                    /*
+                     * Description is in a child array called "weather", which is 1 element long.
+                     * That element also contains a weather code.
+                     */
+                    reader.beginArray();
+                    if (reader.hasNext()) {
+                        reader.beginObject();
+                        while (reader.hasNext()) {
+                            if (OWM_WEATHER_ID.equals(reader.nextName())) {
+                                weatherId = reader.nextInt();
+                                fieldsRead |= FIELD_WEATHER_ID;
+                            } else {
+                                reader.skipValue();
+                            }
+                        }
+                        reader.endObject();
+                    }
+                    while (reader.hasNext()) {
+                        reader.skipValue();
+                    }
+                    reader.endArray();
+                    break;
+
+                case OWM_TEMPERATURE:
+                    /*
+                     * Temperatures are sent by Open Weather Map in a child object called "temp".
+                     *
+                     * Editor's Note: Try not to name variables "temp" when working with
+                     * temperature. It confuses everybody. Temp could easily mean any number of
+                     * things, including temperature, temporary variable, temporary folder,
+                     * temporary employee, or many others, and is just a bad variable name.
+                     */
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        switch (reader.nextName()) {
+                            case OWM_MAX:
+                                high = reader.nextDouble();
+                                fieldsRead |= FIELD_MAX;
+                                break;
+                            case OWM_MIN:
+                                low = reader.nextDouble();
+                                fieldsRead |= FIELD_MIN;
+                                break;
+                            default:
+                                reader.skipValue();
+                                break;
+                        }
+                    }
+                    reader.endObject();
+                    break;
+
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+
+        if (fieldsRead != ALL_FIELDS) {
+            throw new MalformedJsonException("Incomplete day forecast in weather JSON");
+        }
 
-        return weatherContentValues;
+        forecast.add(dateTimeMillis, weatherId, low, high, humidity, pressure, windSpeed,
+                windDirection);
     }
-}
\ No newline at end of file
+}
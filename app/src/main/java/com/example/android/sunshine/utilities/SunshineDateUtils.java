@@ -20,7 +20,6 @@ import android.text.format.DateUtils;
 
 import com.example.android.sunshine.R;
 
-import java.text.SimpleDateFormat;
 import java.util.TimeZone;
 import java.util.concurrent.TimeUnit;
 
@@ -164,12 +163,12 @@ public final class SunshineDateUtils {
      *
      * @param normalizedUtcDate UTC time at midnight for a given date. This number comes from the
      *                          database
+     * @param timeZone          The current user's time zone, which provides us the offset
      *
      * @return The local date corresponding to the given normalized UTC date
      */
-    private static long getLocalMidnightFromNormalizedUtcDate(long normalizedUtcDate) {
-        /* The timeZone object will provide us the current user's time zone offset */
-        TimeZone timeZone = TimeZone.getDefault();
+    private static long getLocalMidnightFromNormalizedUtcDate(long normalizedUtcDate,
+                                                              TimeZone timeZone) {
         /*
          * This offset, in milliseconds, when added to a UTC date time, will produce the local
          * time.
@@ -200,6 +199,31 @@ public final class SunshineDateUtils {
      */
     public static String getFriendlyDateString(Context context, long normalizedUtcMidnight, boolean showFullDate) {
 
+        /*
+         * The list asks for the same two weeks of dates over and over, from the sync as well as
+         * from the UI. Each label is only built once per day, locale and time zone, after which
+         * it comes from the cache without formatting anything.
+         */
+        FriendlyDateCache cache = FriendlyDateCache.getInstance(context);
+        synchronized (cache) {
+            String friendlyDate = cache.get(normalizedUtcMidnight, showFullDate);
+            if (friendlyDate == null) {
+                friendlyDate = buildFriendlyDateString(
+                        context, cache, normalizedUtcMidnight, showFullDate);
+                cache.put(normalizedUtcMidnight, showFullDate, friendlyDate);
+            }
+            return friendlyDate;
+        }
+    }
+
+    /*
+     * Builds the label getFriendlyDateString returns, using the TimeZone and day name format of
+     * the cache. Called while holding the cache's lock.
+     */
+    private static String buildFriendlyDateString(Context context, FriendlyDateCache cache,
+                                                  long normalizedUtcMidnight,
+                                                  boolean showFullDate) {
+
         /*
          * NOTE: localDate should be localDateMidnightMillis and should be straight from the
          * database
@@ -208,7 +232,8 @@ public final class SunshineDateUtils {
          * that normalized date and produce a date (in UTC time) that represents the local time
          * zone at midnight.
          */
-        long localDate = getLocalMidnightFromNormalizedUtcDate(normalizedUtcMidnight);
+        long localDate =
+                getLocalMidnightFromNormalizedUtcDate(normalizedUtcMidnight, cache.getTimeZone());
 
         /*
          * In order to determine which day of the week we are creating a date string for, we need
@@ -219,16 +244,16 @@ public final class SunshineDateUtils {
 
         /*
          * As a basis for comparison, we use the number of days that have passed from the epoch
-         * until today.
+         * until today, the day the cache holds labels for.
          */
-        long daysFromEpochToToday = elapsedDaysSinceEpoch(System.currentTimeMillis());
+        long daysFromEpochToToday = cache.getDaysFromEpochToToday();
 
         if (daysFromEpochToProvidedDate == daysFromEpochToToday || showFullDate) {
             /*
              * If the date we're building the String for is today's date, the format
              * is "Today, June 24"
              */
-            String dayName = getDayName(context, localDate);
+            String dayName = getDayName(context, cache, localDate);
             String readableDate = getReadableDateString(context, localDate);
             if (daysFromEpochToProvidedDate - daysFromEpochToToday < 2) {
                 /*
@@ -241,14 +266,14 @@ public final class SunshineDateUtils {
                  * documentation on DateFormat#getBestDateTimePattern(Locale, String)
                  * https://developer.android.com/reference/android/text/format/DateFormat.html#getBestDateTimePattern
                  */
-                String localizedDayName = new SimpleDateFormat("EEEE").format(localDate);
+                String localizedDayName = cache.getDayNameFormat().format(localDate);
                 return readableDate.replace(localizedDayName, dayName);
             } else {
                 return readableDate;
             }
         } else if (daysFromEpochToProvidedDate < daysFromEpochToToday + 7) {
             /* If the input date is less than a week in the future, just return the day name. */
-            return getDayName(context, localDate);
+            return getDayName(context, cache, localDate);
         } else {
             int flags = DateUtils.FORMAT_SHOW_DATE
                     | DateUtils.FORMAT_NO_YEAR
@@ -281,17 +306,19 @@ public final class SunshineDateUtils {
      *   E.g "today", "tomorrow", "Wednesday".
      *
      * @param context      Context to use for resource localization
+     * @param cache        Provides today and the day name format. Its lock must be held.
      * @param dateInMillis The date in milliseconds (UTC time)
      *
      * @return the string day of the week
      */
-    private static String getDayName(Context context, long dateInMillis) {
+    private static String getDayName(Context context, FriendlyDateCache cache,
+                                     long dateInMillis) {
         /*
          * If the date is today, return the localized version of "Today" instead of the actual
          * day name.
          */
         long daysFromEpochToProvidedDate = elapsedDaysSinceEpoch(dateInMillis);
-        long daysFromEpochToToday = elapsedDaysSinceEpoch(System.currentTimeMillis());
+        long daysFromEpochToToday = cache.getDaysFromEpochToToday();
 
         int daysAfterToday = (int) (daysFromEpochToProvidedDate - daysFromEpochToToday);
 
@@ -302,8 +329,7 @@ public final class SunshineDateUtils {
                 return context.getString(R.string.tomorrow);
 
             default:
-                SimpleDateFormat dayFormat = new SimpleDateFormat("EEEE");
-                return dayFormat.format(dateInMillis);
+                return cache.getDayNameFormat().format(dateInMillis);
         }
     }
 }
\ No newline at end of file
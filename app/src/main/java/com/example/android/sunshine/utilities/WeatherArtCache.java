@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.utilities;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.support.annotation.VisibleForTesting;
+import android.support.v4.content.ContextCompat;
+import android.util.Log;
+import android.util.LruCache;
+
+/**
+ * Keeps the weather art Sunshine draws as bitmaps, already rendered at the size they are shown
+ * at. The forecast list, the notification and the wear updates all draw the same few pieces of
+ * art, so each size of each piece is only rendered once instead of on every bind or sync.
+ * <p>
+ * The cache is bounded by the bytes of its bitmaps, evicting the art used least recently first.
+ * It gives memory back when the system asks for it through onTrimMemory, and starts over when
+ * the screen density changes, since the same size in pixels then stands for another size.
+ * <p>
+ * The bitmaps it returns are shared, and must not be modified or recycled.
+ */
+public final class WeatherArtCache {
+
+    private static final String TAG = WeatherArtCache.class.getSimpleName();
+
+    /* Bytes of bitmaps kept, a thirty-second of the heap. Art is small, this is dozens of it. */
+    private static final int MAX_SIZE = (int) (Runtime.getRuntime().maxMemory() / 32);
+
+    private static WeatherArtCache sInstance;
+
+    private final Context mContext;
+
+    /* Keyed by the art's resource id and the size it was rendered at, see keyOf */
+    private final LruCache<Long, Bitmap> mBitmaps = new LruCache<Long, Bitmap>(MAX_SIZE) {
+        @Override
+        protected int sizeOf(Long key, Bitmap bitmap) {
+            return bitmap.getByteCount();
+        }
+    };
+
+    /* Guarded by this. The density the bitmaps were rendered for. */
+    private int mDensityDpi;
+
+    /*
+     * Guarded by this. The last bitmap art was decoded into before being scaled. It is never
+     * handed out, so the next decode can reuse its memory through inBitmap.
+     */
+    private Bitmap mDecodeBuffer;
+
+    private final Paint mScalePaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Rect mSourceRect = new Rect();
+    private final Rect mTargetRect = new Rect();
+
+    private WeatherArtCache(Context context) {
+        mContext = context.getApplicationContext();
+        mDensityDpi = mContext.getResources().getDisplayMetrics().densityDpi;
+
+        mContext.registerComponentCallbacks(new ComponentCallbacks2() {
+            @Override
+            public void onTrimMemory(int level) {
+                trimMemory(level);
+            }
+
+            @Override
+            public void onConfigurationChanged(Configuration newConfig) {
+                checkDensity();
+            }
+
+            @Override
+            public void onLowMemory() {
+                trimMemory(TRIM_MEMORY_COMPLETE);
+            }
+        });
+    }
+
+    /**
+     * @param context Used to load the art, and to hear about memory pressure
+     * @return The cache of this process
+     */
+    public static synchronized WeatherArtCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new WeatherArtCache(context);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Returns a piece of art rendered at a size, rendering it first if it isn't cached.
+     *
+     * @param artResourceId Drawable resource of the art, such as R.drawable.art_clear. Both
+     *                      bitmaps and vector drawables are supported.
+     * @param width         Width to render at, in pixels
+     * @param height        Height to render at, in pixels
+     * @return The rendered art, or null if the resource can't be drawn
+     */
+    public synchronized Bitmap getBitmap(int artResourceId, int width, int height) {
+        Long key = keyOf(artResourceId, width, height);
+        Bitmap bitmap = mBitmaps.get(key);
+        if (bitmap == null) {
+            bitmap = render(artResourceId, width, height);
+            if (bitmap != null) {
+                mBitmaps.put(key, bitmap);
+            }
+        }
+        return bitmap;
+    }
+
+    /*
+     * Bitmaps are decoded at their own size into mDecodeBuffer, then scaled into the bitmap that
+     * is cached. Vector drawables can't be decoded, and are drawn straight at the size asked for.
+     */
+    private Bitmap render(int artResourceId, int width, int height) {
+        Bitmap decoded = decode(artResourceId);
+
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        if (decoded != null) {
+            mSourceRect.set(0, 0, decoded.getWidth(), decoded.getHeight());
+            mTargetRect.set(0, 0, width, height);
+            canvas.drawBitmap(decoded, mSourceRect, mTargetRect, mScalePaint);
+            mDecodeBuffer = decoded;
+        } else {
+            Drawable drawable = ContextCompat.getDrawable(mContext, artResourceId);
+            if (drawable == null) {
+                Log.e(TAG, "Unable to draw resource " + artResourceId);
+                return null;
+            }
+            drawable.setBounds(0, 0, width, height);
+            drawable.draw(canvas);
+        }
+        return bitmap;
+    }
+
+    /* Returns null for anything BitmapFactory can't decode, such as a vector drawable */
+    private Bitmap decode(int artResourceId) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inScaled = false;
+        options.inMutable = true;
+        options.inBitmap = mDecodeBuffer;
+        try {
+            return BitmapFactory.decodeResource(mContext.getResources(), artResourceId, options);
+        } catch (IllegalArgumentException e) {
+            /* The buffer is too small for this art, decode into a new one */
+            options.inBitmap = null;
+            return BitmapFactory.decodeResource(mContext.getResources(), artResourceId, options);
+        }
+    }
+
+    /**
+     * Gives back memory like ComponentCallbacks2#onTrimMemory asks, keeping less the worse it is.
+     */
+    @VisibleForTesting
+    synchronized void trimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            /* We are likely to be killed, or the foreground app is short of memory */
+            mBitmaps.evictAll();
+            mDecodeBuffer = null;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            /* Includes the UI being hidden, keep what the notification and wear use most */
+            mBitmaps.trimToSize(MAX_SIZE / 2);
+            mDecodeBuffer = null;
+        }
+    }
+
+    private synchronized void checkDensity() {
+        int densityDpi = mContext.getResources().getDisplayMetrics().densityDpi;
+        if (densityDpi != mDensityDpi) {
+            /* The art is drawn for a density, the same size in pixels now looks different */
+            mBitmaps.evictAll();
+            mDensityDpi = densityDpi;
+        }
+    }
+
+    /* Resource ids take the upper 32 bits, the sizes 16 bits each */
+    private static Long keyOf(int artResourceId, int width, int height) {
+        return ((long) artResourceId << 32) | ((width & 0xffffL) << 16) | (height & 0xffffL);
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.utilities;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.util.Log;
+
+import com.example.android.sunshine.R;
+
+import java.util.Locale;
+
+/**
+ * Everything Sunshine displays for an OpenWeatherMap condition id, looked up in arrays indexed
+ * by the id rather than worked out by comparing it with every range of ids in turn.
+ * <p>
+ * The arrays cover every id from {@link #MIN_ID} to {@link #MAX_ID}, the range OpenWeatherMap
+ * uses. They hold the description's string resource and both sizes of art, and are built once
+ * from the tables below. The descriptions themselves are read from the resources once per
+ * locale and kept, so describing a condition doesn't even go through Resources.
+ * <p>
+ * See http://openweathermap.org/weather-conditions for a list of all IDs
+ */
+final class WeatherConditionCatalog {
+
+    private static final String LOG_TAG = WeatherConditionCatalog.class.getSimpleName();
+
+    static final int MIN_ID = 200;
+    static final int MAX_ID = 962;
+    private static final int COUNT = MAX_ID - MIN_ID + 1;
+
+    /*
+     * The art of each range of ids, as {first id, last id, small art, large art}. Where ranges
+     * overlap, the first one listed wins.
+     */
+    private static final int[][] ART_RANGES = {
+            {200, 232, R.drawable.ic_storm, R.drawable.art_storm},
+            {300, 321, R.drawable.ic_light_rain, R.drawable.art_light_rain},
+            {500, 504, R.drawable.ic_rain, R.drawable.art_rain},
+            {511, 511, R.drawable.ic_snow, R.drawable.art_snow},
+            {520, 531, R.drawable.ic_rain, R.drawable.art_rain},
+            {600, 622, R.drawable.ic_snow, R.drawable.art_snow},
+            {701, 761, R.drawable.ic_fog, R.drawable.art_fog},
+            {771, 771, R.drawable.ic_storm, R.drawable.art_storm},
+            {781, 781, R.drawable.ic_storm, R.drawable.art_storm},
+            {800, 800, R.drawable.ic_clear, R.drawable.art_clear},
+            {801, 801, R.drawable.ic_light_clouds, R.drawable.art_light_clouds},
+            {802, 804, R.drawable.ic_cloudy, R.drawable.art_clouds},
+            {900, 906, R.drawable.ic_storm, R.drawable.art_storm},
+            {958, 962, R.drawable.ic_storm, R.drawable.art_storm},
+            {951, 957, R.drawable.ic_clear, R.drawable.art_clear},
+    };
+
+    /* The art of an id no range covers */
+    private static final int UNKNOWN_SMALL_ART = R.drawable.ic_storm;
+    private static final int UNKNOWN_LARGE_ART = R.drawable.art_storm;
+
+    /* The description of each range of ids, as {first id, last id, string resource} */
+    private static final int[][] DESCRIPTION_RANGES = {
+            {200, 232, R.string.condition_2xx},
+            {300, 321, R.string.condition_3xx},
+            {500, 500, R.string.condition_500},
+            {501, 501, R.string.condition_501},
+            {502, 502, R.string.condition_502},
+            {503, 503, R.string.condition_503},
+            {504, 504, R.string.condition_504},
+            {511, 511, R.string.condition_511},
+            {520, 520, R.string.condition_520},
+            {531, 531, R.string.condition_531},
+            {600, 600, R.string.condition_600},
+            {601, 601, R.string.condition_601},
+            {602, 602, R.string.condition_602},
+            {611, 611, R.string.condition_611},
+            {612, 612, R.string.condition_612},
+            {615, 615, R.string.condition_615},
+            {616, 616, R.string.condition_616},
+            {620, 620, R.string.condition_620},
+            {621, 621, R.string.condition_621},
+            {622, 622, R.string.condition_622},
+            {701, 701, R.string.condition_701},
+            {711, 711, R.string.condition_711},
+            {721, 721, R.string.condition_721},
+            {731, 731, R.string.condition_731},
+            {741, 741, R.string.condition_741},
+            {751, 751, R.string.condition_751},
+            {761, 761, R.string.condition_761},
+            {762, 762, R.string.condition_762},
+            {771, 771, R.string.condition_771},
+            {781, 781, R.string.condition_781},
+            {800, 800, R.string.condition_800},
+            {801, 801, R.string.condition_801},
+            {802, 802, R.string.condition_802},
+            {803, 803, R.string.condition_803},
+            {804, 804, R.string.condition_804},
+            {900, 900, R.string.condition_900},
+            {901, 901, R.string.condition_901},
+            {902, 902, R.string.condition_902},
+            {903, 903, R.string.condition_903},
+            {904, 904, R.string.condition_904},
+            {905, 905, R.string.condition_905},
+            {906, 906, R.string.condition_906},
+            {951, 951, R.string.condition_951},
+            {952, 952, R.string.condition_952},
+            {953, 953, R.string.condition_953},
+            {954, 954, R.string.condition_954},
+            {955, 955, R.string.condition_955},
+            {956, 956, R.string.condition_956},
+            {957, 957, R.string.condition_957},
+            {958, 958, R.string.condition_958},
+            {959, 959, R.string.condition_959},
+            {960, 960, R.string.condition_960},
+            {961, 961, R.string.condition_961},
+            {962, 962, R.string.condition_962},
+    };
+
+    /* Indexed by id - MIN_ID. 0 where no range covers the id. */
+    private static final int[] SMALL_ART = new int[COUNT];
+    private static final int[] LARGE_ART = new int[COUNT];
+    private static final int[] DESCRIPTION_RES_IDS = new int[COUNT];
+
+    static {
+        for (int[] range : ART_RANGES) {
+            for (int id = range[0]; id <= range[1]; id++) {
+                if (SMALL_ART[id - MIN_ID] == 0) {
+                    SMALL_ART[id - MIN_ID] = range[2];
+                    LARGE_ART[id - MIN_ID] = range[3];
+                }
+            }
+        }
+        for (int[] range : DESCRIPTION_RANGES) {
+            for (int id = range[0]; id <= range[1]; id++) {
+                DESCRIPTION_RES_IDS[id - MIN_ID] = range[2];
+            }
+        }
+    }
+
+    /*
+     * The descriptions of every id in one locale, indexed like DESCRIPTION_RES_IDS. Replaced as
+     * a whole when the locale changes, so a reader never sees descriptions of two locales.
+     */
+    private static final class Descriptions {
+        final Locale locale;
+        final String[] strings = new String[COUNT];
+
+        Descriptions(Resources resources, Locale locale) {
+            this.locale = locale;
+            for (int index = 0; index < COUNT; index++) {
+                if (DESCRIPTION_RES_IDS[index] != 0) {
+                    strings[index] = resources.getString(DESCRIPTION_RES_IDS[index]);
+                }
+            }
+        }
+    }
+
+    private static volatile Descriptions sDescriptions;
+
+    private WeatherConditionCatalog() {
+    }
+
+    /**
+     * @param context   Used to read the descriptions in the current locale
+     * @param weatherId from OpenWeatherMap API response
+     * @return The description of the condition, or "Unknown (id)" for an id the catalog lacks
+     */
+    static String getDescription(Context context, int weatherId) {
+        int index = weatherId - MIN_ID;
+        if (index < 0 || index >= COUNT || DESCRIPTION_RES_IDS[index] == 0) {
+            return context.getString(R.string.condition_unknown, weatherId);
+        }
+        return getDescriptions(context).strings[index];
+    }
+
+    /**
+     * @param weatherId from OpenWeatherMap API response
+     * @return The small art of the condition, used in the list item layout for a "future day"
+     */
+    static int getSmallArtResourceId(int weatherId) {
+        int index = weatherId - MIN_ID;
+        if (index < 0 || index >= COUNT || SMALL_ART[index] == 0) {
+            Log.e(LOG_TAG, "Unknown Weather: " + weatherId);
+            return UNKNOWN_SMALL_ART;
+        }
+        return SMALL_ART[index];
+    }
+
+    /**
+     * @param weatherId from OpenWeatherMap API response
+     * @return The large art of the condition, used for today and in the DetailActivity
+     */
+    static int getLargeArtResourceId(int weatherId) {
+        int index = weatherId - MIN_ID;
+        if (index < 0 || index >= COUNT || LARGE_ART[index] == 0) {
+            Log.e(LOG_TAG, "Unknown Weather: " + weatherId);
+            return UNKNOWN_LARGE_ART;
+        }
+        return LARGE_ART[index];
+    }
+
+    @SuppressWarnings("deprecation")
+    private static Descriptions getDescriptions(Context context) {
+        Resources resources = context.getResources();
+
+        /* Unlike the newer getLocales, reading the field doesn't allocate */
+        Locale locale = resources.getConfiguration().locale;
+
+        Descriptions descriptions = sDescriptions;
+        if (descriptions == null || !descriptions.locale.equals(locale)) {
+            descriptions = new Descriptions(resources, locale);
+            sDescriptions = descriptions;
+        }
+        return descriptions;
+    }
+}
@@ -0,0 +1,341 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.utilities;
+
+import android.content.Context;
+import android.content.res.Resources;
+
+import com.example.android.sunshine.R;
+
+import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Formats temperatures, wind, pressure and humidity exactly like String#format would with the
+ * format strings of our resources, without going through String#format.
+ * <p>
+ * Each format string is split once into the text around its placeholders, then every value is
+ * written into a StringBuilder kept for the purpose, rounding to whole numbers and writing the
+ * digits of the locale by hand. Temperatures only take a few hundred different values once
+ * rounded, so each of them is only formatted once and then served from a cache.
+ * <p>
+ * A formatter is built for a locale, and replaced as soon as the locale changes. The sync, the
+ * UI and the wear updates share it, so the methods that use its buffer are synchronized.
+ */
+final class WeatherValueFormatter {
+
+    /* The rounded temperatures that are cached, far beyond any weather in either unit */
+    private static final int MIN_CACHED_TEMPERATURE = -150;
+    private static final int MAX_CACHED_TEMPERATURE = 200;
+
+    /* The direction of each 45 degree slice of the compass, starting with north east */
+    private static final String[] COMPASS_DIRECTIONS = {"NE", "E", "SE", "S", "SW", "W", "NW"};
+
+    /*
+     * Values this large are left to String#format. They don't fit the digit buffer, and have no
+     * fraction left to round.
+     */
+    private static final double MAX_SIMPLE_VALUE = 1e15;
+
+    private static volatile WeatherValueFormatter sInstance;
+
+    /* The locale of the format strings, and the one String#format would use for the digits */
+    private final Locale mResourceLocale;
+    private final Locale mFormatLocale;
+    private final char mZeroDigit;
+
+    private final Template mTemperature;
+    private final Template mWindKmh;
+    private final Template mWindMph;
+    private final Template mPressure;
+    private final Template mHumidity;
+
+    /* Guarded by this */
+    private final String[] mTemperatures =
+            new String[MAX_CACHED_TEMPERATURE - MIN_CACHED_TEMPERATURE + 1];
+    private final StringBuilder mBuilder = new StringBuilder(32);
+    private final char[] mDigits = new char[20];
+
+    private WeatherValueFormatter(Resources resources, Locale resourceLocale,
+                                  Locale formatLocale) {
+        mResourceLocale = resourceLocale;
+        mFormatLocale = formatLocale;
+        mZeroDigit = DecimalFormatSymbols.getInstance(formatLocale).getZeroDigit();
+
+        mTemperature = new Template(resources.getString(R.string.format_temperature), 'f');
+        mWindKmh = new Template(resources.getString(R.string.format_wind_kmh), 'f', 's');
+        mWindMph = new Template(resources.getString(R.string.format_wind_mph), 'f', 's');
+        mPressure = new Template(resources.getString(R.string.format_pressure), 'f');
+        mHumidity = new Template(resources.getString(R.string.format_humidity), 'f');
+    }
+
+    /**
+     * @param context Used to read the format strings
+     * @return The formatter for the current locale
+     */
+    @SuppressWarnings("deprecation")
+    static WeatherValueFormatter getInstance(Context context) {
+        Resources resources = context.getResources();
+
+        /* Unlike the newer getLocales, reading the field doesn't allocate */
+        Locale resourceLocale = resources.getConfiguration().locale;
+        Locale formatLocale = Locale.getDefault();
+
+        WeatherValueFormatter formatter = sInstance;
+        if (formatter == null
+                || !formatter.mResourceLocale.equals(resourceLocale)
+                || !formatter.mFormatLocale.equals(formatLocale)) {
+            formatter = new WeatherValueFormatter(resources, resourceLocale, formatLocale);
+            sInstance = formatter;
+        }
+        return formatter;
+    }
+
+    /**
+     * @param temperature Temperature in the user's preferred units
+     * @return The temperature as R.string.format_temperature shows it, such as "21°"
+     */
+    synchronized String formatTemperature(double temperature) {
+        if (isSimple(temperature)) {
+            long rounded = roundHalfUp(Math.abs(temperature));
+
+            /* String#format writes "-0" for a temperature just below zero, which isn't cached */
+            if (!isNegative(temperature)) {
+                if (rounded <= MAX_CACHED_TEMPERATURE) {
+                    return cachedTemperature((int) rounded, temperature);
+                }
+            } else if (rounded != 0 && -rounded >= MIN_CACHED_TEMPERATURE) {
+                return cachedTemperature((int) -rounded, temperature);
+            }
+        }
+        return format(mTemperature, temperature, null);
+    }
+
+    /**
+     * @param windSpeed Wind speed in the user's preferred units
+     * @param degrees   Direction of the wind, in degrees on a compass
+     * @param isMetric  Whether the speed is in km/h rather than mph
+     * @return The wind as R.string.format_wind_kmh or format_wind_mph shows it, such as
+     * "2 km/h SW"
+     */
+    synchronized String formatWind(float windSpeed, float degrees, boolean isMetric) {
+        return format(isMetric ? mWindKmh : mWindMph, windSpeed, getCompassDirection(degrees));
+    }
+
+    /**
+     * @param pressure Pressure in hPa
+     * @return The pressure as R.string.format_pressure shows it, such as "1013 hPa"
+     */
+    synchronized String formatPressure(double pressure) {
+        return format(mPressure, pressure, null);
+    }
+
+    /**
+     * @param humidity Humidity in percent
+     * @return The humidity as R.string.format_humidity shows it, such as "81 %"
+     */
+    synchronized String formatHumidity(double humidity) {
+        return format(mHumidity, humidity, null);
+    }
+
+    /**
+     * @param degrees Degrees as measured on a compass. Any value is accepted, such as -10 or 370.
+     * @return The nearest of the eight compass directions, such as "SW", or "Unknown" for NaN
+     */
+    static String getCompassDirection(float degrees) {
+        if (degrees >= 337.5 || degrees < 22.5) {
+            return "N";
+        } else if (degrees >= 22.5 && degrees < 337.5) {
+            return COMPASS_DIRECTIONS[(int) ((degrees - 22.5) / 45)];
+        }
+        return "Unknown";
+    }
+
+    private String cachedTemperature(int rounded, double temperature) {
+        int index = rounded - MIN_CACHED_TEMPERATURE;
+        String formatted = mTemperatures[index];
+        if (formatted == null) {
+            formatted = format(mTemperature, temperature, null);
+            mTemperatures[index] = formatted;
+        }
+        return formatted;
+    }
+
+    /*
+     * Writes a template with a number as its first argument and text as its optional second
+     * one. Anything this can't write exactly like String#format goes to String#format.
+     */
+    private String format(Template template, double number, String text) {
+        if (template.literals == null || !isSimple(number)) {
+            return String.format(mFormatLocale, template.format, number, text);
+        }
+
+        mBuilder.setLength(0);
+        for (int i = 0; i < template.arguments.length; i++) {
+            mBuilder.append(template.literals[i]);
+            if (template.arguments[i] == 0) {
+                appendNumber(number);
+            } else {
+                mBuilder.append(text);
+            }
+        }
+        mBuilder.append(template.literals[template.arguments.length]);
+        return mBuilder.toString();
+    }
+
+    /* Writes what "%.0f" writes: the number rounded half up, with a "-" if it is negative */
+    private void appendNumber(double number) {
+        if (isNegative(number)) {
+            mBuilder.append('-');
+        }
+
+        long magnitude = roundHalfUp(Math.abs(number));
+        int start = mDigits.length;
+        do {
+            mDigits[--start] = (char) (mZeroDigit + (int) (magnitude % 10));
+            magnitude /= 10;
+        } while (magnitude != 0);
+        mBuilder.append(mDigits, start, mDigits.length - start);
+    }
+
+    private static boolean isSimple(double number) {
+        return !Double.isNaN(number) && Math.abs(number) < MAX_SIMPLE_VALUE;
+    }
+
+    /* Like String#format, counts -0.0 and numbers that round to 0 from below as negative */
+    private static boolean isNegative(double number) {
+        return Double.doubleToRawLongBits(number) < 0;
+    }
+
+    /* Subtracting the floor is exact for the values isSimple accepts, so .5 always rounds up */
+    private static long roundHalfUp(double magnitude) {
+        double floor = Math.floor(magnitude);
+        return (long) floor + (magnitude - floor >= 0.5 ? 1 : 0);
+    }
+
+    /**
+     * A format string split into the text between its placeholders.
+     */
+    private static final class Template {
+
+        final String format;
+
+        /*
+         * literals[i] is the text before the i-th placeholder, the last one the text after the
+         * last placeholder. Null if the format uses anything but "%.0f" for the number and
+         * "%s" for the text, in which case it is left to String#format.
+         */
+        final String[] literals;
+
+        /* The argument each placeholder shows, 0 for the number and 1 for the text */
+        final int[] arguments;
+
+        /**
+         * @param format      The format string, as read from the resources
+         * @param conversions The conversion of each argument, 'f' or 's'
+         */
+        Template(String format, char... conversions) {
+            this.format = format;
+
+            List<String> literals = new ArrayList<>();
+            List<Integer> arguments = new ArrayList<>();
+            if (parse(format, conversions, literals, arguments)) {
+                this.literals = literals.toArray(new String[literals.size()]);
+                this.arguments = new int[arguments.size()];
+                for (int i = 0; i < this.arguments.length; i++) {
+                    this.arguments[i] = arguments.get(i);
+                }
+            } else {
+                this.literals = null;
+                this.arguments = null;
+            }
+        }
+
+        private static boolean parse(String format, char[] conversions,
+                                     List<String> literals, List<Integer> arguments) {
+            StringBuilder literal = new StringBuilder();
+            int nextArgument = 0;
+            int length = format.length();
+            int i = 0;
+            while (i < length) {
+                char c = format.charAt(i++);
+                if (c != '%') {
+                    literal.append(c);
+                    continue;
+                }
+                if (i < length && format.charAt(i) == '%') {
+                    literal.append('%');
+                    i++;
+                    continue;
+                }
+
+                /* An explicit argument index, such as the 2 of "%2$s" */
+                int argument;
+                int end = skipDigits(format, i);
+                if (end > i && end < length && format.charAt(end) == '$') {
+                    argument = Integer.parseInt(format.substring(i, end)) - 1;
+                    i = end + 1;
+                } else {
+                    argument = nextArgument++;
+                }
+
+                /* A width of 1 changes nothing, anything wider would pad the number */
+                end = skipDigits(format, i);
+                int width = end > i ? Integer.parseInt(format.substring(i, end)) : 0;
+                i = end;
+
+                int precision = -1;
+                if (i < length && format.charAt(i) == '.') {
+                    end = skipDigits(format, ++i);
+                    if (end == i) {
+                        return false;
+                    }
+                    precision = Integer.parseInt(format.substring(i, end));
+                    i = end;
+                }
+
+                if (i >= length || argument < 0 || argument >= conversions.length) {
+                    return false;
+                }
+                char conversion = format.charAt(i++);
+                if (conversion != conversions[argument]) {
+                    return false;
+                }
+                if (conversion == 'f' && (precision != 0 || width > 1)) {
+                    return false;
+                }
+                if (conversion == 's' && (precision != -1 || width != 0)) {
+                    return false;
+                }
+
+                literals.add(literal.toString());
+                literal.setLength(0);
+                arguments.add(argument);
+            }
+            literals.add(literal.toString());
+            return true;
+        }
+
+        private static int skipDigits(String format, int i) {
+            while (i < format.length() && Character.isDigit(format.charAt(i))) {
+                i++;
+            }
+            return i;
+        }
+    }
+}